@@ -18,6 +18,14 @@ repositories {
     mavenCentral()
 }
 
+// Бенчмарки (src/jmh/java), видят классы и зависимости main
+val jmh: SourceSet by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output
+    runtimeClasspath += sourceSets.main.get().output
+}
+configurations[jmh.implementationConfigurationName].extendsFrom(configurations.implementation.get())
+configurations[jmh.runtimeOnlyConfigurationName].extendsFrom(configurations.runtimeOnly.get())
+
 dependencies {
     implementation("org.springframework.boot:spring-boot-starter-web")
     implementation("org.springframework.boot:spring-boot-starter-security")
@@ -26,6 +34,8 @@ dependencies {
     implementation("org.springframework.boot:spring-boot-starter-mail")
     implementation("org.springframework.boot:spring-boot-starter-thymeleaf")
     implementation("org.springframework.boot:spring-boot-starter-websocket")
+    implementation("org.springframework.boot:spring-boot-starter-actuator")
+    runtimeOnly("io.micrometer:micrometer-registry-prometheus")
 
     implementation("io.jsonwebtoken:jjwt-api:0.11.5")
     runtimeOnly("io.jsonwebtoken:jjwt-impl:0.11.5")
@@ -36,7 +46,10 @@ dependencies {
 
     implementation("com.github.ben-manes.caffeine:caffeine")
 
-    runtimeOnly("org.postgresql:postgresql")
+    implementation("org.postgresql:postgresql") // PGConnection для LISTEN/NOTIFY
+
+    "jmhImplementation"("org.openjdk.jmh:jmh-core:1.37")
+    "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:1.37")
 }
 
 tasks.named<org.springframework.boot.gradle.tasks.run.BootRun>("bootRun") {
@@ -69,4 +82,28 @@ tasks.named<org.springframework.boot.gradle.tasks.run.BootRun>("bootRun") {
 // Отключение ошибок
 tasks.withType<JavaExec>().configureEach {
     jvmArgs = listOf("--enable-native-access=ALL-UNNAMED")
-}
\ No newline at end of file
+}
+
+// Запуск бенчмарков: ./gradlew jmh (фильтр по имени: -Pjmh.include=CacheServiceBenchmark)
+val jmhThreadCounts = listOf(1, 8, 32)
+val jmhRuns = jmhThreadCounts.map { threads ->
+    tasks.register<JavaExec>("jmhThreads$threads") {
+        group = "benchmark"
+        description = "Runs JMH benchmarks on $threads thread(s) with the gc profiler"
+        classpath = jmh.runtimeClasspath
+        mainClass.set("org.openjdk.jmh.Main")
+
+        val resultFile = layout.buildDirectory.file("reports/jmh/results-t$threads.json")
+        args("-t", threads.toString(), "-prof", "gc", "-rf", "json", "-rff", resultFile.get().asFile.absolutePath)
+        (project.findProperty("jmh.include") as String?)?.let { args(it) }
+
+        doFirst { resultFile.get().asFile.parentFile.mkdirs() }
+    }
+}
+jmhRuns.zipWithNext { previous, next -> next.configure { mustRunAfter(previous) } }
+
+tasks.register("jmh") {
+    group = "benchmark"
+    description = "Runs JMH benchmarks on 1, 8 and 32 threads"
+    dependsOn(jmhRuns)
+}
@@ -0,0 +1,139 @@
+package com.sunrise.benchmark;
+
+import com.sunrise.core.dataservice.CacheService;
+import com.sunrise.core.dataservice.DBService;
+import com.sunrise.core.dataservice.DataOrchestrator;
+import com.sunrise.core.dataservice.DbFallThroughMetrics;
+import com.sunrise.core.dataservice.JwtVersionRegistry;
+import com.sunrise.core.dataservice.ReadThroughLoader;
+import com.sunrise.core.dataservice.UserSearchIndex;
+import com.sunrise.core.dataservice.type.ChatType;
+import com.sunrise.entity.cache.CacheChat;
+import com.sunrise.entity.cache.CacheChatMember;
+import com.sunrise.entity.cache.CacheUser;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/*
+ * Общий набор данных для бенчмарков: пользователи, большие группы и личные чаты.
+ * Все ключи, к которым обращаются бенчмарки, заранее лежат в кеше.
+ */
+public final class CacheFixture {
+
+    public static final int SEQUENCE_LENGTH = 1 << 16; // длина заранее сгенерированных последовательностей ключей
+    public static final int SEQUENCE_MASK = SEQUENCE_LENGTH - 1;
+
+    public final long[] userIds;
+    public final long[] groupChatIds;
+    public final long[][] groupMemberIds;
+    public final long[][] personalPairs;
+
+    public final long[] userSequence;      // zipf по пользователям
+    public final int[] groupSequence;      // zipf по группам
+    public final int[] memberSequence;     // равномерно внутри группы
+    public final int[] personalSequence;   // zipf по личным чатам
+
+    private CacheFixture(int userCount, int groupCount, int groupSize, int personalCount) {
+        SplittableRandom random = new SplittableRandom(42);
+
+        // id в формате snowflake: старшие биты растут, младшие 19 - случайные
+        userIds = new long[userCount];
+        for (int i = 0; i < userCount; i++) {
+            userIds[i] = ((long) (i + 1) << 19) | random.nextInt(1 << 19);
+        }
+
+        groupChatIds = new long[groupCount];
+        groupMemberIds = new long[groupCount][];
+        for (int g = 0; g < groupCount; g++) {
+            groupChatIds[g] = ((long) (userCount + g + 1) << 19) | random.nextInt(1 << 19);
+            groupMemberIds[g] = new long[groupSize];
+            for (int m = 0; m < groupSize; m++) {
+                groupMemberIds[g][m] = userIds[random.nextInt(userCount)];
+            }
+        }
+
+        ZipfianGenerator userZipf = new ZipfianGenerator(userCount, 0.99, 7);
+        personalPairs = new long[personalCount][];
+        for (int p = 0; p < personalCount; p++) {
+            long first = userIds[userZipf.nextRank()];
+            long second = userIds[random.nextInt(userCount)];
+            if (first == second) second = userIds[(userZipf.nextRank() + 1) % userCount];
+            personalPairs[p] = new long[]{first, second};
+        }
+
+        userSequence = new long[SEQUENCE_LENGTH];
+        int[] userRanks = new ZipfianGenerator(userCount, 0.99, 11).nextRanks(SEQUENCE_LENGTH);
+        for (int i = 0; i < SEQUENCE_LENGTH; i++) {
+            userSequence[i] = userIds[userRanks[i]];
+        }
+        groupSequence = new ZipfianGenerator(groupCount, 0.99, 13).nextRanks(SEQUENCE_LENGTH);
+        personalSequence = new ZipfianGenerator(personalCount, 0.99, 17).nextRanks(SEQUENCE_LENGTH);
+        memberSequence = new int[SEQUENCE_LENGTH];
+        for (int i = 0; i < SEQUENCE_LENGTH; i++) {
+            memberSequence[i] = random.nextInt(groupSize);
+        }
+    }
+
+    public static CacheFixture create(int userCount, int groupCount, int groupSize, int personalCount) {
+        return new CacheFixture(userCount, groupCount, groupSize, personalCount);
+    }
+
+    public void fill(CacheService cacheService) {
+        LocalDateTime now = LocalDateTime.now();
+
+        List<CacheUser> users = new ArrayList<>(userIds.length);
+        for (long userId : userIds) {
+            String username = "user_" + Long.toHexString(userId);
+            users.add(new CacheUser(userId, username, "User " + userId, username + "@sunrise.test", "hash",
+                    now, now, now, now, 1, true, null, false));
+        }
+        cacheService.saveUsers(users);
+
+        for (int g = 0; g < groupChatIds.length; g++) {
+            long chatId = groupChatIds[g];
+            long creatorId = groupMemberIds[g][0];
+            ChatType chatType = groupMemberIds[g].length > 300 ? ChatType.BIG_GROUP : ChatType.SMALL_GROUP;
+
+            List<CacheChatMember> members = new ArrayList<>(groupMemberIds[g].length);
+            for (int m = 0; m < groupMemberIds[g].length; m++) {
+                boolean isAdmin = m == 0;
+                members.add(new CacheChatMember(chatId, groupMemberIds[g][m], null, now, now, now, false, isAdmin, null, false));
+            }
+            CacheChat chat = new CacheChat(chatId, "Group " + g, null, chatType, null,
+                    members.size(), 0, now, now, creatorId, null, false);
+            cacheService.saveChatAndAddMembers(chat, members);
+        }
+
+        for (int p = 0; p < personalPairs.length; p++) {
+            long chatId = ((long) (userIds.length + groupChatIds.length + p + 1) << 19);
+            long creatorId = personalPairs[p][0];
+            long opponentId = personalPairs[p][1];
+
+            CacheChat chat = new CacheChat(chatId, null, null, ChatType.PERSONAL, opponentId,
+                    2, 0, now, now, creatorId, null, false);
+            cacheService.saveChatAndAddMembers(chat, List.of(
+                    new CacheChatMember(chatId, creatorId, null, now, now, now, false, false, null, false),
+                    new CacheChatMember(chatId, opponentId, null, now, now, now, false, false, null, false)
+            ));
+        }
+    }
+
+    public void fill(JwtVersionRegistry jwtVersions) {
+        for (long userId : userIds) {
+            jwtVersions.update(userId, 1);
+        }
+    }
+
+    // Репозитории не нужны: все ключи бенчмарка лежат в кеше, до БД запросы не доходят
+    public static DataOrchestrator newOrchestrator(CacheService cacheService, JwtVersionRegistry jwtVersions) {
+        DBService dbService = new DBService(null, null, null, null, null, null, null, null, null, null, jwtVersions);
+        DbFallThroughMetrics dbCalls = new DbFallThroughMetrics(new SimpleMeterRegistry());
+        return new DataOrchestrator(cacheService, dbService, jwtVersions, new UserSearchIndex(null, null),
+                dbCalls, new ReadThroughLoader(dbCalls), null); // бенчмарки только читают, шина инвалидации не нужна
+    }
+}
@@ -0,0 +1,110 @@
+package com.sunrise.benchmark;
+
+import com.sunrise.core.dataservice.CacheService;
+import com.sunrise.entity.cache.CacheChat;
+import com.sunrise.entity.cache.CacheChatMember;
+import com.sunrise.entity.cache.CacheUser;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Горячие пути чтения CacheService. Число потоков задаётся снаружи (-t 1/8/32, см. задачу jmh в build.gradle.kts).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class CacheServiceBenchmark {
+
+    @Param({"100000"})
+    public int userCount;
+
+    @Param({"50", "1000"})
+    public int groupSize;
+
+    @Param({"20"})
+    public int batchSize; // размер страницы участников/пользователей
+
+    private CacheFixture fixture;
+    private CacheService cacheService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture = CacheFixture.create(userCount, 200, groupSize, 50_000);
+        cacheService = new CacheService();
+        fixture.fill(cacheService);
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int position;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            position = ThreadLocalRandom.current().nextInt(CacheFixture.SEQUENCE_LENGTH);
+        }
+
+        int next() {
+            return position++ & CacheFixture.SEQUENCE_MASK;
+        }
+    }
+
+
+    // ========== USER ==========
+
+
+    @Benchmark
+    public Optional<CacheUser> getUser(Cursor cursor) {
+        return cacheService.getUser(fixture.userSequence[cursor.next()]);
+    }
+
+    @Benchmark
+    public Map<Long, CacheUser> getCacheUsersByIds(Cursor cursor) {
+        List<Long> userIds = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            userIds.add(fixture.userSequence[cursor.next()]);
+        }
+        Set<Long> missingIds = new HashSet<>();
+        return cacheService.getCacheUsersByIds(userIds, missingIds);
+    }
+
+
+    // ========== CHAT MEMBER ==========
+
+
+    @Benchmark
+    public Map<Long, CacheChatMember> getChatMembers(Cursor cursor) {
+        int group = fixture.groupSequence[cursor.next()];
+        long[] memberIds = fixture.groupMemberIds[group];
+
+        List<Long> userIds = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            userIds.add(memberIds[fixture.memberSequence[cursor.next()]]);
+        }
+        Set<Long> missingIds = new HashSet<>();
+        return cacheService.getChatMembers(fixture.groupChatIds[group], userIds, missingIds);
+    }
+
+    @Benchmark
+    public Optional<Boolean> hasActiveChatMember(Cursor cursor) {
+        int group = fixture.groupSequence[cursor.next()];
+        long userId = fixture.groupMemberIds[group][fixture.memberSequence[cursor.next()]];
+        return cacheService.hasActiveChatMember(fixture.groupChatIds[group], userId);
+    }
+
+
+    // ========== PERSONAL CHAT ==========
+
+
+    @Benchmark
+    public Optional<CacheChat> getPersonalChat(Cursor cursor) {
+        long[] pair = fixture.personalPairs[fixture.personalSequence[cursor.next()]];
+        return cacheService.getPersonalChat(pair[1], pair[0]);
+    }
+}
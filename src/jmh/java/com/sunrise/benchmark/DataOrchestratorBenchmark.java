@@ -0,0 +1,73 @@
+package com.sunrise.benchmark;
+
+import com.sunrise.core.dataservice.CacheService;
+import com.sunrise.core.dataservice.DataOrchestrator;
+import com.sunrise.core.dataservice.JwtVersionRegistry;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Проверки DataOrchestrator, через которые проходит валидация почти каждого запроса.
+ * Меряется путь попадания в кеш, включая обёртки Optional и маппинг.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class DataOrchestratorBenchmark {
+
+    @Param({"100000"})
+    public int userCount;
+
+    @Param({"50", "1000"})
+    public int groupSize;
+
+    private CacheFixture fixture;
+    private DataOrchestrator dataOrchestrator;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture = CacheFixture.create(userCount, 200, groupSize, 1_000);
+        CacheService cacheService = new CacheService();
+        fixture.fill(cacheService);
+        JwtVersionRegistry jwtVersions = new JwtVersionRegistry(null, null);
+        fixture.fill(jwtVersions);
+        dataOrchestrator = CacheFixture.newOrchestrator(cacheService, jwtVersions);
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int position;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            position = ThreadLocalRandom.current().nextInt(CacheFixture.SEQUENCE_LENGTH);
+        }
+
+        int next() {
+            return position++ & CacheFixture.SEQUENCE_MASK;
+        }
+    }
+
+    @Benchmark
+    public boolean isActiveUser(Cursor cursor) {
+        return dataOrchestrator.isActiveUser(fixture.userSequence[cursor.next()]);
+    }
+
+    @Benchmark
+    public boolean hasActiveChatMember(Cursor cursor) {
+        int group = fixture.groupSequence[cursor.next()];
+        long userId = fixture.groupMemberIds[group][fixture.memberSequence[cursor.next()]];
+        return dataOrchestrator.hasActiveChatMember(fixture.groupChatIds[group], userId);
+    }
+
+    @Benchmark
+    public boolean isCurrentJwtVersion(Cursor cursor) {
+        return dataOrchestrator.isCurrentJwtVersion(fixture.userSequence[cursor.next()], 1);
+    }
+}
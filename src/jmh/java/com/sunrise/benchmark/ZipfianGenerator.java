@@ -0,0 +1,54 @@
+package com.sunrise.benchmark;
+
+import java.util.SplittableRandom;
+
+/*
+ * Zipf-распределение рангов [0, items) по алгоритму Gray et al. (как в YCSB).
+ * Ранг 0 - самый "горячий" ключ, theta = 0.99 даёт типичный для чатов перекос.
+ */
+public final class ZipfianGenerator {
+
+    private final int items;
+    private final double theta;
+    private final double alpha;
+    private final double zetan;
+    private final double eta;
+    private final SplittableRandom random;
+
+    public ZipfianGenerator(int items, double theta, long seed) {
+        this.items = items;
+        this.theta = theta;
+        this.alpha = 1.0 / (1.0 - theta);
+        this.zetan = zeta(items, theta);
+        this.eta = (1 - Math.pow(2.0 / items, 1 - theta)) / (1 - zeta(2, theta) / zetan);
+        this.random = new SplittableRandom(seed);
+    }
+
+    public int nextRank() {
+        double u = random.nextDouble();
+        double uz = u * zetan;
+
+        if (uz < 1.0) return 0;
+        if (uz < 1.0 + Math.pow(0.5, theta)) return 1;
+
+        int rank = (int) (items * Math.pow(eta * u - eta + 1, alpha));
+        return Math.min(rank, items - 1);
+    }
+
+    // Заранее генерируем последовательность, чтобы не мерить сам генератор
+    public int[] nextRanks(int count) {
+        int[] ranks = new int[count];
+        for (int i = 0; i < count; i++) {
+            ranks[i] = nextRank();
+        }
+        return ranks;
+    }
+
+    private static double zeta(int n, double theta) {
+        double sum = 0;
+        for (int i = 1; i <= n; i++) {
+            sum += 1 / Math.pow(i, theta);
+        }
+        return sum;
+    }
+}
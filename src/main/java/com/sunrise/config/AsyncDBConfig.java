@@ -1,26 +1,40 @@
 package com.sunrise.config;
 
+import com.sunrise.helpclass.PartitionedExecutor;
+import com.sunrise.helpclass.PartitionedExecutor.OverflowPolicy;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.scheduling.annotation.EnableAsync;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
-import java.util.concurrent.Executor;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
 
-@EnableAsync
+@Slf4j
 @Configuration
 public class AsyncDBConfig {
 
+    @Value("${app.db-executor.lanes}")
+    private int lanes;
+    @Value("${app.db-executor.queue-capacity}")
+    private int queueCapacity;
+    @Value("${app.db-executor.overflow-policy}")
+    private OverflowPolicy overflowPolicy;
+    @Value("${app.db-executor.lane-overflow-policies}")
+    private String[] laneOverflowPolicies; // политика по номеру полосы, пустые/отсутствующие - overflow-policy
+
     @Bean("dbExecutor")
-    public Executor dbExecutor() {
-        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(1); // один поток
-        executor.setMaxPoolSize(1);
-        executor.setQueueCapacity(1000);
-        executor.setThreadNamePrefix("db-queue-");
-        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
-        executor.initialize();
-        return executor;
+    public PartitionedExecutor dbExecutor() {
+        List<OverflowPolicy> policies = new ArrayList<>(lanes);
+        for (int i = 0; i < lanes; i++) {
+            String policy = i < laneOverflowPolicies.length ? laneOverflowPolicies[i].trim() : "";
+            policies.add(policy.isEmpty() ? overflowPolicy : OverflowPolicy.valueOf(policy.toUpperCase(Locale.ROOT)));
+        }
+
+        log.info("[🔧] ✅ DB executor: {} lanes, queue {} per lane, overflow policies {}", lanes, queueCapacity, policies);
+        return new PartitionedExecutor("db-queue-", queueCapacity, policies);
     }
 }
@@ -0,0 +1,25 @@
+package com.sunrise.config;
+
+import com.sunrise.core.dataservice.CacheService;
+import com.sunrise.helpclass.PartitionedExecutor;
+
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+// Spring Boot сам привязывает MeterBinder-бины к реестру, их метрики уходят в /actuator/prometheus
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public MeterBinder cacheMetrics(CacheService cacheService) {
+        return cacheService::bindMetrics;
+    }
+
+    @Bean
+    public MeterBinder dbExecutorMetrics(@Qualifier("dbExecutor") PartitionedExecutor dbExecutor) {
+        return registry -> dbExecutor.bindMetrics(registry, "db");
+    }
+}
@@ -0,0 +1,50 @@
+package com.sunrise.config;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
+
+/*
+ * Планировщики для @Scheduled. Без своего Spring берёт единственный TaskScheduler - messageBrokerTaskScheduler,
+ * и задачи приложения делят его потоки с heartbeat'ами STOMP/SockJS.
+ * appTaskScheduler - по умолчанию для всех задач (тики присутствия, кадры действий, снимки маршрутов, статистика),
+ * dbTaskScheduler - для задач, которые ходят в бд (scheduler = DB_SCHEDULER): медленная бд задерживает только их.
+ */
+@Slf4j
+@Configuration
+public class SchedulingConfig implements SchedulingConfigurer {
+
+    public static final String DB_SCHEDULER = "dbTaskScheduler";
+
+    @Value("${app.scheduling.pool-size}")
+    private int poolSize;
+    @Value("${app.scheduling.db-pool-size}")
+    private int dbPoolSize;
+
+    @Bean
+    public ThreadPoolTaskScheduler appTaskScheduler() {
+        return scheduler("app-scheduling-", poolSize);
+    }
+    @Bean(DB_SCHEDULER)
+    public ThreadPoolTaskScheduler dbTaskScheduler() {
+        return scheduler("db-scheduling-", dbPoolSize);
+    }
+
+    @Override
+    public void configureTasks(ScheduledTaskRegistrar registrar) {
+        registrar.setTaskScheduler(appTaskScheduler());
+        log.info("[🔧] ✅ Scheduling: {} app threads, {} db threads", poolSize, dbPoolSize);
+    }
+
+    private static ThreadPoolTaskScheduler scheduler(String threadNamePrefix, int poolSize) {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(poolSize);
+        scheduler.setThreadNamePrefix(threadNamePrefix);
+        return scheduler;
+    }
+}
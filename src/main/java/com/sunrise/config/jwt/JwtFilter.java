@@ -32,11 +32,15 @@ public class JwtFilter extends OncePerRequestFilter {
 
     @Value("${app.jwt.no-jwt-endpoints}")
     private String[] excludedPaths;
+    @Value("${server.port}")
+    private int serverPort;
+    @Value("${management.server.port:-1}")
+    private int managementPort;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
 
-        if (isPathExcluded(request.getServletPath())) {
+        if (isManagementRequest(request) || isPathExcluded(request.getServletPath())) {
             filterChain.doFilter(request, response);
             return;
         }
@@ -48,36 +52,31 @@ public class JwtFilter extends OncePerRequestFilter {
             return;
         }
 
-        String jwt;
-        Long userId;
-        Integer tokenVersion;
-
-        try {
-            jwt = authorizationHeader.substring(7);
-            if (jwt.trim().isEmpty()) {
-                sendErrorResponse(response, HttpServletResponse.SC_UNAUTHORIZED, "EMPTY_TOKEN");
-                return;
-            }
+        String jwt = authorizationHeader.substring(7);
+        if (jwt.trim().isEmpty()) {
+            sendErrorResponse(response, HttpServletResponse.SC_UNAUTHORIZED, "EMPTY_TOKEN");
+            return;
+        }
 
-            userId = jwtUtil.extractUserId(jwt);
-            tokenVersion = jwtUtil.extractJwtVersion(jwt);
-        } catch (Exception e) {
+        Optional<VerifiedJwt> verified = jwtUtil.verify(jwt); // разбираем токен один раз
+        if (verified.isEmpty()) {
             sendErrorResponse(response, HttpServletResponse.SC_UNAUTHORIZED, "INVALID_TOKEN");
             return;
         }
 
+        Long userId = verified.get().userId();
+        Integer tokenVersion = verified.get().jwtVersion();
         if (userId == null || userId <= 0) {
             sendErrorResponse(response, HttpServletResponse.SC_UNAUTHORIZED, "INVALID_USER_ID");
             return;
         }
 
-        if (!jwtUtil.validateToken(jwt)) {
+        if (verified.get().isExpired()) {
             sendErrorResponse(response, HttpServletResponse.SC_UNAUTHORIZED, "TOKEN_VALIDATION_FAILED");
             return;
         }
 
-        Optional<Integer> jwtVersion = dataOrchestrator.getUserJwtVersion(userId);
-        if (tokenVersion == null || jwtVersion.isEmpty() || !tokenVersion.equals(jwtVersion.get())) {
+        if (tokenVersion == null || !dataOrchestrator.isCurrentJwtVersion(userId, tokenVersion)) {
             sendErrorResponse(response, HttpServletResponse.SC_UNAUTHORIZED, "TOKEN_VERSION_MISMATCH");
             return;
         }
@@ -99,6 +98,11 @@ public class JwtFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    // Actuator на отдельном порту закрыт от внешней сети, а не токеном; на основном порту его нет
+    private boolean isManagementRequest(HttpServletRequest request) {
+        return managementPort > 0 && managementPort != serverPort && request.getLocalPort() == managementPort;
+    }
+
     private boolean isPathExcluded(String path) {
         if (excludedPaths == null) {
             return false;
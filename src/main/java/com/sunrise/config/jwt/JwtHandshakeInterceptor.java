@@ -34,19 +34,21 @@ public class JwtHandshakeInterceptor implements HandshakeInterceptor {
             }
         }
 
-        if (token != null && jwtUtil.validateToken(token)) {
-            long userId = jwtUtil.extractUserId(token);
-            Integer tokenVersion = jwtUtil.extractJwtVersion(token); // новый метод
-            try {
-                Optional<Integer> version = dataOrchestrator.getUserJwtVersion(userId);
-                if (tokenVersion != null && version.isPresent() && tokenVersion.equals(version.get())) {
-                    String sessionId = UUID.randomUUID().toString();
-                    attributes.put("userId", userId);
-                    attributes.put("sessionId", sessionId);
-                    return true;
-                }
-            } catch (Exception ignored) {}
-        }
+        if (token == null) return false;
+
+        Optional<VerifiedJwt> verified = jwtUtil.verify(token); // разбираем токен один раз
+        if (verified.isEmpty() || verified.get().isExpired() || verified.get().userId() == null) return false;
+
+        long userId = verified.get().userId();
+        Integer tokenVersion = verified.get().jwtVersion();
+        try {
+            if (tokenVersion != null && dataOrchestrator.isCurrentJwtVersion(userId, tokenVersion)) {
+                String sessionId = UUID.randomUUID().toString();
+                attributes.put("userId", userId);
+                attributes.put("sessionId", sessionId);
+                return true;
+            }
+        } catch (Exception ignored) {}
         return false;
     }
 
@@ -1,5 +1,9 @@
 package com.sunrise.config.jwt;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
 
@@ -10,14 +14,20 @@ import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 import java.util.Date;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class JwtUtil {
     private SecretKey secretKey;
+    private JwtParser parser; // потокобезопасный, строим один раз
 
     @Value("${app.jwt.secret}")
     private String secretString;
@@ -25,6 +35,22 @@ public class JwtUtil {
     @Value("${app.jwt.expiration}")
     public long expiration; // in seconds
 
+    @Value("${app.jwt.verified-cache-size}")
+    private long verifiedCacheSize;
+
+    // первые 128 бит SHA-256 токена - сам токен в памяти не держим
+    private record TokenDigest(long high, long low) {}
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    });
+
+    private Cache<TokenDigest, VerifiedJwt> verifiedTokens; // digest -> проверенные claims, живут до exp токена
+
     @PostConstruct
     public void init() {
         if (secretString == null || secretString.isEmpty()) {
@@ -35,6 +61,28 @@ public class JwtUtil {
             throw new IllegalArgumentException("JWT secret must be at least 32 bytes. Current length: " + secretBytes.length);
         }
         this.secretKey = Keys.hmacShaKeyFor(secretBytes);
+        this.parser = Jwts.parserBuilder()
+                .setSigningKey(secretKey)
+                .build();
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(verifiedCacheSize)
+                .expireAfter(new Expiry<TokenDigest, VerifiedJwt>() {
+                    @Override
+                    public long expireAfterCreate(TokenDigest key, VerifiedJwt value, long currentTime) {
+                        long millisLeft = value.expiration().getTime() - System.currentTimeMillis();
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, millisLeft));
+                    }
+                    @Override
+                    public long expireAfterUpdate(TokenDigest key, VerifiedJwt value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                    @Override
+                    public long expireAfterRead(TokenDigest key, VerifiedJwt value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
     }
 
     public String generateToken(long userId, int jwtVersion) {
@@ -46,12 +94,30 @@ public class JwtUtil {
                 .signWith(secretKey)
                 .compact();
     }
-    public boolean validateToken(String token) {
+    // Один разбор и проверка подписи на токен; повторные запросы с тем же токеном берут claims из кеша
+    public Optional<VerifiedJwt> verify(String token) {
+        TokenDigest digest = digestOf(token);
+        VerifiedJwt cached = verifiedTokens.getIfPresent(digest);
+        if (cached != null) return Optional.of(cached);
+
+        VerifiedJwt verified;
         try {
-            return !isTokenExpired(token);
+            Claims claims = getClaims(token);
+            verified = new VerifiedJwt(
+                claims.get("userId", Long.class),
+                claims.get("jwtVersion", Integer.class),
+                claims.getExpiration()
+            );
         } catch (JwtException | IllegalArgumentException e) {
-            return false;
+            return Optional.empty(); // битые и просроченные токены не кешируем
         }
+        if (verified.expiration() == null) return Optional.empty();
+
+        verifiedTokens.put(digest, verified);
+        return Optional.of(verified);
+    }
+    public boolean validateToken(String token) {
+        return verify(token).filter(jwt -> !jwt.isExpired()).isPresent();
     }
 
     public Date getTokenExpirationTime(String token) {
@@ -68,10 +134,11 @@ public class JwtUtil {
         return getClaims(token).get("jwtVersion", Integer.class);
     }
     private Claims getClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(secretKey)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        return parser.parseClaimsJws(token).getBody();
+    }
+    private static TokenDigest digestOf(String token) {
+        byte[] hash = SHA_256.get().digest(token.getBytes(StandardCharsets.UTF_8));
+        ByteBuffer buffer = ByteBuffer.wrap(hash);
+        return new TokenDigest(buffer.getLong(), buffer.getLong());
     }
 }
\ No newline at end of file
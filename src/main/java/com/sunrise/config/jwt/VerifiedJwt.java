@@ -0,0 +1,11 @@
+package com.sunrise.config.jwt;
+
+import java.util.Date;
+
+// Проверенные (подпись + формат) claims токена; актуальность jwtVersion проверяется отдельно при каждом запросе
+public record VerifiedJwt(Long userId, Integer jwtVersion, Date expiration) {
+
+    public boolean isExpired() {
+        return expiration == null || expiration.before(new Date());
+    }
+}
@@ -0,0 +1,255 @@
+package com.sunrise.config.websocket;
+
+import com.sunrise.helpclass.PartitionedExecutor;
+import com.sunrise.helpclass.PartitionedExecutor.OverflowPolicy;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.SubscribableChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.AbstractBrokerMessageHandler;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.security.Principal;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/*
+ * Замена SimpleBroker: подписки разложены по шардам (чат -> шард), у каждого шарда свой поток.
+ * Состояние шарда трогает только его поток, поэтому подписка, отписка и рассылка по одному топику идут без блокировок и по порядку.
+ * Поиск подписчиков - точное совпадение destination в HashMap, шаблоны (/topic/chats/*) НЕ поддерживаются.
+ */
+@Slf4j
+public class ShardedBrokerMessageHandler extends AbstractBrokerMessageHandler {
+
+    private static final String CHAT_TOPIC_PREFIX = "/topic/chats/";
+    private static final byte[] EMPTY_PAYLOAD = new byte[0];
+
+    private record Subscriber(String sessionId, String subscriptionId) {}
+
+    private final int shardCount;
+    private final int queueCapacity;
+    private final OverflowPolicy overflowPolicy;
+    private final long clientHeartbeatMs;
+
+    private final List<Map<String, List<Subscriber>>> shards; // destination -> подписчики, у каждого шарда свой поток
+    private final Map<String, Map<String, String>> sessions = new ConcurrentHashMap<>(); // sessionId -> (subscriptionId -> destination)
+
+    private volatile PartitionedExecutor shardThreads;
+
+    // метрики
+    private final LongAdder publishedCount = new LongAdder();
+    private final LongAdder deliveredCount = new LongAdder();
+    private final LongAdder unroutedCount = new LongAdder();
+
+    public ShardedBrokerMessageHandler(SubscribableChannel clientInboundChannel, SubscribableChannel clientOutboundChannel,
+                                       SubscribableChannel brokerChannel, Collection<String> destinationPrefixes,
+                                       int shardCount, int queueCapacity, OverflowPolicy overflowPolicy, long clientHeartbeatMs) {
+        super(clientInboundChannel, clientOutboundChannel, brokerChannel, destinationPrefixes);
+        this.shardCount = shardCount;
+        this.queueCapacity = queueCapacity;
+        this.overflowPolicy = overflowPolicy;
+        this.clientHeartbeatMs = clientHeartbeatMs;
+        this.shards = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(new HashMap<>());
+        }
+    }
+
+    @Override
+    protected void startInternal() {
+        shardThreads = new PartitionedExecutor("ws-broker-", queueCapacity, Collections.nCopies(shardCount, overflowPolicy));
+        publishBrokerAvailableEvent();
+    }
+    @Override
+    protected void stopInternal() {
+        publishBrokerUnavailableEvent();
+        try {
+            shardThreads.shutdown();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    // ========== MESSAGE HANDLING ==========
+
+
+    @Override
+    protected void handleMessageInternal(Message<?> message) {
+        MessageHeaders headers = message.getHeaders();
+        SimpMessageType messageType = SimpMessageHeaderAccessor.getMessageType(headers);
+        String destination = SimpMessageHeaderAccessor.getDestination(headers);
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+
+        if (!checkDestinationPrefix(destination)) return;
+
+        if (SimpMessageType.MESSAGE.equals(messageType)) {
+            publish(destination, message);
+        }
+        else if (SimpMessageType.CONNECT.equals(messageType)) {
+            if (sessionId != null) connect(sessionId, SimpMessageHeaderAccessor.getUser(headers), message);
+        }
+        else if (SimpMessageType.DISCONNECT.equals(messageType)) {
+            if (sessionId != null) disconnect(sessionId, SimpMessageHeaderAccessor.getUser(headers), message);
+        }
+        else if (SimpMessageType.SUBSCRIBE.equals(messageType)) {
+            subscribe(sessionId, SimpMessageHeaderAccessor.getSubscriptionId(headers), destination);
+        }
+        else if (SimpMessageType.UNSUBSCRIBE.equals(messageType)) {
+            unsubscribe(sessionId, SimpMessageHeaderAccessor.getSubscriptionId(headers));
+        }
+    }
+
+    private void connect(String sessionId, Principal user, Message<?> connectMessage) {
+        if (sessions.putIfAbsent(sessionId, new ConcurrentHashMap<>()) != null) {
+            log.warn("[🔧] ☝️ Session {} already connected", sessionId);
+            return;
+        }
+
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.CONNECT_ACK);
+        accessor.setSessionId(sessionId);
+        if (user != null) accessor.setUser(user);
+        accessor.setHeader(SimpMessageHeaderAccessor.CONNECT_MESSAGE_HEADER, connectMessage);
+        accessor.setHeader(SimpMessageHeaderAccessor.HEART_BEAT_HEADER, new long[] {0, clientHeartbeatMs}); // сами не шлём, от клиента ждём (как SimpleBroker)
+        getClientOutboundChannel().send(MessageBuilder.createMessage(EMPTY_PAYLOAD, accessor.getMessageHeaders()));
+    }
+    private void disconnect(String sessionId, Principal user, Message<?> disconnectMessage) {
+        Map<String, String> subscriptions = sessions.remove(sessionId);
+        if (subscriptions != null) {
+            subscriptions.forEach((subscriptionId, destination) ->
+                    onShard(destination, shard -> removeSubscriber(shard, destination, sessionId, subscriptionId)));
+        }
+
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.DISCONNECT_ACK);
+        accessor.setSessionId(sessionId);
+        if (user != null) accessor.setUser(user);
+        accessor.setHeader(SimpMessageHeaderAccessor.DISCONNECT_MESSAGE_HEADER, disconnectMessage);
+        getClientOutboundChannel().send(MessageBuilder.createMessage(EMPTY_PAYLOAD, accessor.getMessageHeaders()));
+    }
+    private void subscribe(String sessionId, String subscriptionId, String destination) {
+        if (sessionId == null || subscriptionId == null || destination == null) return;
+
+        Map<String, String> subscriptions = sessions.get(sessionId);
+        if (subscriptions == null || subscriptions.putIfAbsent(subscriptionId, destination) != null) return;
+
+        Subscriber subscriber = new Subscriber(sessionId, subscriptionId);
+        onShard(destination, shard -> shard.computeIfAbsent(destination, key -> new ArrayList<>(2)).add(subscriber));
+    }
+    private void unsubscribe(String sessionId, String subscriptionId) {
+        if (sessionId == null || subscriptionId == null) return;
+
+        Map<String, String> subscriptions = sessions.get(sessionId);
+        String destination = subscriptions == null ? null : subscriptions.remove(subscriptionId);
+        if (destination == null) return;
+
+        onShard(destination, shard -> removeSubscriber(shard, destination, sessionId, subscriptionId));
+    }
+    private void publish(String destination, Message<?> message) {
+        if (destination == null) return;
+
+        publishedCount.increment();
+        onShard(destination, shard -> {
+            List<Subscriber> subscribers = shard.get(destination);
+            if (subscribers == null) {
+                unroutedCount.increment();
+                return;
+            }
+
+            for (Iterator<Subscriber> iterator = subscribers.iterator(); iterator.hasNext(); ) {
+                Subscriber subscriber = iterator.next();
+                if (!sessions.containsKey(subscriber.sessionId())) { // подписка успела прийти после отключения сессии
+                    iterator.remove();
+                    continue;
+                }
+
+                SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+                accessor.setSessionId(subscriber.sessionId());
+                accessor.setSubscriptionId(subscriber.subscriptionId());
+                accessor.copyHeadersIfAbsent(message.getHeaders());
+                accessor.setLeaveMutable(true);
+                try {
+                    getClientOutboundChannel().send(MessageBuilder.createMessage(message.getPayload(), accessor.getMessageHeaders()));
+                    deliveredCount.increment();
+                }
+                catch (Exception e) {
+                    log.error("[🔧] ⚠️ Failed to deliver {} to session {}: {}", destination, subscriber.sessionId(), e.getMessage());
+                }
+            }
+            if (subscribers.isEmpty()) shard.remove(destination);
+        });
+    }
+
+
+    // ========== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ==========
+
+
+    // Чатовые топики шардируются по chatId, остальные (user-очереди) - по самой строке destination
+    private void onShard(String destination, Consumer<Map<String, List<Subscriber>>> action) {
+        Object key = shardKey(destination);
+        int shardIndex = shardThreads.laneOf(key);
+        shardThreads.execute(key, () -> action.accept(shards.get(shardIndex)));
+    }
+    private static Object shardKey(String destination) {
+        if (destination.startsWith(CHAT_TOPIC_PREFIX)) {
+            try {
+                return Long.parseLong(destination, CHAT_TOPIC_PREFIX.length(), destination.length(), 10);
+            } catch (NumberFormatException ignored) {
+                // не чатовый топик - шардируем по строке
+            }
+        }
+        return destination;
+    }
+    private static void removeSubscriber(Map<String, List<Subscriber>> shard, String destination, String sessionId, String subscriptionId) {
+        List<Subscriber> subscribers = shard.get(destination);
+        if (subscribers == null) return;
+
+        subscribers.remove(new Subscriber(sessionId, subscriptionId));
+        if (subscribers.isEmpty()) shard.remove(destination);
+    }
+
+
+    // ========== STATS ==========
+
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("shards", shardCount);
+        stats.put("sessions", sessions.size());
+        stats.put("published", publishedCount.sum());
+        stats.put("delivered", deliveredCount.sum());
+        stats.put("unrouted", unroutedCount.sum());
+        PartitionedExecutor executor = shardThreads;
+        if (executor != null) {
+            long queued = 0;
+            for (int i = 0; i < executor.getLaneCount(); i++) {
+                queued += ((Number) executor.getLaneStats(i).get("queue.size")).longValue();
+            }
+            stats.put("queue.size", queued);
+        }
+        return stats;
+    }
+
+    @Scheduled(fixedDelay = 3_600_000, initialDelay = 10_000) // 1000 * 60 * 60
+    public void logStats() {
+        Map<String, Object> stats = getStats();
+        log.info("📊 Sharded Broker: shards={}, sessions={}, published={}, delivered={}, unrouted={}, queue={}",
+                stats.get("shards"),
+                stats.get("sessions"),
+                stats.get("published"),
+                stats.get("delivered"),
+                stats.get("unrouted"),
+                stats.get("queue.size"));
+    }
+
+    @Override
+    public String toString() {
+        return "ShardedBroker[shards=" + shardCount + ", sessions=" + sessions.size() + "]";
+    }
+}
@@ -0,0 +1,52 @@
+package com.sunrise.config.websocket;
+
+import com.sunrise.helpclass.PartitionedExecutor.OverflowPolicy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.simp.broker.AbstractBrokerMessageHandler;
+import org.springframework.messaging.simp.user.UserDestinationResolver;
+import org.springframework.messaging.support.AbstractSubscribableChannel;
+import org.springframework.web.socket.config.annotation.DelegatingWebSocketMessageBrokerConfiguration;
+
+import java.util.List;
+
+/*
+ * Вместо @EnableWebSocketMessageBroker: та же конфигурация, но брокер выбирается через app.websocket.broker.
+ * simple - SimpleBroker из Spring, sharded - ShardedBrokerMessageHandler.
+ */
+@Configuration(proxyBeanMethods = false)
+public class WsBrokerConfig extends DelegatingWebSocketMessageBrokerConfiguration {
+
+    @Value("${app.websocket.broker}")
+    private String brokerType;
+    @Value("${app.websocket.sharded-broker.shards}")
+    private int shardCount;
+    @Value("${app.websocket.sharded-broker.queue-capacity}")
+    private int shardQueueCapacity;
+    @Value("${app.websocket.sharded-broker.overflow-policy}")
+    private OverflowPolicy shardOverflowPolicy;
+    @Value("${app.websocket.client-heartbeat-ms}")
+    private long clientHeartbeatMs;
+
+    @Bean
+    @Nullable
+    @Override
+    public AbstractBrokerMessageHandler simpleBrokerMessageHandler(AbstractSubscribableChannel clientInboundChannel,
+                                                                  AbstractSubscribableChannel clientOutboundChannel,
+                                                                  AbstractSubscribableChannel brokerChannel,
+                                                                  UserDestinationResolver userDestinationResolver) {
+        if (!"sharded".equalsIgnoreCase(brokerType)) {
+            return super.simpleBrokerMessageHandler(clientInboundChannel, clientOutboundChannel, brokerChannel, userDestinationResolver);
+        }
+
+        ShardedBrokerMessageHandler handler = new ShardedBrokerMessageHandler(
+                clientInboundChannel, clientOutboundChannel, brokerChannel, List.of(WsConfig.BROKER_PREFIXES),
+                shardCount, shardQueueCapacity, shardOverflowPolicy, clientHeartbeatMs
+        );
+        handler.setUserDestinationPredicate(destination -> destination.startsWith(WsConfig.USER_DESTINATION_PREFIX + "/"));
+        return handler;
+    }
+}
@@ -2,38 +2,58 @@ package com.sunrise.config.websocket;
 
 import com.sunrise.config.annotation.WsUserIdArgumentResolver;
 import com.sunrise.config.jwt.JwtHandshakeInterceptor;
+import com.sunrise.websocket.WsPresenceInterceptor;
 import com.sunrise.websocket.WsSubscriptionInterceptor;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.messaging.handler.invocation.HandlerMethodArgumentResolver;
 import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
-import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
 
 import java.util.List;
 
-@Configuration
-@EnableWebSocketMessageBroker
+@Configuration // брокер подключает WsBrokerConfig
 @RequiredArgsConstructor
 public class WsConfig implements WebSocketMessageBrokerConfigurer {
 
+    static final String[] BROKER_PREFIXES = {"/topic", "/queue"};
+    static final String USER_DESTINATION_PREFIX = "/user";
+
+    @Value("${app.websocket.client-heartbeat-ms}")
+    private long clientHeartbeatMs;
+
     private final WsSubscriptionInterceptor subscriptionInterceptor;
+    private final WsPresenceInterceptor presenceInterceptor;
     private final JwtHandshakeInterceptor jwtHandshakeInterceptor;
     private final WsHandshakeHandler wsHandshakeHandler;
     private final WsUserIdArgumentResolver wsUserIdArgumentResolver;
 
+    private TaskScheduler messageBrokerTaskScheduler;
+
+    @Autowired
+    public void setMessageBrokerTaskScheduler(@Lazy @Qualifier("messageBrokerTaskScheduler") TaskScheduler taskScheduler) {
+        this.messageBrokerTaskScheduler = taskScheduler;
+    }
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        config.enableSimpleBroker("/topic", "/queue");
+        config.enableSimpleBroker(BROKER_PREFIXES) // для app.websocket.broker=simple
+                .setHeartbeatValue(new long[] {0, clientHeartbeatMs}) // сами не шлём, от клиента ждём - по ним PresenceEngine видит живых
+                .setTaskScheduler(messageBrokerTaskScheduler);
         config.setApplicationDestinationPrefixes("/app");
-        config.setUserDestinationPrefix("/user");
+        config.setUserDestinationPrefix(USER_DESTINATION_PREFIX);
     }
 
     @Override
     public void configureClientInboundChannel(ChannelRegistration registration) {
-        registration.interceptors(subscriptionInterceptor);
+        registration.interceptors(subscriptionInterceptor, presenceInterceptor);
     }
 
     @Override
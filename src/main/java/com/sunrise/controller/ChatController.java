@@ -116,6 +116,16 @@ public class ChatController {
             return ResponseEntity.badRequest().body(result.getError());
         }
     }
+    @GetMapping("/unread-count")
+    public ResponseEntity<?> getTotalUnreadCount(@CurrentUserId long userId) {
+        ResultOneArg<UnreadCountResult> result = chatService.getTotalUnreadCount(userId);
+
+        if (result.isSuccess()) {
+            return ResponseEntity.ok(result.getResult());
+        } else {
+            return ResponseEntity.badRequest().body(result.getError());
+        }
+    }
     @GetMapping("/{chatId}")
     public ResponseEntity<?> getUserChat(@PathVariable @ValidId long chatId, @CurrentUserId long userId) {
 
@@ -3,8 +3,10 @@ package com.sunrise.controller;
 import com.sunrise.config.annotation.CurrentUserId;
 import com.sunrise.core.service.UserService;
 
+import com.sunrise.controller.request.MentionRequest;
 import com.sunrise.controller.request.PaginationRequest;
 import com.sunrise.core.service.result.ResultOneArg;
+import com.sunrise.entity.dto.UserProfileDTO;
 import com.sunrise.entity.pagination.UsersPageDTO;
 import jakarta.validation.Valid;
 
@@ -14,6 +16,8 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 @Validated
 @RequiredArgsConstructor
 @RestController
@@ -27,6 +31,17 @@ public class UserController {
 
         ResultOneArg<UsersPageDTO> result = userService.getActiveUsersPage(userId, filter, pagination.getCursor(), pagination.getLimit());
 
+        if (result.isSuccess()) {
+            return ResponseEntity.ok(result.getResult());
+        } else {
+            return ResponseEntity.badRequest().body(result.getError());
+        }
+    }
+    @GetMapping("/mentions")
+    public ResponseEntity<?> getMentionCandidates(@Valid MentionRequest request, @CurrentUserId long userId) {
+
+        ResultOneArg<List<UserProfileDTO>> result = userService.getMentionCandidates(userId, request.getPrefix(), request.getChatId(), request.getLimit());
+
         if (result.isSuccess()) {
             return ResponseEntity.ok(result.getResult());
         } else {
@@ -2,10 +2,12 @@ package com.sunrise.controller;
 
 import com.sunrise.config.annotation.ValidId;
 import com.sunrise.config.annotation.WsCurrentUserId;
+import com.sunrise.core.dataservice.type.PresenceStatus;
 import com.sunrise.core.notifier.WebSocketNotifier;
+import com.sunrise.core.service.ChatActionAggregator;
 import com.sunrise.core.service.ChatService;
 import com.sunrise.core.service.MessageService;
-import com.sunrise.core.service.UserGlobalStatusKeeper;
+import com.sunrise.core.service.PresenceEngine;
 import com.sunrise.core.service.result.ResultNoArgs;
 import com.sunrise.core.service.result.ResultOneArg;
 
@@ -20,7 +22,7 @@ import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.stereotype.Controller;
 
 import java.security.Principal;
-import java.util.Set;
+import java.util.Optional;
 
 @Slf4j
 @RequiredArgsConstructor
@@ -29,7 +31,8 @@ public class WebSocketController {
 
     private final MessageService messageService;
     private final WebSocketNotifier wsNotify;
-    private final UserGlobalStatusKeeper userGlobalStatusKeeper;
+    private final ChatActionAggregator chatActions;
+    private final PresenceEngine presenceEngine;
     private final ChatService chatService;
 
 
@@ -41,7 +44,9 @@ public class WebSocketController {
         ResultOneArg<Long> result = messageService.makePublicMessage(request.tempId(), chatId, userId, request.text());
         if (!result.isSuccess()) {
             wsNotify.notifyError(principal.getName(), result.getError(), errorUrl);
+            return;
         }
+        chatActions.clear(chatId, userId); // отправил - больше не печатает
     }
     @MessageMapping("/chats/{chatId}/messages/send-private")
     public void sendPrivateMessage(@DestinationVariable long chatId, @Payload WsRequests.MessagePrivateNewRequest request,
@@ -86,25 +91,33 @@ public class WebSocketController {
 
     @MessageMapping("subscribe/user-status/{userId}")
     public void subscribeUserGlobalStatus(@DestinationVariable @ValidId long userId, Principal principal) {
-        userGlobalStatusKeeper.subscribeUserGlobalStatus(userId, principal.getName());
+        presenceEngine.watch(userId, principal.getName());
     }
     @MessageMapping("/user-status/{status}")
-    public void updateUserGlobalStatus(@WsCurrentUserId long userId, @DestinationVariable String status) {
+    public void updateUserGlobalStatus(@WsCurrentUserId long userId, @DestinationVariable String status,
+                                       Principal principal, @Header("simpDestination") String errorUrl) {
 
-        Set<String> sessionsToNotify = userGlobalStatusKeeper.updateUserGlobalStatus(userId, status);
-        if (!sessionsToNotify.isEmpty()){
-            wsNotify.notifyUserStatusChange(userId, status, sessionsToNotify);
+        Optional<PresenceStatus> presenceStatus = PresenceStatus.parse(status);
+        if (presenceStatus.isEmpty()) {
+            wsNotify.notifyError(principal.getName(), "Unknown status: " + status, errorUrl);
+            return;
         }
+        presenceEngine.setStatus(userId, presenceStatus.get()); // наблюдатели получат изменение пачкой
     }
     @MessageMapping("unsubscribe/user-status/{userId}")
     public void unsubscribeUserGlobalStatus(@DestinationVariable @ValidId long userId, Principal principal) {
-        userGlobalStatusKeeper.unsubscribeUserGlobalStatus(userId, principal.getName());
+        presenceEngine.unwatch(userId, principal.getName());
     }
 
     @MessageMapping("/chats/{chatId}/actions/{action}")
     public void updateUserChatAction(@DestinationVariable long chatId, @DestinationVariable String action,
                                      @WsCurrentUserId long userId, Principal principal, @Header("simpDestination") String errorUrl) {
 
+        if (!ChatActionAggregator.isValidAction(action)) {
+            wsNotify.notifyError(principal.getName(), "Unknown action: " + action, errorUrl);
+            return;
+        }
+
         ResultOneArg<Boolean> result = chatService.isActionsEnabledForChat(chatId, userId);
         if (!result.isSuccess()){
             wsNotify.notifyError(principal.getName(), result.getError(), errorUrl);
@@ -116,9 +129,7 @@ public class WebSocketController {
             return;
         }
 
-        if (userGlobalStatusKeeper.updateUserAction(chatId, userId, action)){
-            wsNotify.notifyUserAction(chatId, userId, action);
-        }
+        chatActions.update(chatId, userId, action); // чат получит состояние одним кадром за окно
     }
 
     @MessageMapping("/ping")
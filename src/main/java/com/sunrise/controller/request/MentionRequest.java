@@ -0,0 +1,35 @@
+package com.sunrise.controller.request;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
+
+@lombok.Data
+@lombok.NoArgsConstructor
+@lombok.AllArgsConstructor
+public class MentionRequest {
+
+    @Size(max = 31, message = "Prefix must be at most 30 characters")
+    @Pattern(
+        regexp = "^@?[a-zA-Z0-9_]*$",
+        message = "Prefix must contain only letters, digits, and underscores"
+    )
+    private String prefix;
+
+    @Positive
+    private Long chatId;
+
+    @Min(1)
+    @Max(20)
+    private Integer limit;
+
+    public String getPrefix() {
+        if (prefix == null) return "";
+        return prefix.startsWith("@") ? prefix.substring(1) : prefix;
+    }
+    public Integer getLimit() {
+        return limit != null ? limit : 10;
+    }
+}
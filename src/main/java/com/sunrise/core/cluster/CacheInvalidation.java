@@ -0,0 +1,36 @@
+package com.sunrise.core.cluster;
+
+/*
+ * Событие шины инвалидации: что изменилось (тип + ключ) и версия изменения.
+ * Для USER версия - новый jwtVersion (0, если не менялся), для остальных - момент изменения в мс.
+ * На проводе - строка "origin|TYPE|version|key", ключ последним, т.к. у токенов это произвольная строка.
+ * MESSAGE_ADDED и MESSAGES_READ - не инвалидация, а дельта: получатель применяет её к своим кешам, как это сделал отправитель.
+ */
+public record CacheInvalidation(String origin, EntityType type, long version, String key) {
+
+    public enum EntityType {
+        USER,               // key = userId
+        CHAT,               // key = chatId
+        CHAT_MEMBERS,       // key = chatId, весь контейнер участников
+        MESSAGE,            // key = messageId
+        RECENT_MESSAGES,    // key = chatId, буфер последних сообщений и отметки прочтения (правка, удаление, восстановление)
+        MESSAGE_ADDED,      // key = chatId|messageId|senderId|sentAt|+text (или "-", если текст не влез в NOTIFY)
+        MESSAGES_READ,      // key = chatId|userId|previousMessageId|messageId
+        USER_INBOX,         // key = userId, список чатов (вступление в новый чат по inboxesByChat не найти)
+        VERIFICATION_TOKEN  // key = token
+    }
+
+    public long longKey() {
+        return Long.parseLong(key);
+    }
+
+    public String encode() {
+        return origin + '|' + type.name() + '|' + version + '|' + key;
+    }
+    public static CacheInvalidation decode(String payload) {
+        String[] parts = payload.split("\\|", 4);
+        if (parts.length != 4) throw new IllegalArgumentException("Malformed cache invalidation: " + payload);
+
+        return new CacheInvalidation(parts[0], EntityType.valueOf(parts[1]), Long.parseLong(parts[2]), parts[3]);
+    }
+}
@@ -0,0 +1,240 @@
+package com.sunrise.core.cluster;
+
+import com.sunrise.core.cluster.CacheInvalidation.EntityType;
+import com.sunrise.core.dataservice.CacheService;
+import com.sunrise.core.dataservice.DBService;
+import com.sunrise.core.dataservice.JwtVersionRegistry;
+import com.sunrise.core.dataservice.UserSearchIndex;
+import com.sunrise.entity.EntityMapper;
+import com.sunrise.entity.dto.MessageDTO;
+import com.sunrise.helpclass.PartitionedExecutor;
+import com.sunrise.helpclass.PartitionedExecutor.OverflowPolicy;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Шина инвалидации CacheService между инстансами. DataOrchestrator после записи в бд публикует событие,
+ * остальные узлы выкидывают запись из своего кеша (следующее чтение поднимет её из бд),
+ * а новый jwtVersion сразу применяют к JwtVersionRegistry - его записи не вытесняются.
+ * Новые сообщения и прочтения идут дельтами (MESSAGE_ADDED, MESSAGES_READ): выкидывать на каждое сообщение
+ * буфер, счётчики и списки чатов значило бы держать кеши активных чатов холодными на всех узлах, кроме отправителя.
+ */
+@Slf4j
+@Service
+public class CacheInvalidationBus {
+
+    static final String CHANNEL = "cache_invalidation";
+    private static final int MAX_INLINE_TEXT_BYTES = 6_000; // с заголовком влезает в лимит NOTIFY (8000 байт)
+
+    @Value("${app.cluster.invalidation.lanes}")
+    private int laneCount;
+    @Value("${app.cluster.invalidation.queue-capacity}")
+    private int queueCapacity;
+    @Value("${app.cluster.invalidation.overflow-policy}")
+    private OverflowPolicy overflowPolicy;
+
+    private final ClusterTransport transport;
+    private final CacheService cacheService;
+    private final JwtVersionRegistry jwtVersions;
+    private final UserSearchIndex userSearch;
+    private PartitionedExecutor lanes;
+
+    // метрики
+    private final LongAdder publishedCount = new LongAdder();
+    private final LongAdder appliedCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final LongAdder resyncCount = new LongAdder();
+
+    public CacheInvalidationBus(ClusterTransport transport, CacheService cacheService, JwtVersionRegistry jwtVersions,
+                                UserSearchIndex userSearch) {
+        this.transport = transport;
+        this.cacheService = cacheService;
+        this.jwtVersions = jwtVersions;
+        this.userSearch = userSearch;
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        lanes = new PartitionedExecutor("cache-bus-", queueCapacity, Collections.nCopies(laneCount, overflowPolicy));
+        transport.subscribe(CHANNEL, this::receive);
+        transport.addResyncListener(this::resync);
+    }
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        lanes.shutdown();
+    }
+
+
+    // ========== PUBLISH METHODS ==========
+
+
+    public void userChanged(long userId, int newJwtVersion) {
+        publish(EntityType.USER, String.valueOf(userId), newJwtVersion);
+    }
+    public void chatChanged(long chatId, LocalDateTime updatedAt) {
+        publish(EntityType.CHAT, String.valueOf(chatId), toMillis(updatedAt));
+    }
+    public void chatMembersChanged(long chatId, LocalDateTime updatedAt) {
+        publish(EntityType.CHAT_MEMBERS, String.valueOf(chatId), toMillis(updatedAt));
+    }
+    public void messageChanged(long chatId, long messageId, LocalDateTime updatedAt) {
+        publish(EntityType.MESSAGE, String.valueOf(messageId), toMillis(updatedAt));
+        publish(EntityType.RECENT_MESSAGES, String.valueOf(chatId), toMillis(updatedAt));
+    }
+    public void recentMessagesChanged(long chatId, LocalDateTime updatedAt) {
+        publish(EntityType.RECENT_MESSAGES, String.valueOf(chatId), toMillis(updatedAt));
+    }
+    public void messageAdded(MessageDTO message) {
+        String text = message.getText() != null && message.getText().getBytes(StandardCharsets.UTF_8).length <= MAX_INLINE_TEXT_BYTES
+                ? "+" + message.getText()
+                : "-"; // длинный текст получатели не узнают - выкинут буфер чата, как раньше
+        String key = message.getChatId() + "|" + message.getId() + "|" + message.getSenderId() + "|" + message.getSentAt() + "|" + text;
+        publish(EntityType.MESSAGE_ADDED, message.getChatId(), key, toMillis(message.getSentAt()));
+    }
+    public void messagesRead(long chatId, long userId, long previousMessageId, long messageId, LocalDateTime readAt) {
+        publish(EntityType.MESSAGES_READ, chatId, chatId + "|" + userId + "|" + previousMessageId + "|" + messageId, toMillis(readAt));
+    }
+    public void userInboxChanged(long userId, LocalDateTime updatedAt) {
+        publish(EntityType.USER_INBOX, String.valueOf(userId), toMillis(updatedAt));
+    }
+    public void verificationTokenDeleted(String token) {
+        publish(EntityType.VERIFICATION_TOKEN, token, 0);
+    }
+
+    // Отправка уходит в свою полосу по ключу: запрос не ждёт pg_notify, порядок событий одной сущности сохраняется
+    private void publish(EntityType type, String key, long version) {
+        publish(type, key, key, version);
+    }
+    private void publish(EntityType type, Object laneKey, String key, long version) {
+        String payload = new CacheInvalidation(transport.getNodeId(), type, version, key).encode();
+        lanes.execute(laneKey, () -> {
+            transport.publish(CHANNEL, payload);
+            publishedCount.increment();
+        });
+    }
+
+
+    // ========== RECEIVE METHODS ==========
+
+
+    private void receive(String payload) {
+        try {
+            CacheInvalidation event = CacheInvalidation.decode(payload);
+            if (event.origin().equals(transport.getNodeId())) return; // свой кеш уже обновлён при записи
+
+            apply(event);
+            appliedCount.increment();
+        }
+        catch (Exception e) {
+            failedCount.increment();
+            log.error("[🔧] ⚠️ Failed to apply cache invalidation '{}': {}", payload, e.getMessage());
+        }
+    }
+    private void apply(CacheInvalidation event) {
+        switch (event.type()) {
+            case USER -> {
+                cacheService.evictUser(event.longKey());
+                if (event.version() > 0) jwtVersions.update(event.longKey(), (int) event.version());
+                userSearch.refresh(event.longKey()); // профиль или статус могли измениться
+            }
+            case CHAT -> cacheService.evictChat(event.longKey());
+            case CHAT_MEMBERS -> cacheService.evictChatMembers(event.longKey());
+            case MESSAGE -> cacheService.evictMessage(event.longKey());
+            case RECENT_MESSAGES -> cacheService.evictRecentMessages(event.longKey());
+            case MESSAGE_ADDED -> applyMessageAdded(event.key());
+            case MESSAGES_READ -> applyMessagesRead(event.key(), toTime(event.version()));
+            case USER_INBOX -> cacheService.evictInbox(event.longKey());
+            case VERIFICATION_TOKEN -> cacheService.deleteVerificationToken(event.key());
+        }
+        log.debug("[⚡] Applied {} invalidation for {} (version {}) from {}", event.type(), event.key(), event.version(), event.origin());
+    }
+
+    // Как DataOrchestrator.saveMessage, только без записи в бд
+    private void applyMessageAdded(String key) {
+        String[] parts = key.split("\\|", 5);
+        long chatId = Long.parseLong(parts[0]);
+        long messageId = Long.parseLong(parts[1]);
+        long senderId = Long.parseLong(parts[2]);
+        if (!parts[4].startsWith("+")) {
+            cacheService.evictRecentMessages(chatId);
+            return;
+        }
+
+        MessageDTO message = MessageDTO.create(messageId, chatId, senderId, parts[4].substring(1), LocalDateTime.parse(parts[3]));
+        cacheService.saveMessage(EntityMapper.toCache(message));
+        cacheService.saveRecentMessage(EntityMapper.toCacheRecent(message));
+        cacheService.addUnreadMessage(chatId, messageId, senderId);
+        cacheService.addInboxMessage(message);
+    }
+    // Как DataOrchestrator.markMessagesUpToRead, только без записи в бд
+    private void applyMessagesRead(String key, LocalDateTime readAt) {
+        String[] parts = key.split("\\|", 4);
+        long chatId = Long.parseLong(parts[0]);
+        long userId = Long.parseLong(parts[1]);
+        long previousMessageId = Long.parseLong(parts[2]);
+        long messageId = Long.parseLong(parts[3]);
+
+        cacheService.markRecentMessagesRead(chatId, userId, previousMessageId, messageId, readAt.minusDays(DBService.READ_STATUS_WINDOW_DAYS));
+        cacheService.markUnreadReadUpTo(chatId, userId, messageId);
+        cacheService.markInboxRead(chatId, userId, messageId);
+    }
+
+    // События могли потеряться - не знаем, что устарело, поэтому сбрасываем всё
+    private void resync() {
+        resyncCount.increment();
+        cacheService.invalidateAll();
+        jwtVersions.loadAll();
+        userSearch.loadAll();
+        log.warn("[🔧] ☝️ Cache invalidations may have been lost, local caches cleared");
+    }
+
+
+    // ========== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ==========
+
+
+    private static long toMillis(LocalDateTime time) {
+        return time == null ? 0 : time.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+    private static LocalDateTime toTime(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC);
+    }
+
+
+    // ========== STATS ==========
+
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("published", publishedCount.sum());
+        stats.put("applied", appliedCount.sum());
+        stats.put("failed", failedCount.sum());
+        stats.put("resyncs", resyncCount.sum());
+        return stats;
+    }
+
+    @Scheduled(fixedDelay = 3_600_000, initialDelay = 10_000) // 1000 * 60 * 60
+    public void logStats() {
+        Map<String, Object> stats = getStats();
+        log.info("📊 Cache Invalidation Bus: published={}, applied={}, failed={}, resyncs={}",
+                stats.get("published"),
+                stats.get("applied"),
+                stats.get("failed"),
+                stats.get("resyncs"));
+    }
+}
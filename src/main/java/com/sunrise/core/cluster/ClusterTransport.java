@@ -0,0 +1,19 @@
+package com.sunrise.core.cluster;
+
+import java.util.function.Consumer;
+
+/*
+ * Канал между инстансами приложения: короткие строковые сообщения по именованным каналам.
+ * Доставка "не более одного раза" - пропавшие сообщения транспорт обозначает вызовом resync-слушателей.
+ */
+public interface ClusterTransport {
+
+    String getNodeId(); // id этого инстанса, уникален на время жизни процесса
+
+    void publish(String channel, String payload);
+
+    void subscribe(String channel, Consumer<String> listener);
+
+    // Вызывается, когда часть сообщений могла потеряться (например, после переподключения)
+    void addResyncListener(Runnable listener);
+}
@@ -0,0 +1,29 @@
+package com.sunrise.core.cluster;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+import java.util.function.Consumer;
+
+// Один инстанс: другим узлам слать нечего, свои же сообщения получателям не нужны
+@Component
+@ConditionalOnProperty(name = "app.cluster.transport", havingValue = "none")
+public class LocalClusterTransport implements ClusterTransport {
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    @Override
+    public String getNodeId() {
+        return nodeId;
+    }
+    @Override
+    public void publish(String channel, String payload) {
+    }
+    @Override
+    public void subscribe(String channel, Consumer<String> listener) {
+    }
+    @Override
+    public void addResyncListener(Runnable listener) {
+    }
+}
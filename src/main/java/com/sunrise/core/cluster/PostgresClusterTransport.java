@@ -0,0 +1,202 @@
+package com.sunrise.core.cluster;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/*
+ * ClusterTransport на Postgres LISTEN/NOTIFY: публикация - pg_notify через общий пул,
+ * приём - отдельное соединение вне пула (держится всё время жизни) и поток, который опрашивает уведомления.
+ * После обрыва соединения переподключаемся и зовём resync-слушателей: уведомления за время обрыва потеряны.
+ * LISTEN поднимается в SmartLifecycle.start - после @PostConstruct-подписок, но до ApplicationStartedEvent,
+ * поэтому прогрев кешей и загрузка индексов уже видят изменения других узлов.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.cluster.transport", havingValue = "postgres", matchIfMissing = true)
+public class PostgresClusterTransport implements ClusterTransport, SmartLifecycle {
+
+    private static final int MAX_PAYLOAD_BYTES = 7_999; // лимит NOTIFY - 8000 байт
+    private static final int POLL_TIMEOUT_MS = 500;
+    private static final long RECONNECT_DELAY_MS = 2_000;
+    private static final int LIFECYCLE_PHASE = SmartLifecycle.DEFAULT_PHASE - 2048; // раньше веб-сервера, останавливаемся после него
+
+    @Value("${spring.datasource.url}")
+    private String url;
+    @Value("${spring.datasource.username}")
+    private String username;
+    @Value("${spring.datasource.password}")
+    private String password;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Map<String, List<Consumer<String>>> listeners = new ConcurrentHashMap<>(); // channel -> слушатели
+    private final List<Runnable> resyncListeners = new CopyOnWriteArrayList<>();
+
+    // трогает только поток слушателя (и start до его запуска)
+    private Connection connection;
+    private final Set<String> listening = new HashSet<>();
+
+    private volatile boolean running;
+    private Thread listenerThread;
+
+    public PostgresClusterTransport(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        try {
+            // первое подключение синхронно: к возврату из start каналы уже слушаются
+            connect();
+            listenNewChannels();
+        }
+        catch (SQLException e) {
+            log.warn("[🔧] ☝️ Cluster listener failed to connect on start, retrying in background: {}", e.getMessage());
+            disconnect(); // поток слушателя подключится сам и позовёт resync
+        }
+        listenerThread = Thread.ofPlatform().name("cluster-listener").daemon(true).start(this::listenLoop);
+        log.info("[🔧] ✅ Cluster transport started, node {}", nodeId);
+    }
+    @Override
+    public void stop() {
+        running = false;
+        if (listenerThread == null) return;
+
+        try {
+            listenerThread.join(POLL_TIMEOUT_MS * 2L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+    @Override
+    public int getPhase() {
+        return LIFECYCLE_PHASE;
+    }
+
+
+    // ========== TRANSPORT METHODS ==========
+
+
+    @Override
+    public String getNodeId() {
+        return nodeId;
+    }
+    @Override
+    public void publish(String channel, String payload) {
+        if (payload.getBytes(StandardCharsets.UTF_8).length > MAX_PAYLOAD_BYTES) {
+            log.error("[🔧] ⚠️ Cluster message to {} is too large ({} chars), dropped", channel, payload.length());
+            return;
+        }
+        jdbcTemplate.query("SELECT pg_notify(?, ?)", rs -> {}, channel, payload);
+    }
+    @Override
+    public void subscribe(String channel, Consumer<String> listener) {
+        listeners.computeIfAbsent(channel, key -> new CopyOnWriteArrayList<>()).add(listener); // LISTEN выполнит поток слушателя
+    }
+    @Override
+    public void addResyncListener(Runnable listener) {
+        resyncListeners.add(listener);
+    }
+
+
+    // ========== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ==========
+
+
+    private void listenLoop() {
+        while (running) {
+            try {
+                if (connection == null) {
+                    connect(); // первое подключение было в start, значит это переподключение - что-то пропустили
+                    resync();
+                }
+                listenNewChannels();
+
+                PGNotification[] notifications = connection.unwrap(PGConnection.class).getNotifications(POLL_TIMEOUT_MS);
+                if (notifications != null) {
+                    for (PGNotification notification : notifications) {
+                        dispatch(notification.getName(), notification.getParameter());
+                    }
+                }
+            }
+            catch (SQLException e) {
+                log.warn("[🔧] ☝️ Cluster listener connection lost, reconnecting in {} ms: {}", RECONNECT_DELAY_MS, e.getMessage());
+                disconnect();
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+        disconnect();
+    }
+    private void connect() throws SQLException {
+        connection = DriverManager.getConnection(url, username, password);
+        connection.setAutoCommit(true);
+        listening.clear();
+    }
+    private void listenNewChannels() throws SQLException {
+        for (String channel : listeners.keySet()) {
+            if (listening.contains(channel)) continue;
+
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("LISTEN \"" + channel.replace("\"", "\"\"") + "\"");
+            }
+            listening.add(channel);
+        }
+    }
+    private void disconnect() {
+        if (connection == null) return;
+
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+            // соединение и так мёртвое
+        }
+        connection = null;
+    }
+    private void dispatch(String channel, String payload) {
+        for (Consumer<String> listener : listeners.getOrDefault(channel, List.of())) {
+            try {
+                listener.accept(payload);
+            }
+            catch (Exception e) {
+                log.error("[🔧] ⚠️ Cluster listener for {} failed: {}", channel, e.getMessage());
+            }
+        }
+    }
+    private void resync() {
+        for (Runnable listener : resyncListeners) {
+            try {
+                listener.run();
+            }
+            catch (Exception e) {
+                log.error("[🔧] ⚠️ Cluster resync listener failed: {}", e.getMessage());
+            }
+        }
+    }
+}
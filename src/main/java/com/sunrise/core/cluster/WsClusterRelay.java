@@ -0,0 +1,226 @@
+package com.sunrise.core.cluster;
+
+import com.sunrise.core.notifier.SessionRegistry;
+import com.sunrise.core.notifier.WsFanOutDispatcher;
+import com.sunrise.helpclass.PartitionedExecutor;
+import com.sunrise.helpclass.PartitionedExecutor.OverflowPolicy;
+import com.sunrise.helpclass.SimpleSnowflakeId;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Пересылка WebSocket-событий на другие узлы: только тем, у кого по WsRouteTable есть подписка на чат или сессия пользователя.
+ * У каждого узла свой канал ws_fwd_<nodeId>. Тело "C|chatId|json" или "U|userId|destination|json"
+ * режется на куски по CHUNK_CHARS (лимит NOTIFY 8000 байт): "msgId|seq|total|кусок", получатель склеивает.
+ * Принятое событие уходит только в локальный WsFanOutDispatcher - дальше не пересылается.
+ */
+@Slf4j
+@Service
+public class WsClusterRelay {
+
+    private static final String NODE_CHANNEL_PREFIX = "ws_fwd_";
+    private static final int CHUNK_CHARS = 1_800; // до 4 байт на символ - 7200 байт с запасом под заголовок
+    private static final long ASSEMBLY_TIMEOUT_MS = 30_000;
+
+    @Value("${app.cluster.relay.lanes}")
+    private int laneCount;
+    @Value("${app.cluster.relay.queue-capacity}")
+    private int queueCapacity;
+    @Value("${app.cluster.relay.overflow-policy}")
+    private OverflowPolicy overflowPolicy;
+
+    private final ClusterTransport transport;
+    private final WsRouteTable routeTable;
+    private final WsFanOutDispatcher fanOut;
+    private final SessionRegistry sessionRegistry;
+    private final ObjectMapper objectMapper;
+
+    private final Map<String, PendingMessage> pendingMessages = new ConcurrentHashMap<>(); // msgId -> недособранное событие
+    private PartitionedExecutor lanes;
+
+    // метрики
+    private final LongAdder forwardedCount = new LongAdder();
+    private final LongAdder receivedCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+
+    private static final class PendingMessage {
+        final String[] chunks;
+        final long startedAt = System.currentTimeMillis();
+        int received;
+
+        PendingMessage(int total) {
+            this.chunks = new String[total];
+        }
+    }
+
+    public WsClusterRelay(ClusterTransport transport, WsRouteTable routeTable, WsFanOutDispatcher fanOut,
+                          SessionRegistry sessionRegistry, ObjectMapper objectMapper) {
+        this.transport = transport;
+        this.routeTable = routeTable;
+        this.fanOut = fanOut;
+        this.sessionRegistry = sessionRegistry;
+        this.objectMapper = objectMapper;
+    }
+
+    @PostConstruct
+    public void start() {
+        lanes = new PartitionedExecutor("ws-relay-", queueCapacity, Collections.nCopies(laneCount, overflowPolicy));
+        transport.subscribe(NODE_CHANNEL_PREFIX + transport.getNodeId(), this::receive);
+    }
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        lanes.shutdown();
+    }
+
+
+    // ========== FORWARD METHODS ==========
+
+
+    public void forwardToChat(long chatId, Object payload) {
+        List<String> peers = routeTable.getNodesForChat(chatId);
+        if (peers.isEmpty()) return;
+
+        lanes.execute(chatId, () -> {
+            String json = toJson(payload);
+            if (json != null) send(peers, "C|" + chatId + "|" + json);
+        });
+    }
+    public void forwardToUser(long userId, String destination, Object payload) {
+        List<String> peers = routeTable.getNodesForUser(userId);
+        if (peers.isEmpty()) return;
+
+        lanes.execute(userId, () -> {
+            String json = toJson(payload);
+            if (json != null) send(peers, "U|" + userId + "|" + destination + "|" + json);
+        });
+    }
+
+    private void send(List<String> peers, String body) {
+        String msgId = Long.toString(SimpleSnowflakeId.nextId(), 36);
+        List<String> chunks = split(body);
+        for (String peer : peers) {
+            try {
+                for (int seq = 0; seq < chunks.size(); seq++) {
+                    transport.publish(NODE_CHANNEL_PREFIX + peer, msgId + "|" + seq + "|" + chunks.size() + "|" + chunks.get(seq));
+                }
+                forwardedCount.increment();
+            }
+            catch (Exception e) {
+                failedCount.increment();
+                log.error("[🔧] ⚠️ Failed to forward websocket event to node {}: {}", peer, e.getMessage());
+            }
+        }
+    }
+
+
+    // ========== RECEIVE METHODS ==========
+
+
+    private void receive(String payload) {
+        try {
+            String[] parts = payload.split("\\|", 4);
+            int seq = Integer.parseInt(parts[1]);
+            int total = Integer.parseInt(parts[2]);
+            if (total == 1) {
+                deliver(parts[3]);
+                return;
+            }
+
+            PendingMessage pending = pendingMessages.computeIfAbsent(parts[0], key -> new PendingMessage(total));
+            if (pending.chunks[seq] == null) pending.received++;
+            pending.chunks[seq] = parts[3];
+            if (pending.received == total) {
+                pendingMessages.remove(parts[0]);
+                deliver(String.join("", pending.chunks));
+            }
+        }
+        catch (Exception e) {
+            failedCount.increment();
+            log.error("[🔧] ⚠️ Failed to accept forwarded websocket event: {}", e.getMessage());
+        }
+    }
+    private void deliver(String body) {
+        receivedCount.increment();
+        if (body.startsWith("C|")) {
+            String[] parts = body.split("\\|", 3);
+            fanOut.sendJsonToChatTopic(Long.parseLong(parts[1]), parts[2].getBytes(StandardCharsets.UTF_8));
+        }
+        else if (body.startsWith("U|")) {
+            String[] parts = body.split("\\|", 4);
+            long userId = Long.parseLong(parts[1]);
+            fanOut.sendJsonToUserSessions(userId, sessionRegistry.getUserSessions(userId), parts[2], parts[3].getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    // Куски потерялись (NOTIFY не гарантирует доставку при обрыве) - выбрасываем
+    @Scheduled(fixedDelay = 60_000, initialDelay = 60_000)
+    public void dropStaleMessages() {
+        long deadline = System.currentTimeMillis() - ASSEMBLY_TIMEOUT_MS;
+        pendingMessages.values().removeIf(pending -> pending.startedAt < deadline);
+    }
+
+
+    // ========== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ==========
+
+
+    private String toJson(Object payload) {
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            log.error("[🔧] ⚠️ Failed to serialize websocket payload {}: {}", payload.getClass().getSimpleName(), e.getMessage());
+            return null;
+        }
+    }
+    private static List<String> split(String body) {
+        if (body.length() <= CHUNK_CHARS) return List.of(body);
+
+        List<String> chunks = new ArrayList<>(body.length() / CHUNK_CHARS + 1);
+        int start = 0;
+        while (start < body.length()) {
+            int end = Math.min(start + CHUNK_CHARS, body.length());
+            if (end < body.length() && Character.isHighSurrogate(body.charAt(end - 1))) end--; // не рвём суррогатную пару
+            chunks.add(body.substring(start, end));
+            start = end;
+        }
+        return chunks;
+    }
+
+
+    // ========== STATS ==========
+
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(routeTable.getStats());
+        stats.put("forwarded", forwardedCount.sum());
+        stats.put("received", receivedCount.sum());
+        stats.put("failed", failedCount.sum());
+        stats.put("pending", pendingMessages.size());
+        return stats;
+    }
+
+    @Scheduled(fixedDelay = 3_600_000, initialDelay = 10_000) // 1000 * 60 * 60
+    public void logStats() {
+        Map<String, Object> stats = getStats();
+        log.info("📊 Cluster Relay: nodes={}, forwarded={}, received={}, failed={}, pending={}",
+                stats.get("nodes"),
+                stats.get("forwarded"),
+                stats.get("received"),
+                stats.get("failed"),
+                stats.get("pending"));
+    }
+}
@@ -0,0 +1,290 @@
+package com.sunrise.core.cluster;
+
+import com.sunrise.core.notifier.SessionRegistry;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/*
+ * Таблица маршрутов WebSocket между узлами: у какого узла есть сессии пользователя и подписки на чат.
+ * Свои изменения узел сразу рассылает дельтами (A - появился, R - пропал), а раз в snapshot-interval-ms -
+ * полный снимок кусками. Снимок заменяет маршруты узла целиком и чинит потерянные дельты;
+ * узел без снимка дольше node-ttl-ms считается ушедшим.
+ *
+ * Формат (канал ws_routes):
+ *   A|node|U|userId   R|node|C|chatId   L|node
+ *   S|node|epoch|seq|last|U или C|id,id,...
+ */
+@Slf4j
+@Service
+public class WsRouteTable {
+
+    static final String CHANNEL = "ws_routes";
+
+    private static final int SNAPSHOT_IDS_PER_CHUNK = 300; // id до 20 символов, кусок влезает в лимит NOTIFY
+
+    @Value("${app.cluster.routes.node-ttl-ms}")
+    private long nodeTtlMs;
+
+    private final ClusterTransport transport;
+    private final SessionRegistry sessionRegistry;
+
+    // свои подписки
+    private final Map<Long, Integer> localChatSubscriptions = new ConcurrentHashMap<>(); // chatId -> число подписок
+    private final Map<String, Map<String, Long>> sessionChatSubscriptions = new ConcurrentHashMap<>(); // sessionId -> (subscriptionId -> chatId)
+
+    // маршруты других узлов
+    private final Map<String, NodeRoutes> nodes = new ConcurrentHashMap<>();
+    private long snapshotEpoch;
+
+    private static final class NodeRoutes {
+        volatile Set<Long> users = ConcurrentHashMap.newKeySet();
+        volatile Set<Long> chats = ConcurrentHashMap.newKeySet();
+        volatile long lastSeen = System.currentTimeMillis();
+
+        // недособранный снимок, трогает только поток транспорта
+        long stagingEpoch = -1;
+        int stagingSeq;
+        Set<Long> stagingUsers;
+        Set<Long> stagingChats;
+    }
+
+    public WsRouteTable(ClusterTransport transport, SessionRegistry sessionRegistry) {
+        this.transport = transport;
+        this.sessionRegistry = sessionRegistry;
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        transport.subscribe(CHANNEL, this::receive);
+        transport.addResyncListener(this::publishSnapshot);
+    }
+    @PreDestroy
+    public void leave() {
+        try {
+            transport.publish(CHANNEL, "L|" + transport.getNodeId());
+        }
+        catch (Exception e) {
+            log.warn("[🔧] ☝️ Failed to announce node leave: {}", e.getMessage());
+        }
+    }
+
+
+    // ========== LOCAL METHODS ==========
+
+
+    // Основные методы (вызывает WsEventListener)
+    public void localUserConnected(long userId) {
+        if (sessionRegistry.getUserSessions(userId).size() == 1) announce('A', 'U', userId); // первая сессия пользователя на узле
+    }
+    public void localUserDisconnected(long userId) {
+        if (sessionRegistry.getUserSessions(userId).isEmpty()) announce('R', 'U', userId);
+    }
+    public void localChatSubscribed(String sessionId, String subscriptionId, long chatId) {
+        Map<String, Long> subscriptions = sessionChatSubscriptions.computeIfAbsent(sessionId, key -> new ConcurrentHashMap<>());
+        if (subscriptions.putIfAbsent(subscriptionId, chatId) != null) return;
+
+        int count = localChatSubscriptions.merge(chatId, 1, Integer::sum);
+        if (count == 1) announce('A', 'C', chatId);
+    }
+    public void localChatUnsubscribed(String sessionId, String subscriptionId) {
+        Map<String, Long> subscriptions = sessionChatSubscriptions.get(sessionId);
+        Long chatId = subscriptions == null ? null : subscriptions.remove(subscriptionId);
+        if (chatId != null) releaseChat(chatId);
+    }
+    public void localSessionClosed(String sessionId) {
+        Map<String, Long> subscriptions = sessionChatSubscriptions.remove(sessionId);
+        if (subscriptions != null) subscriptions.values().forEach(this::releaseChat);
+    }
+
+    // Вспомогательные методы
+    private void releaseChat(long chatId) {
+        Integer left = localChatSubscriptions.computeIfPresent(chatId, (id, count) -> count == 1 ? null : count - 1);
+        if (left == null) announce('R', 'C', chatId);
+    }
+    private void announce(char action, char kind, long id) {
+        try {
+            transport.publish(CHANNEL, action + "|" + transport.getNodeId() + "|" + kind + "|" + id);
+        }
+        catch (Exception e) {
+            log.warn("[🔧] ☝️ Failed to announce route {}{} {}: {}", action, kind, id, e.getMessage()); // починит следующий снимок
+        }
+    }
+
+
+    // ========== LOOKUP METHODS ==========
+
+
+    public List<String> getNodesForChat(long chatId) {
+        return findNodes(routes -> routes.chats.contains(chatId));
+    }
+    public List<String> getNodesForUser(long userId) {
+        return findNodes(routes -> routes.users.contains(userId));
+    }
+
+    // Живые узлы кластера, кроме этого
+    public List<String> getAliveNodes() {
+        return findNodes(routes -> true);
+    }
+
+    private List<String> findNodes(Predicate<NodeRoutes> hasRoute) {
+        if (nodes.isEmpty()) return List.of();
+
+        long aliveSince = System.currentTimeMillis() - nodeTtlMs;
+        List<String> result = new ArrayList<>(2);
+        nodes.forEach((nodeId, routes) -> {
+            if (routes.lastSeen >= aliveSince && hasRoute.test(routes)) result.add(nodeId);
+        });
+        return result;
+    }
+
+
+    // ========== SNAPSHOT METHODS ==========
+
+
+    @Scheduled(fixedDelayString = "${app.cluster.routes.snapshot-interval-ms}", initialDelay = 1_000)
+    public void publishSnapshot() {
+        try {
+            long epoch;
+            synchronized (this) {
+                epoch = ++snapshotEpoch;
+            }
+
+            List<String> chunks = new ArrayList<>();
+            chunkIds('U', sessionRegistry.getUserIds(), chunks);
+            chunkIds('C', localChatSubscriptions.keySet(), chunks);
+            if (chunks.isEmpty()) chunks.add("U|");
+
+            String prefix = "S|" + transport.getNodeId() + "|" + epoch + "|";
+            for (int seq = 0; seq < chunks.size(); seq++) {
+                boolean last = seq == chunks.size() - 1;
+                transport.publish(CHANNEL, prefix + seq + "|" + (last ? 1 : 0) + "|" + chunks.get(seq));
+            }
+        }
+        catch (Exception e) {
+            log.warn("[🔧] ☝️ Failed to publish route snapshot: {}", e.getMessage());
+        }
+        dropDeadNodes();
+    }
+
+    private static void chunkIds(char kind, Collection<Long> ids, List<String> chunks) {
+        StringBuilder chunk = new StringBuilder().append(kind).append('|');
+        int inChunk = 0;
+        for (Long id : ids) {
+            if (inChunk == SNAPSHOT_IDS_PER_CHUNK) {
+                chunks.add(chunk.toString());
+                chunk.setLength(2);
+                inChunk = 0;
+            }
+            if (inChunk > 0) chunk.append(',');
+            chunk.append(id);
+            inChunk++;
+        }
+        if (inChunk > 0) chunks.add(chunk.toString());
+    }
+    private void dropDeadNodes() {
+        long aliveSince = System.currentTimeMillis() - nodeTtlMs;
+        nodes.entrySet().removeIf(entry -> {
+            boolean dead = entry.getValue().lastSeen < aliveSince;
+            if (dead) log.info("[🔧] ☝️ Node {} stopped sending routes, dropped", entry.getKey());
+            return dead;
+        });
+    }
+
+
+    // ========== RECEIVE METHODS ==========
+
+
+    private void receive(String payload) {
+        try {
+            String[] parts = payload.split("\\|", 7);
+            String nodeId = parts[1];
+            if (nodeId.equals(transport.getNodeId())) return;
+
+            switch (parts[0]) {
+                case "A", "R" -> applyDelta(nodeId, parts[0].equals("A"), parts[2].charAt(0), Long.parseLong(parts[3]));
+                case "S" -> applySnapshotChunk(nodeId, Long.parseLong(parts[2]), Integer.parseInt(parts[3]), parts[4].equals("1"), parts[5].charAt(0), parts[6]);
+                case "L" -> {
+                    nodes.remove(nodeId);
+                    log.info("[🔧] ✅ Node {} left the cluster", nodeId);
+                }
+                default -> log.warn("[🔧] ☝️ Unknown route message: {}", payload);
+            }
+        }
+        catch (Exception e) {
+            log.error("[🔧] ⚠️ Failed to apply route message '{}': {}", payload, e.getMessage());
+        }
+    }
+    private void applyDelta(String nodeId, boolean add, char kind, long id) {
+        NodeRoutes routes = nodes.computeIfAbsent(nodeId, key -> new NodeRoutes());
+        Set<Long> live = kind == 'U' ? routes.users : routes.chats;
+        Set<Long> staging = kind == 'U' ? routes.stagingUsers : routes.stagingChats;
+        if (add) {
+            live.add(id);
+            if (staging != null) staging.add(id);
+        } else {
+            live.remove(id);
+            if (staging != null) staging.remove(id);
+        }
+    }
+    private void applySnapshotChunk(String nodeId, long epoch, int seq, boolean last, char kind, String ids) {
+        NodeRoutes routes = nodes.computeIfAbsent(nodeId, key -> new NodeRoutes());
+        routes.lastSeen = System.currentTimeMillis();
+
+        if (seq == 0) {
+            routes.stagingEpoch = epoch;
+            routes.stagingSeq = 0;
+            routes.stagingUsers = new HashSet<>();
+            routes.stagingChats = new HashSet<>();
+        } else if (routes.stagingEpoch != epoch || routes.stagingSeq + 1 != seq) {
+            routes.stagingEpoch = -1; // пропустили кусок - ждём следующий снимок
+            routes.stagingUsers = null;
+            routes.stagingChats = null;
+            return;
+        }
+        routes.stagingSeq = seq;
+
+        Set<Long> target = kind == 'U' ? routes.stagingUsers : routes.stagingChats;
+        if (!ids.isEmpty()) {
+            for (String id : ids.split(",")) {
+                target.add(Long.parseLong(id));
+            }
+        }
+
+        if (last) {
+            Set<Long> users = ConcurrentHashMap.newKeySet(routes.stagingUsers.size());
+            users.addAll(routes.stagingUsers);
+            Set<Long> chats = ConcurrentHashMap.newKeySet(routes.stagingChats.size());
+            chats.addAll(routes.stagingChats);
+            routes.users = users;
+            routes.chats = chats;
+            routes.stagingEpoch = -1;
+            routes.stagingUsers = null;
+            routes.stagingChats = null;
+        }
+    }
+
+
+    // ========== STATS ==========
+
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("nodes", nodes.size());
+        stats.put("local.users", sessionRegistry.getUserIds().size());
+        stats.put("local.chats", localChatSubscriptions.size());
+        stats.put("remote.users", nodes.values().stream().mapToInt(routes -> routes.users.size()).sum());
+        stats.put("remote.chats", nodes.values().stream().mapToInt(routes -> routes.chats.size()).sum());
+        return stats;
+    }
+}
@@ -1,31 +1,52 @@
 package com.sunrise.core.dataservice;
 
 import com.sunrise.core.dataservice.type.ChatType;
+import com.sunrise.core.dataservice.type.Direction;
 import com.sunrise.entity.cache.*;
+import com.sunrise.entity.dto.MessageDTO;
+import com.sunrise.entity.dto.UserChatDTO;
 
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 
 @SuppressWarnings("NullableProblems")
 @Slf4j
 @Service
 public class CacheService {
 
+    // счётчики для getCacheStatus: меняются вместе с записями, вытеснение снимает вклад через evictionListener
+    private final LongAdder activeUserCount = new LongAdder();
+    private final LongAdder notDeletedChatCount = new LongAdder();
+    private final CacheChatMembersContainer.Counters memberCounters = new CacheChatMembersContainer.Counters();
+
+
     // кэш пользователей
     private final Cache<Long, CacheUser> userCache = Caffeine.newBuilder()  // userId -> CacheUser (пользователи)
             .maximumSize(100_000)
             .expireAfterAccess(1, TimeUnit.HOURS) // 1 h
+            .evictionListener((Long userId, CacheUser user, RemovalCause cause) -> countActiveUser(user, null))
             .recordStats()
             .build();
 
@@ -47,9 +68,11 @@ public class CacheService {
     private final Cache<Long, CacheChat> chatInfoCache = Caffeine.newBuilder() // chatId -> CacheChat (чаты)
             .maximumSize(50_000)
             .expireAfterAccess(12, TimeUnit.HOURS) // 12 h
+            .evictionListener((Long chatId, CacheChat chat, RemovalCause cause) -> countNotDeletedChat(chat, null))
+            .recordStats()
             .build();
 
-    private final Cache<String, Long> personalChatIndex = Caffeine.newBuilder() // "creatorId:userId" -> chatId (личные чаты)
+    private final Cache<Long, Long> personalChatIndex = Caffeine.newBuilder() // personalChatKey(user1, user2) -> chatId (личные чаты)
             .maximumSize(100_000)
             .expireAfterAccess(1, TimeUnit.HOURS)
             .softValues() // при нехватке памяти delete-аем
@@ -61,6 +84,9 @@ public class CacheService {
     private final Cache<Long, CacheChatMembersContainer> chatMembersCache = Caffeine.newBuilder() // chatId -> CacheChatMembersContainer (контейнер с участниками чата)
             .maximumSize(100_000)
             .expireAfterAccess(1, TimeUnit.HOURS)
+            .evictionListener((Long chatId, CacheChatMembersContainer container, RemovalCause cause) -> {
+                if (container != null) container.detach();
+            })
             .recordStats()
             .build();
 
@@ -70,11 +96,51 @@ public class CacheService {
             .recordStats()
             .build();
 
+    private final Cache<Long, CacheChatMessages> recentMessagesCache = Caffeine.newBuilder() // chatId -> CacheChatMessages (последние сообщения и отметки прочтения)
+            .maximumSize(20_000)
+            .expireAfterAccess(1, TimeUnit.HOURS)
+            .recordStats()
+            .build();
+
+    @Value("${app.cache.recent-messages.size}")
+    private int recentMessagesSize = 128; // сколько последних сообщений держим на чат
+
+    private final Cache<Long, CacheChatUnread> unreadCache = Caffeine.newBuilder() // chatId -> CacheChatUnread (непрочитанные участников)
+            .maximumSize(50_000)
+            .expireAfterAccess(1, TimeUnit.HOURS)
+            .recordStats()
+            .build();
+
+
+    // списки чатов пользователей
+    private final Cache<Long, CacheUserInbox> inboxCache = Caffeine.newBuilder() // userId -> CacheUserInbox (отсортированный список чатов)
+            .maximumSize(25_000)
+            .expireAfterWrite(20, TimeUnit.MINUTES) // страхует от пропущенных вступлений с других инстансов
+            .softValues() // при нехватке памяти delete-аем
+            .recordStats()
+            .build();
+    private final Map<Long, Set<Long>> inboxesByChat = new ConcurrentHashMap<>(); // chatId -> userId, у кого чат в списке (чистится лениво)
+    private final Cache<Long, Long> inboxChatVersions = Caffeine.newBuilder() // chatId -> inboxEpoch последнего изменения (защищает загрузку из бд)
+            .expireAfterWrite(1, TimeUnit.MINUTES)
+            .recordStats()
+            .build();
+    private final Cache<Long, Long> inboxUserVersions = Caffeine.newBuilder() // userId -> inboxEpoch последнего изменения
+            .expireAfterWrite(1, TimeUnit.MINUTES)
+            .recordStats()
+            .build();
+    private final AtomicLong inboxEpoch = new AtomicLong();
+    private final Cache<Long, Boolean> oversizedInboxes = Caffeine.newBuilder() // userId -> true, если чатов больше inbox.max-chats
+            .maximumSize(25_000)
+            .expireAfterWrite(20, TimeUnit.MINUTES)
+            .recordStats()
+            .build();
+
 
     // кеш токенов подтверждения
     private final Cache<String, CacheVerificationToken> verificationTokenCache = Caffeine.newBuilder() // token -> CacheVerificationToken (токены подтверждения)
             .maximumSize(50_000)
             .expireAfterWrite(2, TimeUnit.HOURS)
+            .recordStats()
             .build();
 
 
@@ -85,16 +151,12 @@ public class CacheService {
     // Основные методы
     public void saveUsers(Collection<CacheUser> users) {
         for (CacheUser user : users){
-            userCache.put(user.getId(), CacheUser.copy(user));
-            usernameIndex.put(user.getUsername().toLowerCase(), user.getId());
-            emailIndex.put(user.getEmail().toLowerCase(), user.getId());
+            putUser(user);
         }
         log.debug("[⚡] Batch saved {} users to cache and updated indexes || saveUsers", users.size());
     }
     public void saveUser(CacheUser user) {
-        userCache.put(user.getId(), CacheUser.copy(user));
-        usernameIndex.put(user.getUsername().toLowerCase(), user.getId());
-        emailIndex.put(user.getEmail().toLowerCase(), user.getId());
+        putUser(user);
         log.debug("[⚡] Saved user {} in cache and updated indexes || saveUser", user.getId());
     }
     public void updateUserLastLogin(String username, LocalDateTime lastLogin) {
@@ -102,13 +164,11 @@ public class CacheService {
         Long userId = usernameIndex.getIfPresent(key);
         if (userId == null) return;
 
-        getUserLink(userId).ifPresent(user -> {
-            user.setLastLogin(lastLogin);
-            log.debug("[⚡] Updated last login for user {} to {} || updateUserLastLogin", user.getId(), lastLogin);
-        });
+        CacheUser updated = updateUser(userId, user -> user.withLastLogin(lastLogin));
+        if (updated != null) log.debug("[⚡] Updated last login for user {} to {} || updateUserLastLogin", userId, lastLogin);
     }
     public void updateUserProfile(long userId, String username, String name, LocalDateTime updatedAt) {
-        getUserLink(userId).ifPresent(user -> {
+        CacheUser updated = updateUser(userId, user -> {
             // Обновляем username в индексе
             String oldUsername = user.getUsername();
             if (!oldUsername.equals(username)) {
@@ -118,54 +178,49 @@ public class CacheService {
             }
 
             // Обновляем данные пользователя
-            user.setUsernameAndName(username, name, updatedAt);
-            log.debug("[⚡] Updated profile for user {}: username={}, name={} || updateUserProfile", userId, username, name);
+            return user.withUsernameAndName(username, name, updatedAt);
         });
+        if (updated != null) log.debug("[⚡] Updated profile for user {}: username={}, name={} || updateUserProfile", userId, username, name);
     }
     public void updateUserEmail(long userId, String email, int newVersion, LocalDateTime updatedAt) {
-        getUserLink(userId).ifPresent(user -> {
-            user.setEmail(email, newVersion, updatedAt);
-            log.debug("[⚡] Updated email for user {} || updateUserEmailAndJwtVersion", userId);
+        CacheUser updated = updateUser(userId, user -> {
+            String oldEmail = user.getEmail();
+            if (!oldEmail.equalsIgnoreCase(email)) {
+                emailIndex.invalidate(oldEmail.toLowerCase());
+                emailIndex.put(email.toLowerCase(), userId);
+            }
+            return user.withEmail(email, newVersion, updatedAt);
         });
+        if (updated != null) log.debug("[⚡] Updated email for user {} || updateUserEmail", userId);
     }
     public void updateUserPassword(long userId, String password, int newVersion, LocalDateTime updatedAt) {
-        getUserLink(userId).ifPresent(user -> {
-            user.setPassword(password, newVersion, updatedAt);
-            log.debug("[⚡] Updated password for user {} || updateUserEmailAndJwtVersion", userId);
-        });
+        CacheUser updated = updateUser(userId, user -> user.withPassword(password, newVersion, updatedAt));
+        if (updated != null) log.debug("[⚡] Updated password for user {} || updateUserPassword", userId);
     }
     public void enableUser(long userId, int newVersion, LocalDateTime updatedAt) {
-        getUserLink(userId).ifPresent(cacheUser -> {
-            cacheUser.enable(newVersion, updatedAt);
-            log.debug("[⚡] Enabled user {} in cache || enableUser", userId);
-        });
+        CacheUser updated = updateUser(userId, user -> user.withEnabled(newVersion, updatedAt));
+        if (updated != null) log.debug("[⚡] Enabled user {} in cache || enableUser", userId);
     }
     public void disableUser(long userId, int newVersion, LocalDateTime updatedAt) {
-        getUserLink(userId).ifPresent(cacheUser -> {
-            cacheUser.disable(newVersion, updatedAt);
-            log.debug("[⚡] Disabled user  {} in cache || disableUser", userId);
-        });
+        CacheUser updated = updateUser(userId, user -> user.withDisabled(newVersion, updatedAt));
+        if (updated != null) log.debug("[⚡] Disabled user  {} in cache || disableUser", userId);
     }
     public void deleteUser(long userId, int newVersion, LocalDateTime updatedAt) {
-        getUserLink(userId).ifPresent(cacheUser -> {
-            cacheUser.delete(newVersion, updatedAt);
-            log.debug("[⚡] Marked user {} as deleted in cache || deleteUser", userId);
-        });
+        CacheUser updated = updateUser(userId, user -> user.withDeleted(newVersion, updatedAt));
+        if (updated != null) log.debug("[⚡] Marked user {} as deleted in cache || deleteUser", userId);
     }
     public void restoreUser(long userId, int newVersion, LocalDateTime updatedAt) {
-        getUserLink(userId).ifPresent(cacheUser -> {
-            cacheUser.restore(newVersion, updatedAt);
-            log.debug("[⚡] Restored user {} in cache || restoreUser", userId);
-        });
+        CacheUser updated = updateUser(userId, user -> user.withRestored(newVersion, updatedAt));
+        if (updated != null) log.debug("[⚡] Restored user {} in cache || restoreUser", userId);
     }
 
     // Вспомогательные методы
     public Map<Long, CacheUser> getCacheUsersByIds(Collection<Long> userIds, Collection<Long> missingIds) {
         Map<Long, CacheUser> result = new HashMap<>(userIds.size());
         for (Long userId : userIds) {
-            Optional<CacheUser> user = getUser(userId);
-            if (user.isPresent()) {
-                result.put(userId, user.get());
+            CacheUser user = userCache.getIfPresent(userId);
+            if (user != null) {
+                result.put(userId, user);
             } else if (missingIds != null) {
                 missingIds.add(userId);
             }
@@ -184,9 +239,6 @@ public class CacheService {
         return user;
     }
     public Optional<CacheUser> getUser(long userId) {
-        return Optional.ofNullable(CacheUser.copy(userCache.getIfPresent(userId)));
-    }
-    private Optional<CacheUser> getUserLink(long userId) {
         return Optional.ofNullable(userCache.getIfPresent(userId));
     }
 
@@ -197,6 +249,31 @@ public class CacheService {
         return emailIndex.getIfPresent(email.toLowerCase()) != null;
     }
 
+    private void putUser(CacheUser user) {
+        userCache.asMap().compute(user.getId(), (id, old) -> {
+            CacheUser current = old == null ? user : user.supersede(old);
+            countActiveUser(old, current);
+            return current;
+        });
+        usernameIndex.put(user.getUsername().toLowerCase(), user.getId());
+        emailIndex.put(user.getEmail().toLowerCase(), user.getId());
+    }
+    // userCache меняем только через compute, чтобы счётчик активных видел и старое, и новое состояние
+    private CacheUser updateUser(long userId, UnaryOperator<CacheUser> update) {
+        return userCache.asMap().computeIfPresent(userId, (id, user) -> {
+            CacheUser updated = update.apply(user);
+            countActiveUser(user, updated);
+            return updated;
+        });
+    }
+    private void countActiveUser(CacheUser old, CacheUser current) {
+        int delta = isActiveUser(current) - isActiveUser(old);
+        if (delta != 0) activeUserCount.add(delta);
+    }
+    private static int isActiveUser(CacheUser user) {
+        return user != null && !user.isDeleted() && user.isEnabled() ? 1 : 0;
+    }
+
 
     // ========== CHAT METHODS ==========
 
@@ -204,43 +281,19 @@ public class CacheService {
     // Основные методы
     public void saveChats(Collection<CacheChat> newChats) {
         for (CacheChat newChat : newChats){
-            Optional<CacheChat> oldChat = getChatLink(newChat.getId());
-            if (oldChat.isPresent()) {
-                oldChat.get().updateFromCache(newChat);
-            } else {
-                chatInfoCache.put(newChat.getId(), CacheChat.copy(newChat));
-                if (newChat.isPersonal()) {
-                    savePersonalChatIndex(newChat.getId(), newChat.getCreatedBy(), newChat.getOpponentId());
-                }
-            }
+            putChat(newChat);
         }
         log.debug("[⚡] Batch saved {} chats to cache and updated indexes || saveChats", newChats.size());
     }
     public void saveChat(CacheChat newChat) {
-        Optional<CacheChat> oldChat = getChatLink(newChat.getId());
-        if (oldChat.isPresent()) {
-            oldChat.get().updateFromCache(newChat);
-        } else {
-            chatInfoCache.put(newChat.getId(), CacheChat.copy(newChat));
-            if (newChat.isPersonal()) {
-                savePersonalChatIndex(newChat.getId(), newChat.getCreatedBy(), newChat.getOpponentId());
-            }
-        }
+        putChat(newChat);
         log.debug("[⚡] Saved chat {} in cache and updated indexes || saveChat", newChat.getId());
     }
     public void saveChatAndAddMembers(CacheChat newChat, Collection<CacheChatMember> members) {
         long chatId = newChat.getId();
 
         // добавляем чат
-        Optional<CacheChat> oldChat = getChatLink(newChat.getId());
-        if (oldChat.isPresent()) {
-            oldChat.get().updateFromCache(newChat);
-        } else {
-            chatInfoCache.put(newChat.getId(), CacheChat.copy(newChat));
-            if (newChat.isPersonal()) {
-                savePersonalChatIndex(newChat.getId(), newChat.getCreatedBy(), newChat.getOpponentId());
-            }
-        }
+        putChat(newChat);
         log.debug("[⚡] Saved chat {} in cache and updated indexes || saveChatAndAddMembers", newChat.getId());
 
         // добавляем участников
@@ -248,59 +301,89 @@ public class CacheService {
         log.debug("[⚡] Batch saved {} chat members in chat {} || saveChatAndAddMembers", members.size(), chatId);
     }
     public void updateChatInfo(long chatId, String newName, String newDescription, LocalDateTime updatedAt) {
-        getChatLink(chatId).ifPresent(chat -> {
-            chat.setChatInfo(newName, newDescription, updatedAt);
-            log.debug("[⚡] Updated chatName {} and chatDescription {} on chat {} || updateChatInfo", newName, newDescription, chatId);
-        });
+        CacheChat updated = updateChat(chatId, chat -> chat.withChatInfo(newName, newDescription, updatedAt));
+        if (updated != null) log.debug("[⚡] Updated chatName {} and chatDescription {} on chat {} || updateChatInfo", newName, newDescription, chatId);
     }
     public void updateChatType(long chatId, ChatType newType, LocalDateTime updatedAt) {
-        getChatLink(chatId).ifPresent(chat -> {
-            chat.setChatType(newType, updatedAt);
-            log.debug("[⚡] Updated chatType {} on chat {} || updateChatCreator", newType, chatId);
-        });
+        CacheChat updated = updateChat(chatId, chat -> chat.withChatType(newType, updatedAt));
+        if (updated != null) log.debug("[⚡] Updated chatType {} on chat {} || updateChatType", newType, chatId);
     }
     public void deleteChat(long chatId, LocalDateTime updatedAt) {
-        getChatLink(chatId).ifPresent(chat -> {
-            chat.delete(updatedAt);
-            log.debug("[⚡] Marked chat {} as deleted in cache || deleteChat", chatId);
-        });
+        CacheChat updated = updateChat(chatId, chat -> chat.withDeleted(updatedAt));
+        if (updated != null) log.debug("[⚡] Marked chat {} as deleted in cache || deleteChat", chatId);
     }
     public void restoreChat(long chatId, LocalDateTime updatedAt) {
-        getChatLink(chatId).ifPresent(chat -> {
-            chat.restore(updatedAt);
-            log.debug("[⚡] Restored chat {} in cache || restoreChat", chatId);
-        });
+        CacheChat updated = updateChat(chatId, chat -> chat.withRestored(updatedAt));
+        if (updated != null) log.debug("[⚡] Restored chat {} in cache || restoreChat", chatId);
     }
 
 
     // Вспомогательные методы
     public Optional<CacheChat> getPersonalChat(long userId1, long userId2) {
-        String key = getPersonalChatKey(userId1, userId2);
+        long key = getPersonalChatKey(userId1, userId2);
         Long chatId = personalChatIndex.getIfPresent(key);
         if (chatId == null) return Optional.empty();
 
-        Optional<CacheChat> chat = getChat(chatId);
-        if (chat.isEmpty()) personalChatIndex.invalidate(key);
-        return chat;
+        CacheChat chat = chatInfoCache.getIfPresent(chatId);
+        if (chat == null) {
+            personalChatIndex.invalidate(key);
+            return Optional.empty();
+        }
+
+        // ключ - хеш пары, при коллизии просто идём в бд
+        return isPersonalChatOf(chat, userId1, userId2) ? Optional.of(chat) : Optional.empty();
     }
     public Optional<CacheChat> getChat(long chatId) {
-        return Optional.ofNullable(CacheChat.copy(chatInfoCache.getIfPresent(chatId)));
-    }
-    private Optional<CacheChat> getChatLink(long chatId) {
         return Optional.ofNullable(chatInfoCache.getIfPresent(chatId));
     }
 
     public Optional<Boolean> isActiveChat(long chatId) {
-        return getChatLink(chatId).map(CacheChat::isActive);
+        return getChat(chatId).map(CacheChat::isActive);
     }
     public Optional<Boolean> isActiveGroupChat(long chatId) {
-        return getChatLink(chatId).filter(CacheChat::isActive).map(CacheChat::isNotPersonal);
+        return getChat(chatId).filter(CacheChat::isActive).map(CacheChat::isNotPersonal);
+    }
+
+    private void putChat(CacheChat newChat) {
+        chatInfoCache.asMap().compute(newChat.getId(), (id, old) -> {
+            CacheChat current = old == null ? newChat : newChat.supersede(old);
+            countNotDeletedChat(old, current);
+            return current;
+        });
+        if (newChat.isPersonal()) {
+            savePersonalChatIndex(newChat.getId(), newChat.getCreatedBy(), newChat.getOpponentId());
+        }
+    }
+    private CacheChat updateChat(long chatId, UnaryOperator<CacheChat> update) {
+        return chatInfoCache.asMap().computeIfPresent(chatId, (id, chat) -> {
+            CacheChat updated = update.apply(chat);
+            countNotDeletedChat(chat, updated);
+            return updated;
+        });
+    }
+    private void countNotDeletedChat(CacheChat old, CacheChat current) {
+        int delta = isNotDeletedChat(current) - isNotDeletedChat(old);
+        if (delta != 0) notDeletedChatCount.add(delta);
+    }
+    private static int isNotDeletedChat(CacheChat chat) {
+        return chat != null && !chat.isDeleted() ? 1 : 0;
     }
 
 
-    // Методы для сохранения индекса личного чата TODO: НАДО ПОДУМАТЬ ЧТО СДЕЛАТЬ
-    private String getPersonalChatKey(long userId1, long userId2) {
-        return Math.min(userId1, userId2) + ":" + Math.max(userId1, userId2);
+    // Методы для сохранения индекса личного чата
+    private static long getPersonalChatKey(long userId1, long userId2) {
+        // два 64-битных id в один long без потерь не упаковать, поэтому перемешиваем пару (min, max)
+        long low = Math.min(userId1, userId2);
+        long high = Math.max(userId1, userId2);
+        long hash = low * 0x9E3779B97F4A7C15L ^ Long.rotateLeft(high * 0xC2B2AE3D27D4EB4FL, 31);
+        return hash ^ (hash >>> 29);
+    }
+    private static boolean isPersonalChatOf(CacheChat chat, long userId1, long userId2) {
+        if (!chat.isPersonal() || chat.getOpponentId() == null) return false;
+
+        long creatorId = chat.getCreatedBy();
+        long opponentId = chat.getOpponentId();
+        return (creatorId == userId1 && opponentId == userId2) || (creatorId == userId2 && opponentId == userId1);
     }
     public void savePersonalChatIndex(long chatId, long creatorId, long opponentId) {
         personalChatIndex.put(getPersonalChatKey(creatorId, opponentId), chatId);
@@ -313,7 +396,7 @@ public class CacheService {
 
     // Основные методы
     private CacheChatMembersContainer getOrCreateChatMembersContainer(long chatId) {
-        return chatMembersCache.get(chatId, key -> new CacheChatMembersContainer(chatId));
+        return chatMembersCache.get(chatId, key -> new CacheChatMembersContainer(chatId, memberCounters));
     }
     private Optional<CacheChatMembersContainer> getChatMembersContainer(long chatId) {
         return Optional.ofNullable(chatMembersCache.getIfPresent(chatId));
@@ -322,22 +405,27 @@ public class CacheService {
     public void saveChatMembers(long chatId, Collection<CacheChatMember> members) {
         // Обновляем контейнер
         getOrCreateChatMembersContainer(chatId).addBatch(members);
-        getChatLink(chatId).ifPresent(chat -> chat.onAddMembers(members.size()));
+        updateChat(chatId, chat -> chat.withMembersAdded(members.size()));
         log.debug("[⚡] Batch saved {} chat members in chat {} || saveChatMember", members.size(), chatId);
     }
+    // Участники из бд при прогреве: счётчик кешированного чата их уже учитывает, поэтому его не трогаем
+    public void loadChatMembers(long chatId, Collection<CacheChatMember> members) {
+        getOrCreateChatMembersContainer(chatId).addBatch(members);
+        log.debug("[⚡] Loaded {} chat members in chat {} || loadChatMembers", members.size(), chatId);
+    }
     public void saveChatMember(CacheChatMember chatMember) {
         long chatId = chatMember.getChatId();
         long userId = chatMember.getUserId();
 
         // Обновляем контейнер
         getOrCreateChatMembersContainer(chatId).add(chatMember);
-        getChatLink(chatId).ifPresent(CacheChat::onAddMember);
+        updateChat(chatId, chat -> chat.withMembersAdded(1));
         log.debug("[⚡] Saved chat member {} in chat {} || saveChatMember", userId, chatId);
     }
     public void updateChatMemberInfo(long chatId, long userId, String tag, LocalDateTime updatedAt) {
         getChatMembersContainer(chatId).ifPresent(cont -> {
             cont.updateInfo(userId, tag, updatedAt);
-            log.debug("[⚡] Updated info for member {} in chat {} || updateAdminRights", userId, chatId);
+            log.debug("[⚡] Updated info for member {} in chat {} || updateChatMemberInfo", userId, chatId);
         });
     }
     public void updateChatMemberAdminRights(long chatId, long userId, boolean isAdmin, LocalDateTime updatedAt) {
@@ -349,7 +437,7 @@ public class CacheService {
     public void updateChatMemberSettings(long chatId, long userId, boolean isPinned, LocalDateTime updatedAt) {
         getChatMembersContainer(chatId).ifPresent(cont -> {
             cont.updateSettings(userId, isPinned, updatedAt);
-            log.debug("[⚡] Updated settings for member {} in chat {} || updateAdminRights", userId, chatId);
+            log.debug("[⚡] Updated settings for member {} in chat {} || updateChatMemberSettings", userId, chatId);
         });
     }
     public void removeChatMember(long userId, long chatId, LocalDateTime updatedAt) {
@@ -358,7 +446,7 @@ public class CacheService {
             c.markMemberAsDeleted(userId, updatedAt);
             log.debug("[⚡] Marked member {} as deleted in chat {} || removeChatMember", userId, chatId);
         });
-        getChatLink(chatId).ifPresent(CacheChat::onDeleteMember);
+        updateChat(chatId, chat -> chat.withMemberDeleted());
     }
     public void restoreChatMember(long userId, long chatId, boolean isAdmin, LocalDateTime updatedAt) {
         // Обновляем контейнер
@@ -366,7 +454,7 @@ public class CacheService {
             c.restoreMember(userId, isAdmin, updatedAt);
             log.debug("[⚡] Restored member {} in chat {} (isAdmin={}) || restoreChatMember", userId, chatId, isAdmin);
         });
-        getChatLink(chatId).ifPresent(CacheChat::onAddMember);
+        updateChat(chatId, chat -> chat.withMembersAdded(1));
     }
 
 
@@ -374,13 +462,13 @@ public class CacheService {
     public Map<Long, CacheChatMember> getChatMembers(long chatId, Collection<Long> userIds, Collection<Long> missingIds) {
         Map<Long, CacheChatMember> result = new HashMap<>(userIds.size());
 
-        Optional<CacheChatMembersContainer> containerOpt = getChatMembersContainer(chatId);
-        if (containerOpt.isPresent()) {
-            CacheChatMembersContainer container = containerOpt.get();
+        CacheChatMembersContainer container = chatMembersCache.getIfPresent(chatId);
+        if (container != null) {
+            Map<Long, CacheChatMember> members = container.getMembers();
             for (Long userId : userIds) {
-                Optional<CacheChatMember> member = container.getMember(userId);
-                if (member.isPresent()) {
-                    result.put(userId, member.get());
+                CacheChatMember member = members.get(userId);
+                if (member != null) {
+                    result.put(userId, member);
                 } else if (missingIds != null) {
                     missingIds.add(userId);
                 }
@@ -395,14 +483,16 @@ public class CacheService {
         return getChatMembersContainer(chatId).flatMap(c -> c.getMember(userId));
     }
     public Optional<Boolean> hasActiveChatMember(long chatId, long userId) {
-        return getChatMembersContainer(chatId).flatMap(c -> c.hasMemberAndIsActive(userId));
+        CacheChatMembersContainer container = chatMembersCache.getIfPresent(chatId);
+        return container == null ? Optional.empty() : container.hasMemberAndIsActive(userId);
     }
 
 
 
     // Вспомогательные методы
     public Optional<Boolean> isActiveAdminInActiveChat(long chatId, long userId) {
-        return getChatMembersContainer(chatId).flatMap(c -> c.isAdmin(userId));
+        CacheChatMembersContainer container = chatMembersCache.getIfPresent(chatId);
+        return container == null ? Optional.empty() : container.isAdmin(userId);
     }
     public Optional<List<CacheChatMember>> getChatAdmins(long chatId) {
         return getChatMembersContainer(chatId).map(CacheChatMembersContainer::getChatAdmins);
@@ -414,7 +504,7 @@ public class CacheService {
 
     // Основные методы
     public void saveVerificationToken(CacheVerificationToken cache) {
-        verificationTokenCache.put(cache.getToken(), CacheVerificationToken.copy(cache));
+        verificationTokenCache.put(cache.getToken(), cache);
         log.debug("[⚡] Saved verification token for user {} (token={}) || saveVerificationToken", cache.getUserId(), cache.getToken());
     }
     public void deleteVerificationToken(String token) {
@@ -424,7 +514,7 @@ public class CacheService {
 
     // Вспомогательные методы
     public Optional<CacheVerificationToken> getVerificationToken(String token) {
-        return Optional.ofNullable(CacheVerificationToken.copy(verificationTokenCache.getIfPresent(token)));
+        return Optional.ofNullable(verificationTokenCache.getIfPresent(token));
     }
 
 
@@ -434,38 +524,298 @@ public class CacheService {
 
     // Основные методы
     public void saveMessage(CacheMessage message) {
-        CacheMessage copy = CacheMessage.copy(message);
-        messageCache.put(copy.getId(), copy);
-        log.debug("[⚡] Saved message {} in cache (chat={}, sender={}) || saveMessage", copy.getId(), copy.getChatId(), copy.getSenderId());
+        messageCache.asMap().merge(message.getId(), message, (old, fresh) -> fresh.supersede(old));
+        log.debug("[⚡] Saved message {} in cache (chat={}, sender={}) || saveMessage", message.getId(), message.getChatId(), message.getSenderId());
     }
     public void saveMessages(List<CacheMessage> messages) {
         for (CacheMessage message : messages) {
-            messageCache.put(message.getId(), CacheMessage.copy(message));
+            messageCache.asMap().merge(message.getId(), message, (old, fresh) -> fresh.supersede(old));
         }
         log.debug("[⚡] Batch saved {} messages to cache || saveMessages", messages.size());
     }
-    public void restoreMessage(long messageId) {
-        getMessageLink(messageId).ifPresent(message -> {
-            message.restore();
-            log.debug("[⚡] Restored message {} in cache || restoreMessage", messageId);
-        });
+    public void restoreMessage(long messageId, LocalDateTime updatedAt) {
+        CacheMessage updated = messageCache.asMap().computeIfPresent(messageId, (id, message) -> message.withRestored(updatedAt));
+        if (updated != null) log.debug("[⚡] Restored message {} in cache || restoreMessage", messageId);
     }
     public void deleteMessage(long messageId, LocalDateTime deletedAt) {
-        getMessageLink(messageId).ifPresent(message -> {
-            message.delete(deletedAt);
-            log.debug("[⚡] Deleted message {} in cache || deleteMessage", messageId);
-        });
+        CacheMessage updated = messageCache.asMap().computeIfPresent(messageId, (id, message) -> message.withDeleted(deletedAt));
+        if (updated != null) log.debug("[⚡] Deleted message {} in cache || deleteMessage", messageId);
     }
 
     // Вспомогательные методы
     public Optional<CacheMessage> getMessage(long messageId) {
-        return Optional.ofNullable(CacheMessage.copy(messageCache.getIfPresent(messageId)));
-    }
-    private Optional<CacheMessage> getMessageLink(long messageId) {
         return Optional.ofNullable(messageCache.getIfPresent(messageId));
     }
 
 
+
+    // ========== RECENT MESSAGES METHODS ==========
+
+
+    // Основные методы
+    public long beginRecentMessagesSeed(long chatId) {
+        return getOrCreateRecentMessages(chatId).beginSeed();
+    }
+    public void seedRecentMessages(long chatId, List<CacheRecentMessage> newestFirst, boolean complete, long epoch) {
+        CacheChatMessages recent = recentMessagesCache.getIfPresent(chatId);
+        if (recent != null && recent.seed(newestFirst, complete, epoch))
+            log.debug("[⚡] Seeded {} recent messages of chat {} (complete={}) || seedRecentMessages", newestFirst.size(), chatId, complete);
+    }
+    public void saveRecentMessage(CacheRecentMessage message) {
+        CacheChatMessages recent = recentMessagesCache.getIfPresent(message.getChatId());
+        if (recent != null) recent.insert(message);
+    }
+    public void updateRecentMessage(long chatId, long messageId, String newText, LocalDateTime updatedAt) {
+        CacheChatMessages recent = recentMessagesCache.getIfPresent(chatId);
+        if (recent != null) recent.update(messageId, message -> message.withText(newText, updatedAt));
+    }
+    public void deleteRecentMessage(long chatId, long messageId, LocalDateTime updatedAt) {
+        CacheChatMessages recent = recentMessagesCache.getIfPresent(chatId);
+        if (recent != null) recent.update(messageId, message -> message.withDeleted(updatedAt));
+    }
+    public void restoreRecentMessage(long chatId, long messageId, LocalDateTime updatedAt) {
+        CacheChatMessages recent = recentMessagesCache.getIfPresent(chatId);
+        if (recent != null) recent.update(messageId, message -> message.withRestored(updatedAt));
+    }
+    public void markRecentMessagesRead(long chatId, long userId, long previousMessageId, long messageId, LocalDateTime minSentAt) {
+        CacheChatMessages recent = recentMessagesCache.getIfPresent(chatId);
+        if (recent != null) recent.markReadUpTo(userId, previousMessageId, messageId, minSentAt);
+    }
+    public void saveReadWatermark(long chatId, long userId, long lastReadMessageId) {
+        getOrCreateRecentMessages(chatId).saveReadWatermark(userId, lastReadMessageId);
+    }
+
+    // Вспомогательные методы
+    public Optional<List<CacheRecentMessage>> getRecentMessagesPage(long chatId, Long cursor, int count, Direction direction) {
+        CacheChatMessages recent = recentMessagesCache.getIfPresent(chatId);
+        if (recent == null) return Optional.empty();
+
+        return recent.getPage(cursor, count, direction);
+    }
+    public Optional<Long> getReadWatermark(long chatId, long userId) {
+        CacheChatMessages recent = recentMessagesCache.getIfPresent(chatId);
+        if (recent == null) return Optional.empty();
+
+        return recent.getReadWatermark(userId);
+    }
+    private CacheChatMessages getOrCreateRecentMessages(long chatId) {
+        return recentMessagesCache.get(chatId, id -> new CacheChatMessages(id, recentMessagesSize));
+    }
+
+
+
+    // ========== UNREAD METHODS ==========
+
+
+    // Основные методы
+    public long beginUnreadSeed(long chatId) {
+        return unreadCache.get(chatId, CacheChatUnread::new).beginSeed();
+    }
+    public void seedUnreadCount(long chatId, long userId, int count, long epoch) {
+        CacheChatUnread unread = unreadCache.getIfPresent(chatId);
+        if (unread != null) unread.seed(userId, count, epoch);
+    }
+    public void addUnreadMessage(long chatId, long messageId, long senderId) {
+        CacheChatUnread unread = unreadCache.getIfPresent(chatId);
+        if (unread != null) unread.messageAdded(messageId, senderId);
+    }
+    public void markUnreadReadUpTo(long chatId, long userId, long messageId) {
+        CacheChatUnread unread = unreadCache.getIfPresent(chatId);
+        if (unread == null) return;
+
+        // список чатов обновляется после счётчиков, поэтому его последнее сообщение счётчики уже учли
+        CacheUserInbox inbox = inboxCache.getIfPresent(userId);
+        long knownLastMessageId = inbox == null ? 0 : inbox.getLastMessageId(chatId).orElse(0);
+        unread.readUpTo(userId, messageId, knownLastMessageId);
+    }
+    public void removeUnreadCount(long chatId, long userId) {
+        CacheChatUnread unread = unreadCache.getIfPresent(chatId);
+        if (unread != null) unread.remove(userId);
+    }
+    public void resetUnreadCounts(long chatId) {
+        CacheChatUnread unread = unreadCache.getIfPresent(chatId);
+        if (unread != null) unread.reset();
+    }
+
+    // Вспомогательные методы
+    public OptionalInt getUnreadCount(long chatId, long userId) {
+        CacheChatUnread unread = unreadCache.getIfPresent(chatId);
+        if (unread == null) return OptionalInt.empty();
+
+        return unread.get(userId);
+    }
+
+
+
+    // ========== INBOX METHODS ==========
+
+
+    // Основные методы
+    public long beginInboxSeed() {
+        return inboxEpoch.get();
+    }
+    public boolean seedInbox(long userId, Collection<UserChatDTO> chats, Set<Long> pinnedChatIds, long epoch) {
+        // пока читали из бд, могли прийти сообщения или смениться состав - тогда загрузка устарела
+        Long userVersion = inboxUserVersions.getIfPresent(userId);
+        if (userVersion != null && userVersion > epoch) return false;
+        for (UserChatDTO chat : chats) {
+            Long chatVersion = inboxChatVersions.getIfPresent(chat.getId());
+            if (chatVersion != null && chatVersion > epoch) return false;
+        }
+
+        CacheUserInbox inbox = new CacheUserInbox(userId, chats, pinnedChatIds);
+        for (Long chatId : inbox.getChatIds()) {
+            inboxesByChat.computeIfAbsent(chatId, id -> ConcurrentHashMap.newKeySet()).add(userId);
+        }
+        inboxCache.put(userId, inbox);
+        log.debug("[⚡] Seeded inbox of user {} with {} chats || seedInbox", userId, chats.size());
+        return true;
+    }
+    public void addInboxMessage(MessageDTO message) {
+        touchInboxChat(message.getChatId());
+        forEachInboxWithChat(message.getChatId(), inbox -> {
+            if (!inbox.messageAdded(message)) inboxCache.invalidate(inbox.getUserId());
+        });
+    }
+    public void updateInboxMessage(long chatId, long messageId, String newText, LocalDateTime updatedAt) {
+        touchInboxChat(chatId);
+        forEachInboxWithChat(chatId, inbox -> inbox.messageUpdated(chatId, messageId, newText, updatedAt));
+    }
+    public void markInboxRead(long chatId, long userId, long messageId) {
+        touchInboxUser(userId);
+        CacheUserInbox inbox = inboxCache.getIfPresent(userId);
+        if (inbox != null) inbox.readUpTo(chatId, messageId);
+    }
+    public void pinInboxChat(long chatId, long userId, boolean isPinned) {
+        touchInboxUser(userId);
+        CacheUserInbox inbox = inboxCache.getIfPresent(userId);
+        if (inbox != null) inbox.setPinned(chatId, isPinned);
+    }
+    public void evictInbox(long userId) {
+        touchInboxUser(userId);
+        inboxCache.invalidate(userId);
+    }
+    public void evictInboxesWithChat(long chatId) {
+        touchInboxChat(chatId);
+        Set<Long> userIds = inboxesByChat.remove(chatId);
+        if (userIds != null) inboxCache.invalidateAll(userIds);
+    }
+
+    // Вспомогательные методы
+    public Optional<List<UserChatDTO>> getInboxPage(long userId, Boolean isPinnedCursor, Long lastMsgIdCursor, Long chatIdCursor, int count) {
+        CacheUserInbox inbox = inboxCache.getIfPresent(userId);
+        if (inbox == null) return Optional.empty();
+
+        return Optional.of(inbox.getPage(isPinnedCursor, lastMsgIdCursor, chatIdCursor, count));
+    }
+    public Optional<Set<Long>> getInboxChatIds(long userId) {
+        CacheUserInbox inbox = inboxCache.getIfPresent(userId);
+        return inbox == null ? Optional.empty() : Optional.of(inbox.getChatIds());
+    }
+    public void markInboxOversized(long userId) {
+        oversizedInboxes.put(userId, Boolean.TRUE);
+    }
+    public boolean isInboxOversized(long userId) {
+        return oversizedInboxes.getIfPresent(userId) != null;
+    }
+    private void forEachInboxWithChat(long chatId, Consumer<CacheUserInbox> action) {
+        Set<Long> userIds = inboxesByChat.get(chatId);
+        if (userIds == null) return;
+
+        for (Long userId : userIds) {
+            CacheUserInbox inbox = inboxCache.getIfPresent(userId);
+            if (inbox == null) userIds.remove(userId); // список вытеснен - убираем из индекса
+            else action.accept(inbox);
+        }
+    }
+    private void touchInboxChat(long chatId) {
+        inboxChatVersions.put(chatId, inboxEpoch.incrementAndGet());
+    }
+    private void touchInboxUser(long userId) {
+        inboxUserVersions.put(userId, inboxEpoch.incrementAndGet());
+    }
+
+
+
+    // ========== INVALIDATION METHODS ==========
+
+
+    // Основные методы (изменения с других инстансов, см. CacheInvalidationBus)
+    public void evictUser(long userId) {
+        CacheUser removed = userCache.asMap().remove(userId);
+        if (removed == null) return;
+        countActiveUser(removed, null);
+
+        usernameIndex.asMap().remove(removed.getUsername().toLowerCase(), userId);
+        emailIndex.asMap().remove(removed.getEmail().toLowerCase(), userId);
+        log.debug("[⚡] Evicted user {} || evictUser", userId);
+    }
+    public void evictChat(long chatId) {
+        countNotDeletedChat(chatInfoCache.asMap().remove(chatId), null);
+        evictInboxesWithChat(chatId);
+        log.debug("[⚡] Evicted chat {} || evictChat", chatId);
+    }
+    public void evictChatMembers(long chatId) {
+        detachChatMembers(chatMembersCache.asMap().remove(chatId));
+        evictInboxesWithChat(chatId); // состав поменялся - пересоберём списки
+        log.debug("[⚡] Evicted members of chat {} || evictChatMembers", chatId);
+    }
+    public void evictMessage(long messageId) {
+        messageCache.invalidate(messageId);
+        log.debug("[⚡] Evicted message {} || evictMessage", messageId);
+    }
+    public void evictRecentMessages(long chatId) {
+        recentMessagesCache.invalidate(chatId);
+        unreadCache.invalidate(chatId); // счётчики считаются по тем же сообщениям
+        evictInboxesWithChat(chatId);
+        log.debug("[⚡] Evicted recent messages of chat {} || evictRecentMessages", chatId);
+    }
+    public void invalidateAll() {
+        // invalidateAll не зовёт evictionListener, поэтому счётные кеши чистим поштучно
+        userCache.asMap().keySet().forEach(userId -> countActiveUser(userCache.asMap().remove(userId), null));
+        usernameIndex.invalidateAll();
+        emailIndex.invalidateAll();
+        chatInfoCache.asMap().keySet().forEach(chatId -> countNotDeletedChat(chatInfoCache.asMap().remove(chatId), null));
+        personalChatIndex.invalidateAll();
+        chatMembersCache.asMap().keySet().forEach(chatId -> detachChatMembers(chatMembersCache.asMap().remove(chatId)));
+        messageCache.invalidateAll();
+        recentMessagesCache.invalidateAll();
+        unreadCache.invalidateAll();
+        inboxCache.invalidateAll();
+        inboxesByChat.clear();
+        verificationTokenCache.invalidateAll();
+        log.debug("[⚡] Invalidated all caches || invalidateAll");
+    }
+
+    // Вспомогательные методы
+    private static void detachChatMembers(CacheChatMembersContainer container) {
+        if (container != null) container.detach();
+    }
+
+
+    // ========== SNAPSHOT METHODS ==========
+
+
+    // Обход для записи снимка: только то, что восстановимо без бд (сообщения и списки чатов быстро устаревают)
+    public void forEachUser(Consumer<CacheUser> action) {
+        userCache.asMap().values().forEach(action);
+    }
+    public void forEachChat(Consumer<CacheChat> action) {
+        chatInfoCache.asMap().values().forEach(action);
+    }
+    public void forEachChatMember(Consumer<CacheChatMember> action) {
+        for (CacheChatMembersContainer container : chatMembersCache.asMap().values()) {
+            container.getMembers().values().forEach(action);
+        }
+    }
+    public void forEachPersonalChatIndex(BiConsumer<Long, Long> action) {
+        personalChatIndex.asMap().forEach(action);
+    }
+    public void loadPersonalChatIndex(long personalChatKey, long chatId) {
+        personalChatIndex.put(personalChatKey, chatId);
+    }
+
+
     // ========== CACHE STATISTICS AND MANAGEMENT ==========
 
 
@@ -483,36 +833,17 @@ public class CacheService {
         final int deletedMembersCount;
     }
 
+    // Все значения поддерживаются счётчиками, поэтому /cache-status не обходит кеши
     public CacheStats getCacheStatus() {
-        Map<Long, CacheUser> userCacheSnapshot = userCache.asMap();
-        Map<Long, CacheChat> chatInfoCacheSnapshot = chatInfoCache.asMap();
-        Map<Long, CacheChatMembersContainer> containersSnapshot = chatMembersCache.asMap();
-
-        long activatedUserCount = userCacheSnapshot.values().stream()
-                .filter(user -> !user.isDeleted() && user.isEnabled())
-                .count();
-
-        int totalChatMembers = containersSnapshot.values().stream()
-                .mapToInt(container -> container.getMembers().size())
-                .sum();
-
-        int totalAdminRights = containersSnapshot.values().stream()
-                .mapToInt(container -> container.getAdminIds().size())
-                .sum();
-
-        int totalDeletedMembers = containersSnapshot.values().stream()
-                .mapToInt(container -> container.getDeletedMemberIds().size())
-                .sum();
-
         return new CacheStats(
-            activatedUserCount,
-            userCacheSnapshot.size(),
-            chatInfoCacheSnapshot.values().stream().filter(chat -> !chat.isDeleted()).count(),
-            chatInfoCacheSnapshot.size(),
-            totalChatMembers,
-            totalAdminRights,
+            activeUserCount.sum(),
+            (int)userCache.estimatedSize(),
+            notDeletedChatCount.sum(),
+            (int)chatInfoCache.estimatedSize(),
+            memberCounters.members.intValue(),
+            memberCounters.admins.intValue(),
             (int)verificationTokenCache.estimatedSize(),
-            totalDeletedMembers
+            memberCounters.deleted.intValue()
         );
     }
     public void printCacheStats() {
@@ -526,6 +857,25 @@ public class CacheService {
         log.info("   └─ Admin Rights: {}", stats.getAdminRightsCount());
     }
 
+    // Все кеши в Micrometer: размер, попадания/промахи, вытеснения (cache.* с тегом cache)
+    public void bindMetrics(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, userCache, "user");
+        CaffeineCacheMetrics.monitor(registry, usernameIndex, "username_index");
+        CaffeineCacheMetrics.monitor(registry, emailIndex, "email_index");
+        CaffeineCacheMetrics.monitor(registry, chatInfoCache, "chat");
+        CaffeineCacheMetrics.monitor(registry, personalChatIndex, "personal_chat_index");
+        CaffeineCacheMetrics.monitor(registry, chatMembersCache, "chat_members");
+        CaffeineCacheMetrics.monitor(registry, messageCache, "message");
+        CaffeineCacheMetrics.monitor(registry, recentMessagesCache, "recent_messages");
+        CaffeineCacheMetrics.monitor(registry, unreadCache, "unread");
+        CaffeineCacheMetrics.monitor(registry, inboxCache, "inbox");
+        CaffeineCacheMetrics.monitor(registry, inboxChatVersions, "inbox_chat_versions");
+        CaffeineCacheMetrics.monitor(registry, inboxUserVersions, "inbox_user_versions");
+        CaffeineCacheMetrics.monitor(registry, oversizedInboxes, "oversized_inboxes");
+        CaffeineCacheMetrics.monitor(registry, verificationTokenCache, "verification_token");
+        registry.gauge("cache.inbox.chat_index.size", inboxesByChat, Map::size);
+    }
+
     public Map<String, Object> getDetailedCacheStatus() {
         Map<String, Object> stats = new HashMap<>();
 
@@ -549,6 +899,24 @@ public class CacheService {
         stats.put("chatMembersContainerCache.missRate", containerStats.missRate());
         stats.put("chatMembersContainerCache.evictionCount", containerStats.evictionCount());
 
+        var recentStats = recentMessagesCache.stats();
+        stats.put("recentMessagesCache.estimatedSize", recentMessagesCache.estimatedSize());
+        stats.put("recentMessagesCache.hitRate", recentStats.hitRate());
+        stats.put("recentMessagesCache.missRate", recentStats.missRate());
+        stats.put("recentMessagesCache.evictionCount", recentStats.evictionCount());
+
+        var unreadStats = unreadCache.stats();
+        stats.put("unreadCache.estimatedSize", unreadCache.estimatedSize());
+        stats.put("unreadCache.hitRate", unreadStats.hitRate());
+        stats.put("unreadCache.missRate", unreadStats.missRate());
+        stats.put("unreadCache.evictionCount", unreadStats.evictionCount());
+
+        var inboxStats = inboxCache.stats();
+        stats.put("inboxCache.estimatedSize", inboxCache.estimatedSize());
+        stats.put("inboxCache.hitRate", inboxStats.hitRate());
+        stats.put("inboxCache.missRate", inboxStats.missRate());
+        stats.put("inboxCache.evictionCount", inboxStats.evictionCount());
+
         var tokenStats = verificationTokenCache.stats();
         stats.put("tokenCache.estimatedSize", verificationTokenCache.estimatedSize());
         stats.put("tokenCache.hitRate", tokenStats.hitRate());
@@ -591,6 +959,24 @@ public class CacheService {
                 Math.round((Double)cacheStats.get("chatMembersContainerCache.missRate") * 100),
                 cacheStats.get("chatMembersContainerCache.evictionCount"));
 
+        log.info("   ├─ Recent Messages Cache: size={}, hitRate={}%, missRate={}%, evictions={}",
+                cacheStats.get("recentMessagesCache.estimatedSize"),
+                Math.round((Double)cacheStats.get("recentMessagesCache.hitRate") * 100),
+                Math.round((Double)cacheStats.get("recentMessagesCache.missRate") * 100),
+                cacheStats.get("recentMessagesCache.evictionCount"));
+
+        log.info("   ├─ Unread Cache: size={}, hitRate={}%, missRate={}%, evictions={}",
+                cacheStats.get("unreadCache.estimatedSize"),
+                Math.round((Double)cacheStats.get("unreadCache.hitRate") * 100),
+                Math.round((Double)cacheStats.get("unreadCache.missRate") * 100),
+                cacheStats.get("unreadCache.evictionCount"));
+
+        log.info("   ├─ Inbox Cache: size={}, hitRate={}%, missRate={}%, evictions={}",
+                cacheStats.get("inboxCache.estimatedSize"),
+                Math.round((Double)cacheStats.get("inboxCache.hitRate") * 100),
+                Math.round((Double)cacheStats.get("inboxCache.missRate") * 100),
+                cacheStats.get("inboxCache.evictionCount"));
+
         log.info("   ├─ Token Cache: size={}, hitRate={}, missRate={}, evictions={}",
                 cacheStats.get("tokenCache.estimatedSize"),
                 (Double)cacheStats.get("tokenCache.hitRate") * 100,
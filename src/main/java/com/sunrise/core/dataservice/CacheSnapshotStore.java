@@ -0,0 +1,361 @@
+package com.sunrise.core.dataservice;
+
+import com.sunrise.core.dataservice.type.ChatType;
+import com.sunrise.entity.cache.CacheChat;
+import com.sunrise.entity.cache.CacheChatMember;
+import com.sunrise.entity.cache.CacheUser;
+
+import jakarta.annotation.PreDestroy;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.function.Consumer;
+
+/*
+ * Снимок CacheService в файл при штатной остановке и загрузка его при следующем старте.
+ * Формат - поток записей "тип + поля" в memory-mapped файле: пишем сегментами, читаем одним отображением.
+ * В снимок идут пользователи, чаты, участники и индекс личных чатов; сообщения и списки чатов устаревают быстрее, чем перезапуск.
+ * Снимок одноразовый: после чтения файл удаляется, а слишком старый не читается вовсе.
+ * Что поменялось в бд после снимка (например, другими инстансами), догружает CacheWarmer по updated_at от водяного знака.
+ */
+@Slf4j
+@Service
+public class CacheSnapshotStore {
+
+    private static final int MAGIC = 0x53554E53; // "SUNS"
+    private static final int FORMAT_VERSION = 1;
+    private static final long SEGMENT_SIZE = 64L << 20; // 64 MB
+    private static final int RECORD_BUFFER_SIZE = 16 << 10; // строки ограничены схемой, запись заведомо меньше
+    private static final int RESTORE_CHUNK_SIZE = 1_000;
+    private static final long CLOCK_SKEW_SECONDS = 60; // часы инстансов и бд могут расходиться
+
+    private static final byte END = 0;
+    private static final byte USER = 1;
+    private static final byte CHAT = 2;
+    private static final byte MEMBER = 3;
+    private static final byte PERSONAL_CHAT = 4;
+
+    @Value("${app.cache.snapshot.enabled}")
+    private boolean enabled;
+    @Value("${app.cache.snapshot.path}")
+    private String path;
+    @Value("${app.cache.snapshot.max-age-minutes}")
+    private long maxAgeMinutes;
+
+    private final CacheService cacheService;
+
+    // Что загружено из снимка: по этим id CacheWarmer догружает изменения новее watermark
+    public record Restored(LocalDateTime watermark, Long[] userIds, Long[] chatIds, Long[] memberChatIds) {}
+
+    public CacheSnapshotStore(CacheService cacheService) {
+        this.cacheService = cacheService;
+    }
+
+
+    // ========== SAVE ==========
+
+
+    @PreDestroy
+    public void save() {
+        if (!enabled) return;
+
+        long startedAt = System.currentTimeMillis();
+        Path target = Path.of(path);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(target.toAbsolutePath().getParent());
+
+            long[] counts = new long[5];
+            try (SnapshotWriter writer = new SnapshotWriter(temp)) {
+                ByteBuffer record = writer.record;
+                record.putInt(MAGIC).putInt(FORMAT_VERSION);
+                putTime(record, LocalDateTime.now()); // в той же зоне, что и updated_at в бд
+                writer.flushRecord();
+
+                cacheService.forEachUser(user -> { writeUser(record, user); writer.flushRecord(); counts[USER]++; });
+                cacheService.forEachChat(chat -> { writeChat(record, chat); writer.flushRecord(); counts[CHAT]++; });
+                cacheService.forEachChatMember(member -> { writeMember(record, member); writer.flushRecord(); counts[MEMBER]++; });
+                cacheService.forEachPersonalChatIndex((key, chatId) -> {
+                    record.put(PERSONAL_CHAT).putLong(key).putLong(chatId);
+                    writer.flushRecord();
+                    counts[PERSONAL_CHAT]++;
+                });
+                record.put(END); // без маркера конца снимок считается оборванным
+                writer.flushRecord();
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            log.info("[🔧] ✅ Saved cache snapshot: users={}, chats={}, members={}, personalChats={}, {} bytes in {} ms",
+                    counts[USER], counts[CHAT], counts[MEMBER], counts[PERSONAL_CHAT], Files.size(target), System.currentTimeMillis() - startedAt);
+        }
+        catch (Exception e) {
+            log.error("[🔧] ⚠️ Failed to save cache snapshot to {}: {}", target, e.getMessage());
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {}
+        }
+    }
+
+
+    // ========== RESTORE ==========
+
+
+    public Optional<Restored> restore() {
+        if (!enabled) return Optional.empty();
+
+        Path source = Path.of(path);
+        if (!Files.exists(source)) return Optional.empty();
+
+        long startedAt = System.currentTimeMillis();
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) throw new IOException("snapshot is too large: " + channel.size());
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) throw new IOException("unknown snapshot format");
+            LocalDateTime snapshotAt = getTime(buffer);
+            if (snapshotAt.isBefore(LocalDateTime.now().minusMinutes(maxAgeMinutes))) {
+                log.info("[🔧] ☝️ Cache snapshot from {} is older than {} min, skipped", snapshotAt, maxAgeMinutes);
+                return Optional.empty();
+            }
+
+            Restored restored = readRecords(buffer, snapshotAt.minusSeconds(CLOCK_SKEW_SECONDS));
+            log.info("[🔧] ✅ Restored cache snapshot from {}: users={}, chats={}, memberChats={} in {} ms",
+                    snapshotAt, restored.userIds().length, restored.chatIds().length, restored.memberChatIds().length, System.currentTimeMillis() - startedAt);
+            return Optional.of(restored);
+        }
+        catch (Exception e) {
+            // часть записей могла попасть в кеш - сбрасываем, чтобы не работать с неполным снимком
+            cacheService.invalidateAll();
+            log.error("[🔧] ⚠️ Failed to restore cache snapshot from {}: {}", source, e.getMessage());
+            return Optional.empty();
+        }
+        finally {
+            try {
+                Files.deleteIfExists(source); // снимок одноразовый
+            } catch (IOException e) {
+                log.warn("[🔧] ☝️ Failed to delete cache snapshot {}: {}", source, e.getMessage());
+            }
+        }
+    }
+
+    private Restored readRecords(ByteBuffer buffer, LocalDateTime watermark) throws IOException {
+        List<Long> userIds = new ArrayList<>();
+        List<Long> chatIds = new ArrayList<>();
+        List<Long> memberChatIds = new ArrayList<>();
+
+        List<CacheUser> users = new ArrayList<>(RESTORE_CHUNK_SIZE);
+        List<CacheChat> chats = new ArrayList<>(RESTORE_CHUNK_SIZE);
+        List<CacheChatMember> members = new ArrayList<>();
+        while (true) {
+            byte type = buffer.get();
+            switch (type) {
+                case USER -> {
+                    CacheUser user = readUser(buffer);
+                    users.add(user);
+                    userIds.add(user.getId());
+                    if (users.size() == RESTORE_CHUNK_SIZE) flush(users, cacheService::saveUsers);
+                }
+                case CHAT -> {
+                    CacheChat chat = readChat(buffer);
+                    chats.add(chat);
+                    chatIds.add(chat.getId());
+                    if (chats.size() == RESTORE_CHUNK_SIZE) flush(chats, cacheService::saveChats);
+                }
+                case MEMBER -> {
+                    CacheChatMember member = readMember(buffer);
+                    if (!members.isEmpty() && members.getFirst().getChatId() != member.getChatId()) flushMembers(members);
+                    if (members.isEmpty()) memberChatIds.add(member.getChatId()); // участники пишутся контейнер за контейнером
+                    members.add(member);
+                }
+                case PERSONAL_CHAT -> cacheService.loadPersonalChatIndex(buffer.getLong(), buffer.getLong());
+                case END -> {
+                    flush(users, cacheService::saveUsers);
+                    flush(chats, cacheService::saveChats);
+                    flushMembers(members);
+                    return new Restored(watermark, userIds.toArray(Long[]::new), chatIds.toArray(Long[]::new), memberChatIds.toArray(Long[]::new));
+                }
+                default -> throw new IOException("unknown record type " + type);
+            }
+        }
+    }
+    private static <T> void flush(List<T> chunk, Consumer<Collection<T>> save) {
+        if (chunk.isEmpty()) return;
+
+        save.accept(List.copyOf(chunk));
+        chunk.clear();
+    }
+    private void flushMembers(List<CacheChatMember> members) {
+        if (members.isEmpty()) return;
+
+        cacheService.loadChatMembers(members.getFirst().getChatId(), List.copyOf(members));
+        members.clear();
+    }
+
+
+    // ========== ЗАПИСИ ==========
+
+
+    private static void writeUser(ByteBuffer out, CacheUser user) {
+        out.put(USER).putLong(user.getId());
+        putString(out, user.getUsername());
+        putString(out, user.getName());
+        putString(out, user.getEmail());
+        putString(out, user.getHashPassword());
+        putTime(out, user.getLastLogin());
+        putTime(out, user.getProfileUpdatedAt());
+        putTime(out, user.getUpdatedAt());
+        putTime(out, user.getCreatedAt());
+        out.putInt(user.getJwtVersion());
+        putBoolean(out, user.isEnabled());
+        putTime(out, user.getDeletedAt());
+        putBoolean(out, user.isDeleted());
+    }
+    private static CacheUser readUser(ByteBuffer in) {
+        return new CacheUser(
+            in.getLong(), getString(in), getString(in), getString(in), getString(in),
+            getTime(in), getTime(in), getTime(in), getTime(in),
+            in.getInt(), getBoolean(in), getTime(in), getBoolean(in)
+        );
+    }
+
+    private static void writeChat(ByteBuffer out, CacheChat chat) {
+        out.put(CHAT).putLong(chat.getId());
+        putString(out, chat.getName());
+        putString(out, chat.getDescription());
+        putString(out, chat.getChatType().name());
+        out.putLong(chat.getOpponentId() == null ? Long.MIN_VALUE : chat.getOpponentId());
+        out.putInt(chat.getMembersCount()).putInt(chat.getDeletedMembersCount());
+        putTime(out, chat.getUpdatedAt());
+        putTime(out, chat.getCreatedAt());
+        out.putLong(chat.getCreatedBy());
+        putTime(out, chat.getDeletedAt());
+        putBoolean(out, chat.isDeleted());
+    }
+    private static CacheChat readChat(ByteBuffer in) {
+        long id = in.getLong();
+        String name = getString(in);
+        String description = getString(in);
+        ChatType chatType = ChatType.valueOf(getString(in));
+        long opponentId = in.getLong();
+        return new CacheChat(
+            id, name, description, chatType, opponentId == Long.MIN_VALUE ? null : opponentId,
+            in.getInt(), in.getInt(), getTime(in), getTime(in), in.getLong(), getTime(in), getBoolean(in)
+        );
+    }
+
+    private static void writeMember(ByteBuffer out, CacheChatMember member) {
+        out.put(MEMBER).putLong(member.getChatId()).putLong(member.getUserId());
+        putString(out, member.getTag());
+        putTime(out, member.getSettingsUpdatedAt());
+        putTime(out, member.getUpdatedAt());
+        putTime(out, member.getJoinedAt());
+        putBoolean(out, member.isPinned());
+        putBoolean(out, member.isAdmin());
+        putTime(out, member.getDeletedAt());
+        putBoolean(out, member.isDeleted());
+    }
+    private static CacheChatMember readMember(ByteBuffer in) {
+        return new CacheChatMember(
+            in.getLong(), in.getLong(), getString(in), getTime(in), getTime(in), getTime(in),
+            getBoolean(in), getBoolean(in), getTime(in), getBoolean(in)
+        );
+    }
+
+
+    // ========== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ==========
+
+
+    private static void putString(ByteBuffer out, String value) {
+        if (value == null) {
+            out.putInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.putInt(bytes.length).put(bytes);
+    }
+    private static String getString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) return null;
+
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    private static void putTime(ByteBuffer out, LocalDateTime time) {
+        out.putLong(time == null ? Long.MIN_VALUE : time.toEpochSecond(ZoneOffset.UTC));
+        out.putInt(time == null ? 0 : time.getNano());
+    }
+    private static LocalDateTime getTime(ByteBuffer in) {
+        long seconds = in.getLong();
+        int nanos = in.getInt();
+        return seconds == Long.MIN_VALUE ? null : LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC);
+    }
+    private static void putBoolean(ByteBuffer out, boolean value) {
+        out.put((byte) (value ? 1 : 0));
+    }
+    private static boolean getBoolean(ByteBuffer in) {
+        return in.get() != 0;
+    }
+
+    // Запись собирается в record и копируется в отображение; не хватает места - отображаем следующий сегмент
+    private static final class SnapshotWriter implements Closeable {
+        final ByteBuffer record = ByteBuffer.allocate(RECORD_BUFFER_SIZE);
+        private final FileChannel channel;
+        private MappedByteBuffer segment;
+        private long segmentStart;
+
+        // В снимке хеши паролей и почты - файл создаём заново и только для владельца (rw-------)
+        SnapshotWriter(Path file) throws IOException {
+            Files.deleteIfExists(file); // остаток прошлой попытки мог быть создан с другими правами
+            Set<StandardOpenOption> options = EnumSet.of(StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            channel = isPosix(file)
+                    ? FileChannel.open(file, options, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")))
+                    : FileChannel.open(file, options); // не POSIX (Windows) - права наследуются от каталога
+        }
+        private static boolean isPosix(Path file) {
+            return file.getFileSystem().supportedFileAttributeViews().contains("posix");
+        }
+
+        void flushRecord() {
+            record.flip();
+            try {
+                if (segment == null || segment.remaining() < record.remaining()) {
+                    long position = segment == null ? 0 : segmentStart + segment.position();
+                    if (segment != null) segment.force();
+                    segment = channel.map(FileChannel.MapMode.READ_WRITE, position, SEGMENT_SIZE);
+                    segmentStart = position;
+                }
+                segment.put(record);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            } finally {
+                record.clear();
+            }
+        }
+        @Override
+        public void close() throws IOException {
+            try {
+                if (segment != null) {
+                    segment.force();
+                    channel.truncate(segmentStart + segment.position()); // хвост последнего сегмента не нужен
+                }
+            } finally {
+                channel.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package com.sunrise.core.dataservice;
+
+import com.sunrise.core.dataservice.type.ChatType;
+import com.sunrise.entity.cache.CacheChat;
+import com.sunrise.entity.cache.CacheChatMember;
+import com.sunrise.entity.cache.CacheUser;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Прогрев CacheService после деплоя: без него первые минуты весь трафик промахивается мимо кеша и бьёт в бд по одной строке.
+ * Курсорами (fetchSize внутри read-only транзакции) тянем недавно заходивших пользователей, а также чаты с недавними
+ * сообщениями и их участников. Потоки чтения и раскладка порций по кешу идут параллельно в ForkJoinPool.
+ * Прогрев синхронный на ApplicationStartedEvent: Spring объявляет ReadinessState.ACCEPTING_TRAFFIC только после него,
+ * поэтому балансировщик не пустит трафик на холодный инстанс. По timeout-ms прогрев обрывается, и инстанс стартует с тем, что успели.
+ * jwtVersion прогревать не нужно - JwtVersionRegistry и так держит всю таблицу.
+ * Если остался свежий снимок CacheSnapshotStore, вместо полного прогрева догружаем только изменённое после него.
+ */
+@Slf4j
+@Service
+public class CacheWarmer {
+
+    private static final int FETCH_SIZE = 5_000;
+    private static final int CHUNK_SIZE = 1_000;
+
+    @Value("${app.cache.warm-up.enabled}")
+    private boolean enabled;
+    @Value("${app.cache.warm-up.active-days}")
+    private int activeDays;
+    @Value("${app.cache.warm-up.max-users}")
+    private int maxUsers;
+    @Value("${app.cache.warm-up.max-chats}")
+    private int maxChats;
+    @Value("${app.cache.warm-up.parallelism}")
+    private int parallelism;
+    @Value("${app.cache.warm-up.timeout-ms}")
+    private long timeoutMs;
+
+    private final CacheService cacheService;
+    private final CacheSnapshotStore snapshots;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction; // pgjdbc отдаёт строки порциями только вне autocommit
+
+    private volatile boolean cancelled;
+
+    // метрики
+    private final LongAdder usersLoaded = new LongAdder();
+    private final LongAdder chatsLoaded = new LongAdder();
+    private final LongAdder membersLoaded = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private volatile long durationMs;
+    private volatile boolean completed;
+
+    public CacheWarmer(CacheService cacheService, CacheSnapshotStore snapshots, JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.cacheService = cacheService;
+        this.snapshots = snapshots;
+        this.jdbcTemplate = jdbcTemplate;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+
+    // ========== WARM-UP ==========
+
+
+    @EventListener(ApplicationStartedEvent.class)
+    public void warmUp() {
+        if (!enabled) return;
+
+        long startedAt = System.currentTimeMillis();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        Optional<CacheSnapshotStore.Restored> snapshot = snapshots.restore();
+        try {
+            if (snapshot.isPresent()) submitDelta(pool, snapshot.get());
+            else submitFull(pool, LocalDateTime.now().minusDays(activeDays));
+
+            completed = pool.awaitQuiescence(timeoutMs, TimeUnit.MILLISECONDS);
+            if (!completed) {
+                cancelled = true; // курсоры оборвутся на следующей строке
+                log.warn("[🔧] ☝️ Cache warm-up did not finish in {} ms, starting with a partially warmed cache", timeoutMs);
+            }
+        } finally {
+            pool.shutdownNow();
+            durationMs = System.currentTimeMillis() - startedAt;
+        }
+
+        if (snapshot.isPresent() && (!completed || failedCount.sum() > 0)) {
+            cacheService.invalidateAll(); // снимок не догнали до бд - лучше холодный кеш, чем устаревший
+            log.warn("[🔧] ☝️ Cache snapshot delta was not fully applied, caches cleared");
+            return;
+        }
+        log.info("[🔧] ✅ Cache warm-up{}: users={}, chats={}, members={}, failed={} in {} ms", snapshot.isPresent() ? " from snapshot" : "",
+                usersLoaded.sum(), chatsLoaded.sum(), membersLoaded.sum(), failedCount.sum(), durationMs);
+    }
+
+    private void submitFull(ForkJoinPool pool, LocalDateTime activeSince) {
+        pool.execute(() -> run("users", () -> streamUsers(pool, """
+                WHERE is_deleted = false AND last_login >= ?
+                ORDER BY last_login DESC
+                LIMIT ?
+                """, ps -> {
+            ps.setObject(1, activeSince);
+            ps.setInt(2, maxUsers);
+        })));
+        pool.execute(() -> run("chats", () -> {
+            // чаты делим на части по числу потоков: каждая часть своим курсором
+            List<Long> chatIds = loadActiveChatIds(activeSince);
+            int partSize = Math.max(1, (chatIds.size() + parallelism - 1) / parallelism);
+            for (int from = 0; from < chatIds.size(); from += partSize) {
+                Long[] part = chatIds.subList(from, Math.min(from + partSize, chatIds.size())).toArray(Long[]::new);
+                pool.execute(() -> run("chat part", () -> {
+                    streamChats(pool, "WHERE id = ANY(?) AND is_deleted = false", ps -> setIds(ps, 1, part));
+                    streamChatMembers(pool, "WHERE chat_id = ANY(?)", ps -> setIds(ps, 1, part));
+                }));
+            }
+        }));
+    }
+    // После снимка: только строки, изменённые с момента его записи
+    private void submitDelta(ForkJoinPool pool, CacheSnapshotStore.Restored snapshot) {
+        StatementSetter changedSince = ps -> ps.setObject(2, snapshot.watermark());
+        pool.execute(() -> run("users delta", () -> streamUsers(pool, "WHERE id = ANY(?) AND updated_at >= ?",
+                ps -> { setIds(ps, 1, snapshot.userIds()); changedSince.set(ps); })));
+        pool.execute(() -> run("chats delta", () -> streamChats(pool, "WHERE id = ANY(?) AND updated_at >= ?",
+                ps -> { setIds(ps, 1, snapshot.chatIds()); changedSince.set(ps); })));
+        pool.execute(() -> run("members delta", () -> streamChatMembers(pool, "WHERE chat_id = ANY(?) AND updated_at >= ?",
+                ps -> { setIds(ps, 1, snapshot.memberChatIds()); changedSince.set(ps); })));
+    }
+
+    private void streamUsers(ForkJoinPool pool, String condition, StatementSetter setter) {
+        List<CacheUser> chunk = new ArrayList<>(CHUNK_SIZE);
+        stream("""
+                SELECT id, username, name, email, hash_password, last_login, profile_updated_at, updated_at, created_at,
+                       jwt_version, is_enabled, deleted_at, is_deleted
+                FROM users
+                """ + condition, setter, rs -> {
+            chunk.add(toCacheUser(rs));
+            if (chunk.size() == CHUNK_SIZE) flushUsers(pool, chunk);
+        });
+        flushUsers(pool, chunk);
+    }
+    private List<Long> loadActiveChatIds(LocalDateTime activeSince) {
+        return jdbcTemplate.queryForList("""
+                SELECT chat_id
+                FROM messages
+                WHERE sent_at >= ?
+                GROUP BY chat_id
+                ORDER BY MAX(id) DESC
+                LIMIT ?
+                """, Long.class, activeSince, maxChats);
+    }
+    private void streamChats(ForkJoinPool pool, String condition, StatementSetter setter) {
+        List<CacheChat> chunk = new ArrayList<>(CHUNK_SIZE);
+        stream("""
+                SELECT id, name, description, chat_type, opponent_id, members_count, deleted_members_count,
+                       updated_at, created_at, created_by, deleted_at, is_deleted
+                FROM chats
+                """ + condition, setter, rs -> {
+            chunk.add(toCacheChat(rs));
+            if (chunk.size() == CHUNK_SIZE) flushChats(pool, chunk);
+        });
+        flushChats(pool, chunk);
+    }
+    private void streamChatMembers(ForkJoinPool pool, String condition, StatementSetter setter) {
+        List<CacheChatMember> members = new ArrayList<>();
+        stream("""
+                SELECT chat_id, user_id, tag, settings_updated_at, updated_at, joined_at, is_pinned, is_admin, deleted_at, is_deleted
+                FROM chat_members
+                """ + condition + " ORDER BY chat_id", setter, rs -> {
+            CacheChatMember member = toCacheChatMember(rs);
+            if (!members.isEmpty() && members.getFirst().getChatId() != member.getChatId()) flushMembers(pool, members);
+            members.add(member);
+        });
+        flushMembers(pool, members);
+    }
+
+
+    // ========== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ==========
+
+
+    private interface StatementSetter {
+        void set(PreparedStatement ps) throws SQLException;
+    }
+
+    private static void setIds(PreparedStatement ps, int index, Long[] ids) throws SQLException {
+        ps.setArray(index, ps.getConnection().createArrayOf("bigint", ids));
+    }
+    private void stream(String sql, StatementSetter setter, RowCallbackHandler handler) {
+        readOnlyTransaction.executeWithoutResult(status -> {
+            JdbcTemplate streaming = new JdbcTemplate(jdbcTemplate.getDataSource());
+            streaming.setFetchSize(FETCH_SIZE);
+            streaming.query(con -> {
+                PreparedStatement ps = con.prepareStatement(sql);
+                setter.set(ps);
+                return ps;
+            }, (RowCallbackHandler) rs -> {
+                if (cancelled) throw new SQLException("Cache warm-up cancelled");
+                handler.processRow(rs);
+            });
+        });
+    }
+    private void run(String name, Runnable task) {
+        try {
+            task.run();
+        }
+        catch (Exception e) {
+            failedCount.increment();
+            log.error("[🔧] ⚠️ Cache warm-up of {} failed: {}", name, e.getMessage());
+        }
+    }
+
+    // порция уходит в пул, а курсор читает дальше
+    private void flushUsers(ForkJoinPool pool, List<CacheUser> chunk) {
+        if (chunk.isEmpty()) return;
+
+        List<CacheUser> users = List.copyOf(chunk);
+        chunk.clear();
+        pool.execute(() -> {
+            cacheService.saveUsers(users);
+            usersLoaded.add(users.size());
+        });
+    }
+    private void flushChats(ForkJoinPool pool, List<CacheChat> chunk) {
+        if (chunk.isEmpty()) return;
+
+        List<CacheChat> chats = List.copyOf(chunk);
+        chunk.clear();
+        pool.execute(() -> {
+            cacheService.saveChats(chats);
+            chatsLoaded.add(chats.size());
+        });
+    }
+    private void flushMembers(ForkJoinPool pool, List<CacheChatMember> chunk) {
+        if (chunk.isEmpty()) return;
+
+        List<CacheChatMember> members = List.copyOf(chunk);
+        chunk.clear();
+        pool.execute(() -> {
+            cacheService.loadChatMembers(members.getFirst().getChatId(), members);
+            membersLoaded.add(members.size());
+        });
+    }
+
+    private static CacheUser toCacheUser(ResultSet rs) throws SQLException {
+        return new CacheUser(
+            rs.getLong("id"),
+            rs.getString("username"),
+            rs.getString("name"),
+            rs.getString("email"),
+            rs.getString("hash_password"),
+            rs.getObject("last_login", LocalDateTime.class),
+            rs.getObject("profile_updated_at", LocalDateTime.class),
+            rs.getObject("updated_at", LocalDateTime.class),
+            rs.getObject("created_at", LocalDateTime.class),
+            rs.getInt("jwt_version"),
+            rs.getBoolean("is_enabled"),
+            rs.getObject("deleted_at", LocalDateTime.class),
+            rs.getBoolean("is_deleted")
+        );
+    }
+    private static CacheChat toCacheChat(ResultSet rs) throws SQLException {
+        long opponentId = rs.getLong("opponent_id");
+        boolean isPersonal = !rs.wasNull();
+        return new CacheChat(
+            rs.getLong("id"),
+            rs.getString("name"),
+            rs.getString("description"),
+            ChatType.valueOf(rs.getString("chat_type")),
+            isPersonal ? opponentId : null,
+            rs.getInt("members_count"),
+            rs.getInt("deleted_members_count"),
+            rs.getObject("updated_at", LocalDateTime.class),
+            rs.getObject("created_at", LocalDateTime.class),
+            rs.getLong("created_by"),
+            rs.getObject("deleted_at", LocalDateTime.class),
+            rs.getBoolean("is_deleted")
+        );
+    }
+    private static CacheChatMember toCacheChatMember(ResultSet rs) throws SQLException {
+        return new CacheChatMember(
+            rs.getLong("chat_id"),
+            rs.getLong("user_id"),
+            rs.getString("tag"),
+            rs.getObject("settings_updated_at", LocalDateTime.class),
+            rs.getObject("updated_at", LocalDateTime.class),
+            rs.getObject("joined_at", LocalDateTime.class),
+            rs.getBoolean("is_pinned"),
+            rs.getBoolean("is_admin"),
+            rs.getObject("deleted_at", LocalDateTime.class),
+            rs.getBoolean("is_deleted")
+        );
+    }
+
+
+    // ========== STATS ==========
+
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("completed", completed);
+        stats.put("users", usersLoaded.sum());
+        stats.put("chats", chatsLoaded.sum());
+        stats.put("members", membersLoaded.sum());
+        stats.put("failed", failedCount.sum());
+        stats.put("durationMs", durationMs);
+        return stats;
+    }
+}
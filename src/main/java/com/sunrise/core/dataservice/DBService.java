@@ -3,15 +3,22 @@ package com.sunrise.core.dataservice;
 import com.sunrise.core.dataservice.type.*;
 import com.sunrise.core.dataservice.type.Direction;
 import com.sunrise.entity.db.*;
+import com.sunrise.helpclass.PartitionedExecutor;
 import com.sunrise.repository.*;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.*;
 
+@Slf4j
 @Service
 public class DBService {
 
@@ -21,15 +28,30 @@ public class DBService {
     private final LoginHistoryRepository loginHistoryRepository;
     private final VerificationTokenRepository tokenRepository;
     private final MessageRepository messageRepository;
+    private final PersonalChatRepository personalChatRepository;
+    private final MessageBatchWriter messageBatchWriter;
+    private final PartitionedExecutor dbExecutor; // асинхронные записи, порядок сохраняется в пределах ключа
+    private final OutboxService outboxService;
+    private final JwtVersionRegistry jwtVersions;
+
+    public static final int READ_STATUS_WINDOW_DAYS = 7; // сообщения старше окна не получают отметок прочтения TODO: ДОБАВИТЬ В КОНФИГ
 
     public DBService(UserRepository userRepository, ChatRepository chatRepository, LoginHistoryRepository loginHistoryRepository,
-                     VerificationTokenRepository tokenRepository, MessageRepository messageRepository, ChatMemberRepository chatMemberRepository) {
+                     VerificationTokenRepository tokenRepository, MessageRepository messageRepository, ChatMemberRepository chatMemberRepository,
+                     PersonalChatRepository personalChatRepository, MessageBatchWriter messageBatchWriter,
+                     @Qualifier("dbExecutor") PartitionedExecutor dbExecutor, OutboxService outboxService,
+                     JwtVersionRegistry jwtVersions) {
         this.userRepository = userRepository;
         this.chatRepository = chatRepository;
         this.loginHistoryRepository = loginHistoryRepository;
         this.tokenRepository = tokenRepository;
         this.messageRepository = messageRepository;
         this.chatMemberRepository = chatMemberRepository;
+        this.personalChatRepository = personalChatRepository;
+        this.messageBatchWriter = messageBatchWriter;
+        this.dbExecutor = dbExecutor;
+        this.outboxService = outboxService;
+        this.jwtVersions = jwtVersions;
     }
 
 
@@ -39,31 +61,43 @@ public class DBService {
     // Основные методы
     public void saveUser(User user) {
         userRepository.save(user);
+        jwtVersions.update(user.getId(), user.getJwtVersion());
     }
-    @Async("dbExecutor")
     public void updateLastLoginAsync(String username, LocalDateTime lastLogin) {
-        userRepository.updateLastLogin(username, lastLogin);
+        dbExecutor.execute(username, () -> userRepository.updateLastLogin(username, lastLogin));
     }
     public int updateUserProfile(long userId, String username, String name, LocalDateTime updatedAt) {
         return userRepository.updateProfile(userId, username, name, updatedAt);
     }
     public int updateUserEmailAndGetJwtVersion(long userId, String email, LocalDateTime updatedAt) {
-        return userRepository.updateUserEmailAndGetJwtVersion(userId, email, updatedAt);
+        int newVersion = userRepository.updateUserEmailAndGetJwtVersion(userId, email, updatedAt);
+        jwtVersions.update(userId, newVersion); // таблица версий для проверки токенов
+        return newVersion;
     }
     public int updateUserPasswordAndGetJwtVersion(long userId, String password, LocalDateTime updatedAt) {
-        return userRepository.updateUserPasswordAndGetJwtVersion(userId, password, updatedAt);
+        int newVersion = userRepository.updateUserPasswordAndGetJwtVersion(userId, password, updatedAt);
+        jwtVersions.update(userId, newVersion);
+        return newVersion;
     }
     public int enableUserAndGetJwtVersion(long userId, LocalDateTime updatedAt) {
-        return userRepository.enableUserAndGetJwtVersion(userId, updatedAt);
+        int newVersion = userRepository.enableUserAndGetJwtVersion(userId, updatedAt);
+        jwtVersions.update(userId, newVersion);
+        return newVersion;
     }
     public int disableUserAndGetJwtVersion(long userId, LocalDateTime updatedAt) {
-        return userRepository.disableUserAndGetJwtVersion(userId, updatedAt);
+        int newVersion = userRepository.disableUserAndGetJwtVersion(userId, updatedAt);
+        jwtVersions.update(userId, newVersion);
+        return newVersion;
     }
     public int deleteUserAndGetJwtVersion(long userId, LocalDateTime updatedAt) {
-        return userRepository.deleteUserAndGetJwtVersion(userId, updatedAt);
+        int newVersion = userRepository.deleteUserAndGetJwtVersion(userId, updatedAt);
+        jwtVersions.update(userId, newVersion);
+        return newVersion;
     }
     public int restoreUserAndGetJwtVersion(long userId, LocalDateTime updatedAt) {
-        return userRepository.restoreUserAndGetJwtVersion(userId, updatedAt);
+        int newVersion = userRepository.restoreUserAndGetJwtVersion(userId, updatedAt);
+        jwtVersions.update(userId, newVersion);
+        return newVersion;
     }
 
 
@@ -98,6 +132,7 @@ public class DBService {
             chat.getCreatedBy(), chat.getCreatedAt()
         );
     }
+    @Transactional
     public void savePersonalChat(Chat chat, long opponentId) {
         chatRepository.savePersonalChatAndMembers(
             chat.getId(),
@@ -105,6 +140,7 @@ public class DBService {
             chat.getCreatedBy(), opponentId,
             chat.getCreatedAt()
         );
+        personalChatRepository.insertIfAbsent(chat.getId(), chat.getCreatedBy(), opponentId); // индекс пары в той же транзакции
     }
 
     public int updateChatInfo(long chatId, String newName, String newDescription, LocalDateTime updatedAt) {
@@ -127,7 +163,8 @@ public class DBService {
         return chatRepository.findById(chatId);
     }
     public Optional<Chat> getPersonalChat(long userId1, long userId2) {
-        return chatRepository.getPersonalChat(userId1, userId2, ChatType.PERSONAL);
+        PersonalChatId pairKey = PersonalChatId.of(userId1, userId2);
+        return chatRepository.getPersonalChat(pairKey.getUserLowId(), pairKey.getUserHighId());
     }
     public List<UserChatResult> getUserChatsPage(long userId, Boolean isPinnedCursor, Long lastMsgIdCursor, Long chatIdCursor, int limit) {
         return chatRepository.getUserChatsPage(userId, isPinnedCursor, lastMsgIdCursor, chatIdCursor, limit);
@@ -184,16 +221,14 @@ public class DBService {
 
 
     // Основные методы
-    @Async("dbExecutor")
-    public void saveVerificationTokenAsync(VerificationToken token) {
-        tokenRepository.save(token);
+    public void saveVerificationTokenViaOutbox(VerificationToken token) {
+        outboxService.appendSaveVerificationToken(token);
     }
-    @Async("dbExecutor")
-    public void deleteVerificationTokenAsync(String token) {
-        tokenRepository.deleteByToken(token);
+    public void deleteVerificationTokenViaOutbox(String token) {
+        outboxService.appendDeleteVerificationToken(token);
     }
     public Optional<VerificationToken> getVerificationToken(String token) {
-        return tokenRepository.getByToken(token);
+        return tokenRepository.getNotDeletedByToken(token, OutboxService.tokenDeleteKey(token)); // удалённый, но ещё не применённый - не отдаём
     }
     public int cleanupExpiredVerificationTokens() {
         return tokenRepository.deleteByExpiryDateBefore(LocalDateTime.now());
@@ -204,9 +239,8 @@ public class DBService {
 
 
     // Основные методы
-    @Async("dbExecutor")
-    public void saveLoginHistoryAsync(LoginHistory loginHistory) {
-        loginHistoryRepository.save(loginHistory);
+    public void saveLoginHistoryViaOutbox(LoginHistory loginHistory) {
+        outboxService.appendSaveLoginHistory(loginHistory);
     }
 
 
@@ -215,11 +249,28 @@ public class DBService {
 
     // Основные методы
     public void saveMessage(Message message) {
+        if (messageBatchWriter.isEnabled()) {
+            messageBatchWriter.save(message); // пачкой, ждём коммита
+            return;
+        }
         messageRepository.save(message);
     }
+    public Map<Long, Integer> countUnreadMessages(long userId, Collection<Long> chatIds) {
+        Map<Long, Integer> counts = new HashMap<>(chatIds.size());
+        for (ChatUnreadCountResult row : messageRepository.countUnreadMessages(userId, chatIds)) {
+            counts.put(row.getChatId(), row.getUnreadCount().intValue());
+        }
+        return counts;
+    }
     public void markMessagesUpToRead(long chatId, long userId, long messageId, LocalDateTime readAt) {
-        messageRepository.markMessagesUpToRead(chatId, userId, messageId, readAt, "7 days");
-    } // TODO: ДОБАВИТЬ В КОНФИГ
+        messageRepository.markMessagesUpToRead(chatId, userId, messageId, readAt, READ_STATUS_WINDOW_DAYS + " days");
+    }
+    @Transactional
+    public void markMessagesUpToRead(List<ReadMark> marks) {
+        for (ReadMark mark : marks) { // одна транзакция на пачку, порядок (chatId, userId) задаёт вызывающий
+            messageRepository.markMessagesUpToRead(mark.chatId(), mark.userId(), mark.messageId(), mark.readAt(), READ_STATUS_WINDOW_DAYS + " days");
+        }
+    }
     public int updateMessage(long messageId, String newText, LocalDateTime updatedAt) {
         return messageRepository.updateMessage(messageId, newText, updatedAt);
     }
@@ -252,7 +303,35 @@ public class DBService {
     public Optional<UserMessageDBResult> getMessageWithReadStatus(long userId, long messageId) {
         return messageRepository.getMessageById(userId, messageId);
     }
+    public Optional<Long> getLastReadMessageId(long chatId, long userId) {
+        return messageRepository.getLastReadMessageId(chatId, userId);
+    }
     public List<MessageReadStatusResult> getMessageReaders(long messageId){
         return messageRepository.getMessageReaders(messageId);
     }
-}
\ No newline at end of file
+
+
+
+    // ========== DB EXECUTOR STATS ==========
+
+
+    // Те же цифры живьём - sunrise.executor.lane.* с тегом executor=db (MetricsConfig)
+    @Scheduled(fixedDelay = 3_600_000, initialDelay = 10_000) // 1000 * 60 * 60
+    public void logDbExecutorStats() {
+        log.info("📊 DB Executor Lanes:");
+        for (int lane = 0; lane < dbExecutor.getLaneCount(); lane++) {
+            var stats = dbExecutor.getLaneStats(lane);
+            log.info("   ├─ Lane {} ({}): queue={}, completed={}, failed={}, overflowed={}, waitMs(avg/max)={}/{}, execMs(avg/max)={}/{}",
+                    lane,
+                    stats.get("overflowPolicy"),
+                    stats.get("queue.size"),
+                    stats.get("completed"),
+                    stats.get("failed"),
+                    stats.get("overflowed"),
+                    String.format("%.2f", (Double) stats.get("waitMs.avg")),
+                    String.format("%.2f", (Double) stats.get("waitMs.max")),
+                    String.format("%.2f", (Double) stats.get("execMs.avg")),
+                    String.format("%.2f", (Double) stats.get("execMs.max")));
+        }
+    }
+}
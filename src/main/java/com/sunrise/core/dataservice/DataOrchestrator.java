@@ -1,5 +1,7 @@
 package com.sunrise.core.dataservice;
 
+import com.sunrise.config.SchedulingConfig;
+import com.sunrise.core.cluster.CacheInvalidationBus;
 import com.sunrise.core.dataservice.type.*;
 import com.sunrise.core.dataservice.type.Direction;
 import com.sunrise.entity.cache.*;
@@ -11,11 +13,10 @@ import com.sunrise.entity.pagination.ChatMembersPageDTO;
 import com.sunrise.entity.pagination.MessagesPageDTO;
 import com.sunrise.entity.pagination.UserChatsPageDTO;
 import com.sunrise.entity.pagination.UsersPageDTO;
-import jakarta.annotation.PostConstruct;
-import jakarta.annotation.PreDestroy;
 
 import lombok.extern.slf4j.Slf4j;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
@@ -28,19 +29,28 @@ public class DataOrchestrator {
 
     private final CacheService cacheService;
     private final DBService dbService;
+    private final JwtVersionRegistry jwtVersions;
+    private final UserSearchIndex userSearch;
+    private final DbFallThroughMetrics dbCalls; // таймеры промахов кеша до бд
+    private final ReadThroughLoader loader; // промахи по одному ключу - один запрос в бд
+    private final CacheInvalidationBus invalidationBus; // изменения для кешей других инстансов
 
-    public DataOrchestrator(CacheService cacheService, DBService dbService) {
+    private static final int MENTION_MAX_ROUNDS = 5; // в большом чате не перебираем весь диапазон префикса
+    private static final int MENTION_DB_SCAN_LIMIT = 200;
+
+    @Value("${app.cache.inbox.max-chats}")
+    private int inboxMaxChats = 500; // больше чатов - список не кешируем, страницы из бд
+
+    public DataOrchestrator(CacheService cacheService, DBService dbService, JwtVersionRegistry jwtVersions,
+                            UserSearchIndex userSearch, DbFallThroughMetrics dbCalls, ReadThroughLoader loader,
+                            CacheInvalidationBus invalidationBus) {
         this.cacheService = cacheService;
         this.dbService = dbService;
-    }
-
-    @PostConstruct
-    public void warmUpCache() {
-        // TODO: подумать чо буду в при старте загружать
-    }
-    @PreDestroy
-    public void onShutdown() {
-        // TODO: подумать чо буду при завершении делать
+        this.jwtVersions = jwtVersions;
+        this.userSearch = userSearch;
+        this.dbCalls = dbCalls;
+        this.loader = loader;
+        this.invalidationBus = invalidationBus;
     }
 
 
@@ -51,6 +61,8 @@ public class DataOrchestrator {
     public void saveUser(UserDTO user) {
         dbService.saveUser(EntityMapper.toEntity(user)); // синхронно в бд
         cacheService.saveUser(EntityMapper.toCache(user)); // сохраняем в кеш
+        if (user.isEnabled() && !user.isDeleted()) userSearch.put(user.getId(), user.getUsername(), user.getName());
+        invalidationBus.userChanged(user.getId(), JwtVersionRegistry.MISSING); // другие узлы добавят его в свой поиск
     }
     public void updateLastLogin(String username, LocalDateTime lastLogin) {
         dbService.updateLastLoginAsync(username, lastLogin); // асинхронно в бд
@@ -58,31 +70,45 @@ public class DataOrchestrator {
     }
     public void updateUserProfile(long userId, String username, String name, LocalDateTime updatedAt) {
         boolean isUpdated = dbService.updateUserProfile(userId, username, name, updatedAt) > 0; // синхронно в БД
-        if (isUpdated) cacheService.updateUserProfile(userId, username, name, updatedAt); // обновляем в кеше
+        if (isUpdated) {
+            cacheService.updateUserProfile(userId, username, name, updatedAt); // обновляем в кеше
+            userSearch.refresh(userId); // в индексе только активные, статус знает бд
+            invalidationBus.userChanged(userId, JwtVersionRegistry.MISSING); // версия не менялась
+        }
     }
     public void updateUserEmail(long userId, String email, LocalDateTime updatedAt) {
         int newVersion = dbService.updateUserEmailAndGetJwtVersion(userId, email, updatedAt);
         cacheService.updateUserEmail(userId, email, newVersion, updatedAt);
+        invalidationBus.userChanged(userId, newVersion);
     }
     public void updateUserPassword(long userId, String password, LocalDateTime updatedAt) {
         int newVersion = dbService.updateUserPasswordAndGetJwtVersion(userId, password, updatedAt);
         cacheService.updateUserPassword(userId, password, newVersion, updatedAt);
+        invalidationBus.userChanged(userId, newVersion);
     }
     public void enableUser(long userId, LocalDateTime updatedAt) {
         int newVersion = dbService.enableUserAndGetJwtVersion(userId, updatedAt); // синхронно в бд
         cacheService.enableUser(userId, newVersion, updatedAt); // сохраняем в кеш
+        userSearch.refresh(userId);
+        invalidationBus.userChanged(userId, newVersion);
     }
     public void disableUser(long userId, LocalDateTime updatedAt) {
         int newVersion = dbService.disableUserAndGetJwtVersion(userId, updatedAt); // синхронно в бд
         cacheService.disableUser(userId, newVersion, updatedAt); // сохраняем в кеш
+        userSearch.remove(userId);
+        invalidationBus.userChanged(userId, newVersion);
     }
     public void deleteUser(long userId, LocalDateTime updatedAt) {
         int newVersion = dbService.deleteUserAndGetJwtVersion(userId, updatedAt); // синхронно в бд
         cacheService.deleteUser(userId, newVersion, updatedAt); // сохраняем в кеш
+        userSearch.remove(userId);
+        invalidationBus.userChanged(userId, newVersion);
     }
     public void restoreUser(long userId, LocalDateTime updatedAt) {
         int newVersion = dbService.restoreUserAndGetJwtVersion(userId, updatedAt); // синхронно в бд
         cacheService.restoreUser(userId, newVersion, updatedAt); // сохраняем в кеш
+        userSearch.refresh(userId);
+        invalidationBus.userChanged(userId, newVersion);
     }
 
 
@@ -93,11 +119,7 @@ public class DataOrchestrator {
             return true;
 
         // проверяем в бд
-        Optional<User> dbUser = dbService.getUserByUsername(username);
-        dbUser.ifPresent(user -> {
-            cacheService.saveUser(EntityMapper.toCache(user)); // восстанавливаем кеш
-        });
-        return dbUser.isPresent();
+        return loadUserByUsername(username).isPresent();
     }
     public boolean existsUserByEmail(String email)  {
         // проверяем в кеше
@@ -105,10 +127,8 @@ public class DataOrchestrator {
             return true;
 
         // проверяем в бд
-        Optional<User> dbUser = dbService.getUserByEmail(email);
-        dbUser.ifPresent(user -> {
-            cacheService.saveUser(EntityMapper.toCache(user)); // восстанавливаем кеш
-        });
+        Optional<User> dbUser = loader.load("user", "getUserByEmail", email,
+                () -> dbService.getUserByEmail(email), this::cacheUser);
         return dbUser.isPresent();
     }
     public boolean isActiveUser(long userId) {
@@ -118,11 +138,7 @@ public class DataOrchestrator {
             return cached.filter(us -> us.isEnabled() && !us.isDeleted()).isPresent();
 
         // грузим из бд
-        Optional<User> dbUser = dbService.getUser(userId);
-        dbUser.ifPresent(user -> {
-            cacheService.saveUser(EntityMapper.toCache(user)); // восстанавливаем кеш
-        });
-        return dbUser.filter(us -> us.isEnabled() && !us.isDeleted()).isPresent();
+        return loadUser(userId).filter(us -> us.isEnabled() && !us.isDeleted()).isPresent();
     }
 
     public Optional<UserDTO> getUser(long userId) {
@@ -132,11 +148,7 @@ public class DataOrchestrator {
             return cached.map(EntityMapper::toFullDTO);
 
         // грузим из бд
-        Optional<User> dbUser = dbService.getUser(userId);
-        dbUser.ifPresent(user -> {
-            cacheService.saveUser(EntityMapper.toCache(user)); // восстанавливаем кеш
-        });
-        return dbUser.map(EntityMapper::toFullDTO);
+        return loadUser(userId).map(EntityMapper::toFullDTO);
     }
     public Optional<UserDTO> getUserByUsername(String username) {
         // пробуем кеш
@@ -145,11 +157,7 @@ public class DataOrchestrator {
             return cached.map(EntityMapper::toFullDTO);
 
         //грузим из бд
-        Optional<User> dbUser = dbService.getUserByUsername(username);
-        dbUser.ifPresent(user -> {
-            cacheService.saveUser(EntityMapper.toCache(user)); // восстанавливаем кеш
-        });
-        return dbUser.map(EntityMapper::toFullDTO);
+        return loadUserByUsername(username).map(EntityMapper::toFullDTO);
     }
     public Optional<UserProfileDTO> getUserProfile(long userId) {
         // пробуем кеш
@@ -160,20 +168,35 @@ public class DataOrchestrator {
         // грузим из бд
         return user.map(EntityMapper::toUserProfileDTO);
     }
-    public Optional<Integer> getUserJwtVersion(long userId) {
+    public boolean isCurrentJwtVersion(long userId, int tokenVersion) {
+        // пробуем таблицу версий
+        int version = jwtVersions.get(userId);
+        if (version != JwtVersionRegistry.MISSING)
+            return version == tokenVersion;
+
         // пробуем кеш
         Optional<CacheUser> cached = cacheService.getUser(userId);
-        if (cached.isPresent())
-            return cached.map(CacheUser::getJwtVersion);
+        if (cached.isPresent()) {
+            jwtVersions.update(userId, cached.get().getJwtVersion()); // восстанавливаем таблицу
+            return cached.get().getJwtVersion() == tokenVersion;
+        }
 
         // грузим из бд
-        Optional<User> dbUser = dbService.getUser(userId);
-        dbUser.ifPresent(user -> {
-            cacheService.saveUser(EntityMapper.toCache(user)); // восстанавливаем кеш
-        });
-        return dbUser.map(User::getJwtVersion);
+        Optional<User> dbUser = loadUser(userId);
+        dbUser.ifPresent(user -> jwtVersions.update(userId, user.getJwtVersion())); // у ждавших загрузку тоже
+        return dbUser.filter(user -> user.getJwtVersion() == tokenVersion).isPresent();
     }
 
+    private Optional<User> loadUser(long userId) {
+        return loader.load("user", "getUser", userId, () -> dbService.getUser(userId), this::cacheUser);
+    }
+    private Optional<User> loadUserByUsername(String username) {
+        return loader.load("user", "getUserByUsername", username,
+                () -> dbService.getUserByUsername(username), this::cacheUser);
+    }
+    private void cacheUser(User user) {
+        cacheService.saveUser(EntityMapper.toCache(user)); // восстанавливаем кеш
+    }
     private Map<Long, UserDTO> loadUsersWithCache(Set<Long> userIds) {
         if (userIds.isEmpty()) {
             return Collections.emptyMap();
@@ -193,7 +216,7 @@ public class DataOrchestrator {
 
         // Загружаем недостающих из БД
         if (!missingUserIds.isEmpty()) {
-            List<User> dbUsers = dbService.getActiveUserByIds(new ArrayList<>(missingUserIds));
+            List<User> dbUsers = dbCalls.record("user", "getActiveUserByIds", () -> dbService.getActiveUserByIds(new ArrayList<>(missingUserIds)));
             List<CacheUser> usersToCache = new ArrayList<>();
 
             for (User user : dbUsers) {
@@ -210,8 +233,12 @@ public class DataOrchestrator {
         return userMap;
     }
     public UsersPageDTO getActiveUsersPage(String filter, Long cursor, int limit) {
-        // получаем пагинацию из бд
-        List<UserResult> rows = dbService.getActiveUsersPage(filter, cursor, limit + 1); // берем на одну больше
+        if (userSearch.isLoaded()) {
+            return getActiveUsersPageFromIndex(filter, cursor, limit);
+        }
+
+        // индекс ещё строится - получаем пагинацию из бд
+        List<UserResult> rows = dbCalls.record("user", "getActiveUsersPage", () -> dbService.getActiveUsersPage(filter, cursor, limit + 1)); // берем на одну больше
 
         Map<Long, UserProfileDTO> users = new HashMap<>(rows.size());
         Long nextCursor = null;
@@ -227,6 +254,66 @@ public class DataOrchestrator {
 
         return new UsersPageDTO(users, nextCursor);
     }
+    private UsersPageDTO getActiveUsersPageFromIndex(String filter, Long cursor, int limit) {
+        List<Long> ids = userSearch.search(filter, cursor, limit + 1); // берем на одну больше
+        boolean hasMore = ids.size() > limit;
+        List<Long> pageIds = hasMore ? ids.subList(0, limit) : ids;
+
+        Map<Long, UserDTO> loaded = loadUsersWithCache(new HashSet<>(pageIds));
+
+        Map<Long, UserProfileDTO> users = new LinkedHashMap<>(pageIds.size()); // порядок id по убыванию
+        for (Long userId : pageIds) {
+            UserDTO user = loaded.get(userId);
+            if (user != null && user.isEnabled()) users.put(userId, EntityMapper.toUserProfileDTO(user));
+        }
+
+        return new UsersPageDTO(users, hasMore ? pageIds.getLast() : null);
+    }
+    public List<UserProfileDTO> getMentionCandidates(String prefix, Long chatId, int limit) {
+        if (!userSearch.isLoaded()) {
+            return getMentionCandidatesFromDb(prefix, chatId, limit);
+        }
+
+        // без чата хватает одного прохода; в чате неизвестных кешу участников проверяем пачкой и добираем следующие
+        Set<Long> found = new LinkedHashSet<>(limit);
+        Long after = null;
+        for (int round = 0; round < MENTION_MAX_ROUNDS && found.size() < limit; round++) {
+            List<Long> candidates = userSearch.searchPrefix(prefix, after, limit,
+                    userId -> chatId == null || cacheService.hasActiveChatMember(chatId, userId).orElse(true));
+            if (candidates.isEmpty()) break;
+
+            if (chatId == null) {
+                found.addAll(candidates);
+                break;
+            }
+            Map<Long, ChatMemberDTO> members = loadMembersWithCache(chatId, new HashSet<>(candidates));
+            for (Long userId : candidates) {
+                if (members.containsKey(userId) && found.size() < limit) found.add(userId);
+            }
+            if (candidates.size() < limit) break; // префикс кончился
+            after = candidates.getLast();
+        }
+
+        Map<Long, UserDTO> loaded = loadUsersWithCache(found);
+        List<UserProfileDTO> result = new ArrayList<>(found.size());
+        for (Long userId : found) {
+            UserDTO user = loaded.get(userId);
+            if (user != null && user.isEnabled()) result.add(EntityMapper.toUserProfileDTO(user));
+        }
+        return result;
+    }
+    private List<UserProfileDTO> getMentionCandidatesFromDb(String prefix, Long chatId, int limit) {
+        String needle = prefix.toLowerCase();
+        List<UserResult> rows = dbCalls.record("user", "getActiveUsersPage", () -> dbService.getActiveUsersPage(needle, null, MENTION_DB_SCAN_LIMIT));
+
+        Map<Long, UserProfileDTO> users = EntityMapper.toUserProfileDTOs(rows, new LinkedHashMap<>(rows.size()));
+        return users.values().stream()
+                .filter(user -> user.getUsername().toLowerCase().startsWith(needle))
+                .filter(user -> chatId == null || hasActiveChatMember(chatId, user.getUserId()))
+                .sorted(Comparator.comparing((UserProfileDTO user) -> user.getUsername().toLowerCase()))
+                .limit(limit)
+                .toList();
+    }
 
 
     // ========== LOGIN HISTORY METHODS ==========
@@ -234,8 +321,8 @@ public class DataOrchestrator {
 
     // Основные методы
     public void saveLoginHistory(LoginHistoryDTO loginHistory) {
-        dbService.saveLoginHistoryAsync(EntityMapper.toEntity(loginHistory)); // асинхронно в бд
-    } // TODO: SYNC OUTBOX||KAFKA
+        dbService.saveLoginHistoryViaOutbox(EntityMapper.toEntity(loginHistory)); // в outbox, в бд применится в фоне
+    }
 
 
     // ========== CHAT METHODS ==========
@@ -245,6 +332,10 @@ public class DataOrchestrator {
     public void savePersonalChatAndAddMembers(ChatDTO chat, ChatMemberDTO creator, ChatMemberDTO opponent) {
         // синхронно в бд
         dbService.savePersonalChat(EntityMapper.toEntity(chat), opponent.getUserId());
+        cacheService.evictInbox(creator.getUserId()); // новый чат - пересоберём списки
+        cacheService.evictInbox(opponent.getUserId());
+        invalidationBus.userInboxChanged(creator.getUserId(), creator.getJoinedAt()); // и на других узлах
+        invalidationBus.userInboxChanged(opponent.getUserId(), opponent.getJoinedAt());
 
         // сохраняем в кеш
         cacheService.saveChatAndAddMembers(
@@ -264,6 +355,10 @@ public class DataOrchestrator {
 
         // синхронно в бд
         dbService.saveGroupChat(EntityMapper.toEntity(chat), memberIds, isAdminFlags);
+        for (ChatMemberDTO member : chatMembers) {
+            cacheService.evictInbox(member.getUserId()); // новый чат - пересоберём списки
+            invalidationBus.userInboxChanged(member.getUserId(), member.getJoinedAt()); // и на других узлах
+        }
 
         // сохраняем в кеш
         cacheService.saveChatAndAddMembers(
@@ -273,19 +368,35 @@ public class DataOrchestrator {
     }
     public void updateChatInfo(long chatId, String newName, String newDescription, LocalDateTime updatedAt) {
         boolean isUpdated = dbService.updateChatInfo(chatId, newName, newDescription, updatedAt) > 0; // синхронно в бд
-        if (isUpdated) cacheService.updateChatInfo(chatId, newName, newDescription, updatedAt); // сохраняем в кеш
+        if (isUpdated) {
+            cacheService.updateChatInfo(chatId, newName, newDescription, updatedAt); // сохраняем в кеш
+            cacheService.evictInboxesWithChat(chatId); // в списках чатов старые данные
+            invalidationBus.chatChanged(chatId, updatedAt);
+        }
     }
     public void updateChatType(long chatId, ChatType newType, LocalDateTime updatedAt) {
         boolean isUpdated = dbService.updateChatType(chatId, newType, updatedAt) > 0; // синхронно в бд
-        if (isUpdated) cacheService.updateChatType(chatId, newType, updatedAt); // сохраняем в кеш
+        if (isUpdated) {
+            cacheService.updateChatType(chatId, newType, updatedAt); // сохраняем в кеш
+            cacheService.evictInboxesWithChat(chatId); // в списках чатов старые данные
+            invalidationBus.chatChanged(chatId, updatedAt);
+        }
     }
     public void restoreChat(long chatId, LocalDateTime updatedAt) {
         boolean isUpdated = dbService.restoreChat(chatId, updatedAt) > 0; // синхронно в бд
-        if (isUpdated) cacheService.restoreChat(chatId, updatedAt); // сохраняем в кеш
+        if (isUpdated) {
+            cacheService.restoreChat(chatId, updatedAt); // сохраняем в кеш
+            cacheService.evictInboxesWithChat(chatId); // в списках чатов старые данные
+            invalidationBus.chatChanged(chatId, updatedAt);
+        }
     }
     public void deleteChat(long chatId, LocalDateTime updatedAt) {
         boolean isUpdated = dbService.deleteChat(chatId, updatedAt) > 0; // синхронно в бд
-        if (isUpdated) cacheService.deleteChat(chatId, updatedAt); // сохраняем в кеш
+        if (isUpdated) {
+            cacheService.deleteChat(chatId, updatedAt); // сохраняем в кеш
+            cacheService.evictInboxesWithChat(chatId); // в списках чатов старые данные
+            invalidationBus.chatChanged(chatId, updatedAt);
+        }
     }
 
 
@@ -295,11 +406,7 @@ public class DataOrchestrator {
         if (cacheChat.isPresent())
             return cacheChat.filter(CacheChat::isActive).map(EntityMapper::toDTO);
 
-        Optional<Chat> dbChat = dbService.getChat(chatId);
-        dbChat.ifPresent(chat -> {
-            cacheService.saveChat(EntityMapper.toCache(chat)); // восстанавливаем в кеш
-        });
-        return dbChat.filter(chat -> !chat.isDeleted()).map(EntityMapper::toDTO);
+        return loadChat(chatId).filter(chat -> !chat.isDeleted()).map(EntityMapper::toDTO);
     }
     public Optional<ChatDTO> getPersonalChat(long userId1, long userId2) {
         // пробуем кеш
@@ -308,10 +415,9 @@ public class DataOrchestrator {
             return cached.map(EntityMapper::toDTO);
 
         // грузим из бд
-        Optional<Chat> dbChat = dbService.getPersonalChat(userId1, userId2);
-        dbChat.ifPresent(chat -> {
-            cacheService.saveChat(EntityMapper.toCache(chat)); // восстанавливаем в кеш
-        });
+        Object pairKey = ReadThroughLoader.key(Math.min(userId1, userId2), Math.max(userId1, userId2));
+        Optional<Chat> dbChat = loader.load("chat", "getPersonalChat", pairKey,
+                () -> dbService.getPersonalChat(userId1, userId2), this::cacheChat);
         return dbChat.map(EntityMapper::toDTO);
     }
 
@@ -322,11 +428,7 @@ public class DataOrchestrator {
             return isActive.get();
 
         // грузим из бд
-        Optional<Chat> dbChat = dbService.getChat(chatId);
-        dbChat.ifPresent(chat -> {
-            cacheService.saveChat(EntityMapper.toCache(chat)); // восстанавливаем в кеш
-        });
-        return dbChat.filter(Chat::isActive).isPresent();
+        return loadChat(chatId).filter(Chat::isActive).isPresent();
     }
     public Optional<Boolean> isGroupChat(long chatId) {
         // пробуем кеш
@@ -335,43 +437,86 @@ public class DataOrchestrator {
             return isGroup;
 
         // грузим из бд
-        Optional<Chat> dbChat = dbService.getChat(chatId);
-        dbChat.ifPresent(chat -> {
-            cacheService.saveChat(EntityMapper.toCache(chat)); // восстанавливаем в кеш
-        });
-        return dbChat.map(Chat::isNotPersonal);
+        return loadChat(chatId).map(Chat::isNotPersonal);
+    }
+    private Optional<Chat> loadChat(long chatId) {
+        return loader.load("chat", "getChat", chatId, () -> dbService.getChat(chatId), this::cacheChat);
+    }
+    private void cacheChat(Chat chat) {
+        cacheService.saveChat(EntityMapper.toCache(chat)); // восстанавливаем в кеш
     }
 
     public UserChatsPageDTO getUserChatsPage(long userId, Boolean isPinnedCursor, Long lastMsgIdCursor, Long chatIdCursor, int limit) {
-        // загружаем с бд
-        List<UserChatResult> rows = dbService.getUserChatsPage(userId, isPinnedCursor, lastMsgIdCursor, chatIdCursor, limit + 1); // берем на одну больше
-        if (rows.isEmpty()) {
-            return new UserChatsPageDTO(Collections.emptyMap(), null);
+        // пробуем кеш
+        Optional<List<UserChatDTO>> cached = cacheService.getInboxPage(userId, isPinnedCursor, lastMsgIdCursor, chatIdCursor, limit + 1); // берем на одну больше
+        if (cached.isPresent())
+            return toUserChatsPage(cached.get(), userId, limit);
+
+        // холодный список - грузим целиком, если влезает
+        if (!cacheService.isInboxOversized(userId)) {
+            long seedEpoch = cacheService.beginInboxSeed();
+            List<UserChatResult> allRows = dbCalls.record("user_chats", "getUserChatsPage", () -> dbService.getUserChatsPage(userId, null, null, null, inboxMaxChats + 1));
+            if (allRows.size() <= inboxMaxChats) {
+                Map<Long, UserChatDTO> all = EntityMapper.toFullDTOs(allRows, new LinkedHashMap<>(allRows.size()));
+                Set<Long> pinnedChatIds = new HashSet<>();
+                for (UserChatResult row : allRows) {
+                    if (Boolean.TRUE.equals(row.getIsPinned())) pinnedChatIds.add(row.getId());
+                }
+
+                // кешируем данные
+                cacheService.saveChats(EntityMapper.toCaches(all.values()));
+                cacheService.seedInbox(userId, all.values(), pinnedChatIds, seedEpoch);
+
+                // страницу режем так же, как из кеша, даже если загрузку отбросили
+                CacheUserInbox loaded = new CacheUserInbox(userId, all.values(), pinnedChatIds);
+                return toUserChatsPage(loaded.getPage(isPinnedCursor, lastMsgIdCursor, chatIdCursor, limit + 1), userId, limit);
+            }
+            cacheService.markInboxOversized(userId);
         }
 
-        Map<Long, UserChatDTO> chats = new HashMap<>(rows.size());
-        boolean hasMore = rows.size() > limit;
-
-        List<UserChatResult> pageRows = hasMore ? rows.subList(0, limit) : rows;
-        chats = EntityMapper.toFullDTOs(pageRows, chats);
-        Long nextCursor = hasMore ? pageRows.getLast().getId() : null;
+        // загружаем страницу с бд
+        List<UserChatResult> rows = dbCalls.record("user_chats", "getUserChatsPage", () -> dbService.getUserChatsPage(userId, isPinnedCursor, lastMsgIdCursor, chatIdCursor, limit + 1));
+        Map<Long, UserChatDTO> chats = EntityMapper.toFullDTOs(rows, new LinkedHashMap<>(rows.size()));
 
         // кешируем данные
         cacheService.saveChats(EntityMapper.toCaches(chats.values()));
-        return new UserChatsPageDTO(chats, nextCursor);
+        return toUserChatsPage(new ArrayList<>(chats.values()), userId, limit);
     }
     public Optional<UserChatDTO> getUserChat(long chatId, long userId) {
-        // загружаем с бд
-        Optional<UserChatResult> dbChat = dbService.getUserChat(chatId, userId);
-
-        // кешируем данные
-        dbChat.ifPresent(chat -> {
-            cacheService.saveChat(EntityMapper.toCache(chat));
-        });
-        return dbChat.map(EntityMapper::toFullDTO);
+        // загружаем с бд и кешируем данные
+        Optional<UserChatResult> dbChat = loader.load("user_chats", "getUserChat", ReadThroughLoader.key(chatId, userId),
+                () -> dbService.getUserChat(chatId, userId), chat -> cacheService.saveChat(EntityMapper.toCache(chat)));
+        return dbChat.map(EntityMapper::toFullDTO).map(chat -> applyCachedUnreadCount(chat, userId));
     }
     public List<Long> getUserChatIds(long userId) {
-        return dbService.getUserChatIds(userId); // загружаем с бд
+        return dbCalls.record("user_chats", "getUserChatIds", () -> dbService.getUserChatIds(userId)); // загружаем с бд
+    }
+    public int getTotalUnreadCount(long userId) {
+        // чаты пользователя берём из кешированного списка, бд - только если его нет
+        Optional<Set<Long>> cachedChatIds = cacheService.getInboxChatIds(userId);
+        Collection<Long> chatIds = cachedChatIds.isPresent()
+                ? cachedChatIds.get()
+                : dbCalls.record("user_chats", "getUserChatIds", () -> dbService.getUserChatIds(userId));
+
+        // пробуем кеш
+        int total = 0;
+        Map<Long, Long> missingEpochs = new HashMap<>(); // chatId -> epoch загрузки
+        for (long chatId : chatIds) {
+            OptionalInt cached = cacheService.getUnreadCount(chatId, userId);
+            if (cached.isPresent()) total += cached.getAsInt();
+            else missingEpochs.put(chatId, cacheService.beginUnreadSeed(chatId));
+        }
+        if (missingEpochs.isEmpty())
+            return total;
+
+        // считаем в бд одним запросом
+        Map<Long, Integer> counted = dbCalls.record("unread", "countUnreadMessages", () -> dbService.countUnreadMessages(userId, missingEpochs.keySet()));
+        for (Map.Entry<Long, Long> entry : missingEpochs.entrySet()) {
+            int count = counted.getOrDefault(entry.getKey(), 0);
+            total += count;
+            cacheService.seedUnreadCount(entry.getKey(), userId, count, entry.getValue()); // восстанавливаем в кеш
+        }
+        return total;
     }
 
 
@@ -382,6 +527,11 @@ public class DataOrchestrator {
     public void saveOrRestoreChatMember(ChatMemberDTO chatMember) {
         dbService.upsertChatMember(EntityMapper.toEntity(chatMember)); // синхронно в бд
         cacheService.saveChatMember(EntityMapper.toCache(chatMember)); // сохраняем в кеш
+        cacheService.evictInboxesWithChat(chatMember.getChatId()); // счётчик участников у остальных
+        cacheService.evictInbox(chatMember.getUserId());
+        invalidationBus.userInboxChanged(chatMember.getUserId(), chatMember.getJoinedAt()); // его узлы не знают, что чат у него в списке
+        invalidationBus.chatMembersChanged(chatMember.getChatId(), chatMember.getJoinedAt());
+        invalidationBus.chatChanged(chatMember.getChatId(), chatMember.getJoinedAt()); // счётчик участников
     }
     public void saveOrRestoreChatMembers(long chatId, List<ChatMemberDTO> chatMembers) {
         // конвертируем
@@ -396,22 +546,45 @@ public class DataOrchestrator {
 
         dbService.upsertChatMembers(chatId, ids, joinedAt, isAdminFlags); // синхронно в бд
         cacheService.saveChatMembers(chatId, EntityMapper.toCacheLightChatMembers(chatMembers)); // сохраняем в кеш
+        cacheService.evictInboxesWithChat(chatId);
+        for (Long memberId : ids) {
+            cacheService.evictInbox(memberId);
+            invalidationBus.userInboxChanged(memberId, joinedAt); // его узлы не знают, что чат у него в списке
+        }
+        invalidationBus.chatMembersChanged(chatId, joinedAt);
+        invalidationBus.chatChanged(chatId, joinedAt); // счётчик участников
     }
     public void updateChatMemberInfo(long chatId, long userId, String tag, LocalDateTime updatedAt) {
         boolean isUpdated = dbService.updateChatMemberInfo(chatId, userId, tag, updatedAt) > 0; // синхронно в бд
-        if (isUpdated) cacheService.updateChatMemberInfo(chatId, userId, tag, updatedAt); // обновляем кэш
+        if (isUpdated) {
+            cacheService.updateChatMemberInfo(chatId, userId, tag, updatedAt); // обновляем кэш
+            invalidationBus.chatMembersChanged(chatId, updatedAt);
+        }
     }
     public void updateChatMemberAdminRights(long chatId, long userId, boolean isAdmin, LocalDateTime updatedAt) {
         boolean isUpdated = dbService.updateChatMemberAdminRights(chatId, userId, isAdmin, updatedAt) > 0; // синхронно в бд
-        if (isUpdated) cacheService.updateChatMemberAdminRights(chatId, userId, isAdmin, updatedAt); // обновляем кэш
+        if (isUpdated) {
+            cacheService.updateChatMemberAdminRights(chatId, userId, isAdmin, updatedAt); // обновляем кэш
+            invalidationBus.chatMembersChanged(chatId, updatedAt);
+        }
     }
     public void updateChatMemberSetting(long chatId, long userId, boolean isPinned, LocalDateTime updatedAt) {
         boolean isUpdated = dbService.updateChatMemberSettings(chatId, userId, isPinned, updatedAt) > 0; // синхронно в бд
-        if (isUpdated) cacheService.updateChatMemberSettings(chatId, userId, isPinned, updatedAt); // обновляем кэш
+        if (isUpdated) {
+            cacheService.updateChatMemberSettings(chatId, userId, isPinned, updatedAt); // обновляем кэш
+            cacheService.pinInboxChat(chatId, userId, isPinned);
+            invalidationBus.chatMembersChanged(chatId, updatedAt);
+        }
     }
     public void removeUserFromChat(long chatId, long userId, LocalDateTime updatedAt) {
         boolean removed = dbService.removeChatMember(userId, chatId, updatedAt); // синхронно в бд
-        if (removed) cacheService.removeChatMember(userId, chatId, updatedAt); // сохраняем в кеш
+        if (removed) {
+            cacheService.removeChatMember(userId, chatId, updatedAt); // сохраняем в кеш
+            cacheService.removeUnreadCount(chatId, userId);
+            cacheService.evictInboxesWithChat(chatId); // ушедший теряет чат, остальные - участника
+            invalidationBus.chatMembersChanged(chatId, updatedAt);
+            invalidationBus.chatChanged(chatId, updatedAt); // счётчик участников
+        }
     }
 
 
@@ -423,10 +596,8 @@ public class DataOrchestrator {
             return hasActiveChatMember.get();
 
         // проверяем пользователя в чате
-        Optional<ChatMember> dbMember = dbService.getChatMember(chatId, userId);
-        dbMember.ifPresent(member -> {
-            cacheService.saveChatMember(EntityMapper.toCache(member)); // кешируем
-        });
+        Optional<ChatMember> dbMember = loader.load("chat_member", "getChatMember", ReadThroughLoader.key(chatId, userId),
+                () -> dbService.getChatMember(chatId, userId), this::cacheChatMember);
         return dbMember.map(ChatMember::isActive).orElse(false);
     }
     public Optional<Boolean> isActiveAdminInActiveChat(long chatId, long userId) {
@@ -436,13 +607,14 @@ public class DataOrchestrator {
             return cached;
 
         // надо найти пользователя, добавить в кеш и отдать
-        Optional<ChatMember> dbMember = dbService.getActiveChatMember(chatId, userId);
-        dbMember.ifPresent(member -> {
-            cacheService.saveChatMember(EntityMapper.toCache(member));
-        });
+        Optional<ChatMember> dbMember = loader.load("chat_member", "getActiveChatMember", ReadThroughLoader.key(chatId, userId),
+                () -> dbService.getActiveChatMember(chatId, userId), this::cacheChatMember);
         return dbMember.map(ChatMember::isAdmin);
     }
 
+    private void cacheChatMember(ChatMember member) {
+        cacheService.saveChatMember(EntityMapper.toCache(member)); // кешируем
+    }
     private Map<Long, ChatMemberDTO> loadMembersWithCache(long chatId, Set<Long> userIds) {
         if (userIds.isEmpty()) {
             return Collections.emptyMap();
@@ -463,7 +635,7 @@ public class DataOrchestrator {
 
         // Загружаем недостающих из БД
         if (!missingMemberIds.isEmpty()) {
-            List<ChatMember> dbMembers = dbService.getActiveChatMembersByIds(chatId, new ArrayList<>(missingMemberIds));
+            List<ChatMember> dbMembers = dbCalls.record("chat_member", "getActiveChatMembersByIds", () -> dbService.getActiveChatMembersByIds(chatId, new ArrayList<>(missingMemberIds)));
             List<CacheChatMember> membersToCache = new ArrayList<>();
 
             for (ChatMember member : dbMembers) {
@@ -480,7 +652,7 @@ public class DataOrchestrator {
         return memberMap;
     }
     public ChatMembersPageDTO getChatMembersPage(long chatId, Long cursor, int limit) {
-        List<Long> userIds = dbService.getChatMemberIdsPage(chatId, cursor, limit + 1);
+        List<Long> userIds = dbCalls.record("chat_member", "getChatMemberIdsPage", () -> dbService.getChatMemberIdsPage(chatId, cursor, limit + 1));
         if (userIds.isEmpty()) {
             return new ChatMembersPageDTO(Collections.emptyMap(), null);
         }
@@ -512,13 +684,14 @@ public class DataOrchestrator {
 
     // Основные методы
     public void saveVerificationToken(VerificationTokenDTO verificationTokenDTO) {
-        dbService.saveVerificationTokenAsync(EntityMapper.toEntity(verificationTokenDTO)); // асинхронно в бд
+        dbService.saveVerificationTokenViaOutbox(EntityMapper.toEntity(verificationTokenDTO)); // в outbox, в бд применится в фоне
         cacheService.saveVerificationToken(EntityMapper.toCache(verificationTokenDTO)); // сохраняем в кеш
-    } // TODO: SYNC OUTBOX||KAFKA
+    }
     public void deleteVerificationToken(String token) {
-        dbService.deleteVerificationTokenAsync(token); // асинхронно в бд
+        dbService.deleteVerificationTokenViaOutbox(token); // в outbox, в бд применится в фоне
         cacheService.deleteVerificationToken(token); // сохраняем в кеш
-    } // TODO: SYNC OUTBOX||KAFKA
+        invalidationBus.verificationTokenDeleted(token);
+    }
 
 
     // Вспомогательные методы
@@ -527,10 +700,9 @@ public class DataOrchestrator {
         if(optToken.isPresent())
             return optToken.map(EntityMapper::toDTO);
 
-        Optional<VerificationToken> optTokenDB = dbService.getVerificationToken(token);
-        optTokenDB.ifPresent(verificationTokenDB -> {
-            cacheService.saveVerificationToken(EntityMapper.toCache(verificationTokenDB));
-        });
+        Optional<VerificationToken> optTokenDB = loader.load("verification_token", "getVerificationToken", token,
+                () -> dbService.getVerificationToken(token),
+                verificationTokenDB -> cacheService.saveVerificationToken(EntityMapper.toCache(verificationTokenDB)));
         return optTokenDB.map(EntityMapper::toDTO);
     }
 
@@ -542,24 +714,71 @@ public class DataOrchestrator {
     public void saveMessage(MessageDTO message) {
         dbService.saveMessage(EntityMapper.toEntity(message)); // синхронно в бд
         cacheService.saveMessage(EntityMapper.toCache(message)); // сохраняем в кеш
+        cacheService.saveRecentMessage(EntityMapper.toCacheRecent(message)); // в буфер последних сообщений чата
+        cacheService.addUnreadMessage(message.getChatId(), message.getId(), message.getSenderId()); // +1 всем, кроме отправителя
+        cacheService.addInboxMessage(message); // чат поднимается в списках участников
+        invalidationBus.messageAdded(message); // другие узлы применят то же самое
     }
-    public void updateMessage(long messageId, String newText, LocalDateTime updatedAt) {
+    public void updateMessage(long chatId, long messageId, String newText, LocalDateTime updatedAt) {
         boolean isUpdated = dbService.updateMessage(messageId, newText, updatedAt) > 0; // синхронно в бд
+        if (isUpdated) {
+            cacheService.updateRecentMessage(chatId, messageId, newText, updatedAt); // сохраняем в кеш
+            cacheService.updateInboxMessage(chatId, messageId, newText, updatedAt);
+            invalidationBus.messageChanged(chatId, messageId, updatedAt);
+        }
     }
     public void markMessagesUpToRead(long chatId, long userId, long messageId, LocalDateTime readAt) {
+        long previous = getLastReadMessageId(chatId, userId); // до записи: с какого сообщения считать прочтения в буфере
         dbService.markMessagesUpToRead(chatId, userId, messageId, readAt); // синхронно в бд
+        cacheService.markRecentMessagesRead(chatId, userId, previous, messageId, readAt.minusDays(DBService.READ_STATUS_WINDOW_DAYS)); // сохраняем в кеш
+        cacheService.markUnreadReadUpTo(chatId, userId, messageId);
+        cacheService.markInboxRead(chatId, userId, messageId);
+        invalidationBus.messagesRead(chatId, userId, previous, messageId, readAt);
+    }
+    public void markMessagesUpToRead(List<ReadMark> marks) {
+        long[] previous = new long[marks.size()];
+        for (int i = 0; i < marks.size(); i++) {
+            previous[i] = getLastReadMessageId(marks.get(i).chatId(), marks.get(i).userId());
+        }
+        dbService.markMessagesUpToRead(marks); // синхронно в бд, одной транзакцией
+
+        for (int i = 0; i < marks.size(); i++) {
+            ReadMark mark = marks.get(i);
+            cacheService.markRecentMessagesRead(mark.chatId(), mark.userId(), previous[i], mark.messageId(), mark.readAt().minusDays(DBService.READ_STATUS_WINDOW_DAYS)); // сохраняем в кеш
+            cacheService.markUnreadReadUpTo(mark.chatId(), mark.userId(), mark.messageId());
+            cacheService.markInboxRead(mark.chatId(), mark.userId(), mark.messageId());
+            invalidationBus.messagesRead(mark.chatId(), mark.userId(), previous[i], mark.messageId(), mark.readAt());
+        }
     }
-    public void restoreMessage(long messageId, LocalDateTime updatedAt) {
+    public void restoreMessage(long chatId, long messageId, LocalDateTime updatedAt) {
         boolean isUpdated = dbService.restoreMessage(messageId, updatedAt) > 0; // синхронно в бд
-        if (isUpdated) cacheService.restoreMessage(messageId); // сохраняем в кеш
+        if (isUpdated) {
+            cacheService.restoreMessage(messageId, updatedAt); // сохраняем в кеш
+            cacheService.restoreRecentMessage(chatId, messageId, updatedAt);
+            cacheService.resetUnreadCounts(chatId); // неизвестно, у кого оно было непрочитанным - пересчитаем
+            cacheService.evictInboxesWithChat(chatId); // могло стать последним сообщением
+            invalidationBus.messageChanged(chatId, messageId, updatedAt);
+            invalidationBus.recentMessagesChanged(chatId, updatedAt);
+        }
     }
-    public void deleteMessage(long messageId, LocalDateTime updatedAt) {
+    public void deleteMessage(long chatId, long messageId, LocalDateTime updatedAt) {
         boolean isUpdated = dbService.deleteMessage(messageId, updatedAt) > 0; // синхронно в бд
-        if (isUpdated) cacheService.deleteMessage(messageId, updatedAt); // сохраняем в кеш
+        if (isUpdated) {
+            cacheService.deleteMessage(messageId, updatedAt); // сохраняем в кеш
+            cacheService.deleteRecentMessage(chatId, messageId, updatedAt);
+            cacheService.resetUnreadCounts(chatId);
+            cacheService.evictInboxesWithChat(chatId);
+            invalidationBus.messageChanged(chatId, messageId, updatedAt);
+            invalidationBus.recentMessagesChanged(chatId, updatedAt);
+        }
     }
 
 
     // Вспомогательные методы
+    public boolean isReadUpToCached(long chatId, long userId, long messageId) {
+        // только кеш: промах значит "неизвестно", а не "не прочитано"
+        return cacheService.getReadWatermark(chatId, userId).filter(watermark -> watermark >= messageId).isPresent();
+    }
     public boolean isActiveMessageInChat(long chatId, long messageId) {
         // пробуем кеш
         Optional<CacheMessage> cacheMessage = cacheService.getMessage(messageId);
@@ -567,11 +786,7 @@ public class DataOrchestrator {
             return cacheMessage.filter(msg -> msg.isActive() && msg.getChatId() == chatId).isPresent();
 
         // грузим из бд
-        Optional<Message> dbMessage = dbService.getMessage(messageId);
-        dbMessage.ifPresent(msg -> {
-            cacheService.saveMessage(EntityMapper.toCache(msg)); // восстанавливаем в кеш
-        });
-        return dbMessage.filter(msg -> msg.isActive() && msg.getChatId() == chatId).isPresent();
+        return loadMessage(messageId).filter(msg -> msg.isActive() && msg.getChatId() == chatId).isPresent();
     }
     public boolean isActiveMessageInChatAndIsSender(long chatId, long userId, long messageId) {
         // пробуем кеш
@@ -580,19 +795,17 @@ public class DataOrchestrator {
             return cacheMessage.filter(msg -> msg.isActive() && msg.getChatId() == chatId && msg.getSenderId() == userId).isPresent();
 
         // грузим из бд
-        Optional<Message> dbMessage = dbService.getMessage(messageId);
-        dbMessage.ifPresent(msg -> {
-            cacheService.saveMessage(EntityMapper.toCache(msg)); // восстанавливаем в кеш
-        });
-        return dbMessage.filter(msg -> msg.isActive() && msg.getChatId() == chatId && msg.getSenderId() == userId).isPresent();
+        return loadMessage(messageId).filter(msg -> msg.isActive() && msg.getChatId() == chatId && msg.getSenderId() == userId).isPresent();
+    }
+    private Optional<Message> loadMessage(long messageId) {
+        return loader.load("message", "getMessage", messageId, () -> dbService.getMessage(messageId),
+                msg -> cacheService.saveMessage(EntityMapper.toCache(msg))); // восстанавливаем в кеш
     }
 
     public Optional<MessageDTO> getActiveMessageWithReadStatusInChat(long chatId, long userId, long messageId) {
         // грузим из бд
-        Optional<UserMessageDBResult> dbMessage = dbService.getMessageWithReadStatus(userId, messageId);
-        dbMessage.ifPresent(msg -> {
-            cacheService.saveMessage(EntityMapper.toCache(msg)); // восстанавливаем в кеш
-        });
+        Optional<UserMessageDBResult> dbMessage = loader.load("message", "getMessageWithReadStatus", ReadThroughLoader.key(userId, messageId),
+                () -> dbService.getMessageWithReadStatus(userId, messageId), msg -> cacheService.saveMessage(EntityMapper.toCache(msg)));
         return dbMessage.map(msg -> {
             if (msg.getChatId() != chatId) return null;
 
@@ -602,48 +815,110 @@ public class DataOrchestrator {
         });
     }
     public MessagesPageDTO getChatMessagesPage(long chatId, long userId, Long cursor, int limit, Direction direction) {
-        // Получаем Page сообщений из БД
-        List<UserMessageDBResult> dbResult = dbService.getMessagePage(chatId, userId, cursor, limit + 1, direction); // Получаем с БД
-        if (dbResult.isEmpty()) {
+        // Получаем Page сообщений из буфера или БД
+        List<MessageDTO> rows = getMessagePageRows(chatId, userId, cursor, limit + 1, direction);
+        if (rows.isEmpty()) {
             return new MessagesPageDTO(Collections.emptyMap(), null);
         }
 
         // обрезаем и выясняем курсор (если требуется)
         Long nextCursor = null;
-        if (dbResult.size() > limit) {
+        if (rows.size() > limit) {
             if (direction == Direction.FORWARD) {
-                dbResult = dbResult.subList(0, limit);
-                nextCursor = dbResult.getLast().getId();
+                rows = rows.subList(0, limit);
+                nextCursor = rows.getLast().getId();
             } else {
-                dbResult = dbResult.subList(dbResult.size() - limit, dbResult.size());
-                nextCursor = dbResult.getFirst().getId();
+                rows = rows.subList(rows.size() - limit, rows.size());
+                nextCursor = rows.getFirst().getId();
             }
         }
 
         // собираем результат
-        Map<Long, MessageDTO> messageMap = new LinkedHashMap<>(dbResult.size());
-        List<CacheMessage> messagesToCache = new ArrayList<>(dbResult.size());
-        for (UserMessageDBResult message : dbResult) {
-            log.debug("msg -> {}", message.toString());
-            MessageDTO msgDTO = EntityMapper.toDTO(message);
+        Map<Long, MessageDTO> messageMap = new LinkedHashMap<>(rows.size());
+        for (MessageDTO msgDTO : rows) {
             if (msgDTO.getChatId() != chatId) continue;
             if (msgDTO.isDeleted()) msgDTO.setText(null);
 
-            messageMap.put(message.getId(), msgDTO);
-            messagesToCache.add(EntityMapper.toCache(msgDTO));
+            messageMap.put(msgDTO.getId(), msgDTO);
         }
-
-        // кешируем
-        cacheService.saveMessages(messagesToCache);
         return new MessagesPageDTO(messageMap, nextCursor);
     }
     public Map<Long, MessageReadStatusDTO> getMessageReads(long messageId){
-        List<MessageReadStatusResult> reads = dbService.getMessageReaders(messageId);
+        List<MessageReadStatusResult> reads = dbCalls.record("message", "getMessageReaders", () -> dbService.getMessageReaders(messageId));
         return EntityMapper.toMessageReadDTOs(reads, new HashMap<>(reads.size()));
     }
 
     public ChatStatsDBResult getChatClearStats(long chatId, long userId) {
-        return dbService.getChatMessagesDeletedStats(chatId, userId);
+        return dbCalls.record("message", "getChatMessagesDeletedStats", () -> dbService.getChatMessagesDeletedStats(chatId, userId));
+    }
+
+    private List<MessageDTO> getMessagePageRows(long chatId, long userId, Long cursor, int count, Direction direction) {
+        // пробуем буфер последних сообщений (строки в том же порядке, что и из бд)
+        Optional<List<CacheRecentMessage>> recentPage = cacheService.getRecentMessagesPage(chatId, cursor, count, direction);
+        if (recentPage.isPresent()) {
+            long lastReadMessageId = getLastReadMessageId(chatId, userId);
+            List<MessageDTO> rows = new ArrayList<>(recentPage.get().size());
+            for (CacheRecentMessage message : recentPage.get()) {
+                LocalDateTime profileUpdatedAt = cacheService.getUser(message.getSenderId())
+                        .map(CacheUser::getProfileUpdatedAt)
+                        .orElse(message.getProfileUpdatedAt());
+                rows.add(EntityMapper.toDTO(message, profileUpdatedAt, message.getId() <= lastReadMessageId));
+            }
+            return rows;
+        }
+
+        // грузим из бд (первая страница заодно заполняет буфер)
+        long seedEpoch = cursor == null ? cacheService.beginRecentMessagesSeed(chatId) : 0;
+        List<UserMessageDBResult> dbResult = dbCalls.record("message", "getMessagePage", () -> dbService.getMessagePage(chatId, userId, cursor, count, direction));
+
+        List<MessageDTO> rows = new ArrayList<>(dbResult.size());
+        List<CacheMessage> messagesToCache = new ArrayList<>(dbResult.size());
+        for (UserMessageDBResult message : dbResult) {
+            rows.add(EntityMapper.toDTO(message));
+            messagesToCache.add(EntityMapper.toCache(message));
+        }
+
+        // кешируем
+        cacheService.saveMessages(messagesToCache);
+        if (cursor == null) {
+            List<CacheRecentMessage> recent = new ArrayList<>(dbResult.size());
+            for (UserMessageDBResult message : dbResult) {
+                recent.add(EntityMapper.toCacheRecent(message));
+            }
+            cacheService.seedRecentMessages(chatId, recent, dbResult.size() < count, seedEpoch);
+        }
+        return rows;
+    }
+    private UserChatsPageDTO toUserChatsPage(List<UserChatDTO> rows, long userId, int limit) {
+        if (rows.isEmpty()) {
+            return new UserChatsPageDTO(Collections.emptyMap(), null);
+        }
+
+        boolean hasMore = rows.size() > limit;
+        List<UserChatDTO> pageRows = hasMore ? rows.subList(0, limit) : rows;
+        Map<Long, UserChatDTO> chats = new LinkedHashMap<>(pageRows.size()); // порядок страницы сохраняем
+        for (UserChatDTO chat : pageRows) {
+            chats.put(chat.getId(), applyCachedUnreadCount(chat, userId));
+        }
+        Long nextCursor = hasMore ? pageRows.getLast().getId() : null;
+        return new UserChatsPageDTO(chats, nextCursor);
+    }
+    private UserChatDTO applyCachedUnreadCount(UserChatDTO chat, long userId) {
+        // счётчик из кеша свежее посчитанного в get_user_chats_page, если он есть
+        cacheService.getUnreadCount(chat.getId(), userId).ifPresent(chat::setUnreadCount);
+        return chat;
+    }
+    private long getLastReadMessageId(long chatId, long userId) {
+        // пробуем кеш
+        Optional<Long> cacheWatermark = cacheService.getReadWatermark(chatId, userId);
+        if (cacheWatermark.isPresent())
+            return cacheWatermark.get();
+
+        // грузим из бд
+        return loader.load("read_status", "getLastReadMessageId", ReadThroughLoader.key(chatId, userId),
+                () -> Optional.of(dbService.getLastReadMessageId(chatId, userId).orElse(0L)),
+                lastReadMessageId -> cacheService.saveReadWatermark(chatId, userId, lastReadMessageId)) // восстанавливаем в кеш
+                .orElse(0L);
     }
 
     // ========== SUB METHODS ==========
@@ -652,7 +927,7 @@ public class DataOrchestrator {
     public CacheService.CacheStats getCacheStatus() {
         return cacheService.getCacheStatus();
     }
-    @Scheduled(initialDelay = 10_000, fixedRate = 86_400_000) // Каждые 24 часа
+    @Scheduled(initialDelay = 10_000, fixedRate = 86_400_000, scheduler = SchedulingConfig.DB_SCHEDULER) // Каждые 24 часа
     public void cleanupExpiredTokens() {
         try {
             int numDeletedTokens = dbService.cleanupExpiredVerificationTokens();
@@ -0,0 +1,40 @@
+package com.sunrise.core.dataservice;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/*
+ * Таймеры походов DataOrchestrator в DBService, когда кеш не ответил: sunrise.db.fallthrough{entity, method}.
+ * Count таймера - число промахов до бд по конкретному чтению, сумма - сколько времени они стоили.
+ * Таймеры кешируем сами: поиск в реестре по тегам на каждом вызове аллоцирует.
+ */
+@Component
+public class DbFallThroughMetrics {
+
+    public static final String METRIC_NAME = "sunrise.db.fallthrough";
+
+    private final MeterRegistry registry;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>(); // "entity:method" -> таймер
+
+    public DbFallThroughMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public <T> T record(String entity, String method, Supplier<T> dbCall) {
+        return timer(entity, method).record(dbCall);
+    }
+
+    private Timer timer(String entity, String method) {
+        return timers.computeIfAbsent(entity + ':' + method, key -> Timer.builder(METRIC_NAME)
+                .description("DataOrchestrator reads that missed the cache and went to the database")
+                .tag("entity", entity)
+                .tag("method", method)
+                .register(registry));
+    }
+}
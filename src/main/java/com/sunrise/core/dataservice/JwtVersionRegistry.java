@@ -0,0 +1,125 @@
+package com.sunrise.core.dataservice;
+
+import com.sunrise.helpclass.LongIntMap;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.locks.StampedLock;
+
+/*
+ * userId -> jwtVersion для всех пользователей, без вытеснения.
+ * Читается на каждом запросе (оптимистичное чтение без блокировок и аллокаций),
+ * пишется из DBService после каждого изменения версии. Версии только растут, поэтому запись берёт максимум.
+ */
+@Slf4j
+@Service
+public class JwtVersionRegistry {
+
+    public static final int MISSING = 0; // версии начинаются с 1
+
+    private static final int LOAD_FETCH_SIZE = 10_000;
+    private static final int LOAD_CHUNK_SIZE = 1_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction; // pgjdbc отдаёт строки порциями только вне autocommit
+    private final StampedLock lock = new StampedLock();
+    private final LongIntMap versions = new LongIntMap(100_000);
+
+    private volatile boolean loaded;
+
+    public JwtVersionRegistry(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+
+    // ========== LOAD ==========
+
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadAll() {
+        long startedAt = System.currentTimeMillis();
+        try {
+            readOnlyTransaction.executeWithoutResult(status -> streamAll());
+            loaded = true;
+            log.info("[🔧] ✅ Loaded {} jwt versions in {} ms", size(), System.currentTimeMillis() - startedAt);
+        }
+        catch (Exception e) {
+            // без таблицы проверки идут старым путём через кеш пользователей и бд
+            log.error("[🔧] ⚠️ Failed to load jwt versions: {}", e.getMessage());
+        }
+    }
+    private void streamAll() {
+        JdbcTemplate streaming = new JdbcTemplate(jdbcTemplate.getDataSource());
+        streaming.setFetchSize(LOAD_FETCH_SIZE);
+
+        long[] userIds = new long[LOAD_CHUNK_SIZE];
+        int[] jwtVersions = new int[LOAD_CHUNK_SIZE];
+        int[] filled = {0};
+        streaming.query("SELECT id, jwt_version FROM users", rs -> {
+            userIds[filled[0]] = rs.getLong(1);
+            jwtVersions[filled[0]] = rs.getInt(2);
+            if (++filled[0] == LOAD_CHUNK_SIZE) {
+                updateBatch(userIds, jwtVersions, filled[0]);
+                filled[0] = 0;
+            }
+        });
+        updateBatch(userIds, jwtVersions, filled[0]);
+    }
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+
+    // ========== READ / WRITE ==========
+
+
+    // MISSING, если пользователя нет в таблице
+    public int get(long userId) {
+        long stamp = lock.tryOptimisticRead();
+        int version = versions.get(userId, MISSING);
+        if (lock.validate(stamp)) return version;
+
+        stamp = lock.readLock();
+        try {
+            return versions.get(userId, MISSING);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+    public void update(long userId, int jwtVersion) {
+        long stamp = lock.writeLock();
+        try {
+            if (jwtVersion > versions.get(userId, MISSING)) versions.put(userId, jwtVersion);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return versions.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private void updateBatch(long[] userIds, int[] jwtVersions, int count) {
+        long stamp = lock.writeLock();
+        try {
+            for (int i = 0; i < count; i++) {
+                if (jwtVersions[i] > versions.get(userIds[i], MISSING)) versions.put(userIds[i], jwtVersions[i]);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package com.sunrise.core.dataservice;
+
+import com.sunrise.entity.db.Message;
+import com.sunrise.helpclass.ValidationException;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Write-behind для новых сообщений: вызывающий поток кладёт сообщение в очередь и ждёт коммита,
+ * а один поток-писатель собирает очередь в пачки (по размеру или по времени) и пишет их одной транзакцией.
+ * Выключен по умолчанию - тогда DBService пишет каждое сообщение сам.
+ * Сообщение забирает либо писатель (перед insert), либо вызывающий по таймауту - поэтому ошибка таймаута
+ * гарантирует, что сообщение не запишется, и повтор клиента с новым id не даст дубля.
+ */
+@Slf4j
+@Service
+public class MessageBatchWriter {
+
+    @Value("${app.messages.write-behind.enabled}")
+    private boolean enabled;
+    @Value("${app.messages.write-behind.queue-capacity}")
+    private int queueCapacity;
+    @Value("${app.messages.write-behind.max-batch-size}")
+    private int maxBatchSize;
+    @Value("${app.messages.write-behind.max-batch-latency-ms}")
+    private long maxBatchLatencyMs;
+    @Value("${app.messages.write-behind.enqueue-timeout-ms}")
+    private long enqueueTimeoutMs;
+    @Value("${app.messages.write-behind.commit-timeout-ms}")
+    private long commitTimeoutMs;
+
+    private static final String INSERT_SQL = """
+            INSERT INTO messages (id, chat_id, sender_id, text, read_count, sent_at, updated_at, deleted_at, is_deleted)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private BlockingQueue<PendingMessage> queue;
+    private Thread writerThread;
+    private volatile boolean running;
+
+    // метрики
+    private final LongAdder batchCount = new LongAdder();
+    private final LongAdder writtenCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+    private final LongAdder commitNanosTotal = new LongAdder();
+    private final AtomicLong commitNanosMax = new AtomicLong();
+    private final AtomicLong batchSizeMax = new AtomicLong();
+    private final DistributionSummary batchSizeSummary;
+    private final Timer commitTimer;
+
+    // taken - кто первым взял сообщение: писатель или вызывающий по таймауту
+    private record PendingMessage(Message message, CompletableFuture<Void> committed, AtomicBoolean taken) {}
+
+    public MessageBatchWriter(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager, MeterRegistry registry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSizeSummary = DistributionSummary.builder("sunrise.messages.write_behind.batch.size")
+                .description("Messages per write-behind batch")
+                .register(registry);
+        this.commitTimer = Timer.builder("sunrise.messages.write_behind.commit")
+                .description("Write-behind batch insert and commit time")
+                .register(registry);
+        Gauge.builder("sunrise.messages.write_behind.queue.depth", this, writer -> writer.queue == null ? 0 : writer.queue.size())
+                .description("Messages waiting for the write-behind writer")
+                .register(registry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) return;
+
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        running = true;
+        writerThread = Thread.ofPlatform().name("message-writer").start(this::runWriter);
+        log.info("[🔧] ✅ Message write-behind enabled (queue={}, batch={}, latency={}ms)", queueCapacity, maxBatchSize, maxBatchLatencyMs);
+    }
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (writerThread == null) return;
+
+        running = false; // писатель дописывает остаток очереди и выходит
+        writerThread.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+
+    // ========== WRITE METHODS ==========
+
+
+    // Возвращает управление только после коммита пачки, в которую попало сообщение
+    public void save(Message message) {
+        PendingMessage pending = new PendingMessage(message, new CompletableFuture<>(), new AtomicBoolean());
+        try {
+            if (!running || !queue.offer(pending, enqueueTimeoutMs, TimeUnit.MILLISECONDS)) {
+                rejectedCount.increment();
+                throw new ValidationException("Server is busy, try again later");
+            }
+            try {
+                pending.committed().get(commitTimeoutMs, TimeUnit.MILLISECONDS);
+            }
+            catch (TimeoutException e) {
+                if (pending.taken().compareAndSet(false, true)) {
+                    queue.remove(pending); // писатель его ещё не взял - сообщение не запишется
+                    throw e;
+                }
+                pending.committed().get(); // уже пишется: ждём исхода, иначе клиент повторит и получит дубль
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for message commit", e);
+        }
+        catch (ExecutionException e) {
+            throw new IllegalStateException("Message batch commit failed", e.getCause());
+        }
+        catch (TimeoutException e) {
+            throw new IllegalStateException("Message batch commit timed out", e);
+        }
+    }
+
+    private void runWriter() {
+        List<PendingMessage> batch = new ArrayList<>(maxBatchSize);
+        long maxLatencyNanos = TimeUnit.MILLISECONDS.toNanos(maxBatchLatencyMs);
+
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingMessage first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+
+                // добираем пачку, пока не истечёт задержка первого сообщения
+                batch.add(first);
+                long deadline = System.nanoTime() + maxLatencyNanos;
+                while (batch.size() < maxBatchSize) {
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= maxBatchSize || remaining <= 0) break;
+
+                    PendingMessage next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+
+                takeAndFlush(batch);
+            }
+            catch (InterruptedException e) {
+                takeAndFlush(batch); // то, что уже взяли из очереди, не теряем
+            }
+            catch (Exception e) {
+                log.error("[🔧] ⚠️ Unexpected error in message writer: {}", e.getMessage());
+                for (PendingMessage pending : batch) {
+                    pending.committed().completeExceptionally(e); // взятые ждут исхода без таймаута
+                }
+            }
+            finally {
+                batch.clear();
+            }
+        }
+    }
+    private void takeAndFlush(List<PendingMessage> batch) {
+        batch.removeIf(pending -> !pending.taken().compareAndSet(false, true)); // отменённые по таймауту не пишем
+        flush(batch);
+    }
+    private void flush(List<PendingMessage> batch) {
+        if (batch.isEmpty()) return;
+
+        long startedAt = System.nanoTime();
+        try {
+            insert(batch);
+            recordBatch(batch.size(), System.nanoTime() - startedAt);
+            for (PendingMessage pending : batch) {
+                pending.committed().complete(null);
+            }
+        }
+        catch (Exception e) {
+            if (batch.size() == 1) {
+                failedCount.increment();
+                batch.getFirst().committed().completeExceptionally(e);
+                return;
+            }
+
+            // одна битая строка не должна ронять всю пачку - пишем по одной
+            log.warn("[🔧] ☝️ Message batch of {} failed, retrying one by one: {}", batch.size(), e.getMessage());
+            for (PendingMessage pending : batch) {
+                flush(List.of(pending));
+            }
+        }
+    }
+    private void insert(List<PendingMessage> batch) {
+        transactionTemplate.executeWithoutResult(status ->
+            jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), MessageBatchWriter::bind)
+        );
+    }
+    private static void bind(PreparedStatement ps, PendingMessage pending) throws SQLException {
+        Message message = pending.message();
+        ps.setLong(1, message.getId());
+        ps.setLong(2, message.getChatId());
+        ps.setLong(3, message.getSenderId());
+        ps.setString(4, message.getText());
+        ps.setLong(5, message.getReadCount());
+        ps.setObject(6, message.getSentAt());
+        ps.setObject(7, message.getUpdatedAt());
+        ps.setObject(8, message.getDeletedAt(), Types.TIMESTAMP);
+        ps.setBoolean(9, message.isDeleted());
+    }
+
+
+    // ========== STATS ==========
+
+
+    private void recordBatch(int size, long commitNanos) {
+        batchCount.increment();
+        writtenCount.add(size);
+        commitNanosTotal.add(commitNanos);
+        commitNanosMax.accumulateAndGet(commitNanos, Math::max);
+        batchSizeMax.accumulateAndGet(size, Math::max);
+        batchSizeSummary.record(size);
+        commitTimer.record(commitNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public Map<String, Object> getStats() {
+        long batches = batchCount.sum();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("queue.size", queue == null ? 0 : queue.size());
+        stats.put("batches", batches);
+        stats.put("messages", writtenCount.sum());
+        stats.put("failed", failedCount.sum());
+        stats.put("rejected", rejectedCount.sum());
+        stats.put("batchSize.avg", batches == 0 ? 0.0 : (double) writtenCount.sum() / batches);
+        stats.put("batchSize.max", batchSizeMax.get());
+        stats.put("commitLatencyMs.avg", batches == 0 ? 0.0 : commitNanosTotal.sum() / 1_000_000.0 / batches);
+        stats.put("commitLatencyMs.max", commitNanosMax.get() / 1_000_000.0);
+        return stats;
+    }
+
+    @Scheduled(fixedDelay = 3_600_000, initialDelay = 10_000) // 1000 * 60 * 60
+    public void logStats() {
+        if (!enabled) return;
+
+        var stats = getStats();
+        log.info("📊 Message Writer: queue={}, batches={}, messages={}, batchSize(avg/max)={}/{}, commitMs(avg/max)={}/{}, failed={}, rejected={}",
+                stats.get("queue.size"),
+                stats.get("batches"),
+                stats.get("messages"),
+                String.format("%.1f", (Double) stats.get("batchSize.avg")),
+                stats.get("batchSize.max"),
+                String.format("%.2f", (Double) stats.get("commitLatencyMs.avg")),
+                String.format("%.2f", (Double) stats.get("commitLatencyMs.max")),
+                stats.get("failed"),
+                stats.get("rejected"));
+    }
+}
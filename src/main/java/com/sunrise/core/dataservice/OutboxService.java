@@ -0,0 +1,209 @@
+package com.sunrise.core.dataservice;
+
+import com.sunrise.config.SchedulingConfig;
+import com.sunrise.core.dataservice.type.OutboxEventType;
+import com.sunrise.entity.db.LoginHistory;
+import com.sunrise.entity.db.OutboxEvent;
+import com.sunrise.entity.db.VerificationToken;
+import com.sunrise.helpclass.SimpleSnowflakeId;
+import com.sunrise.repository.OutboxEventRepository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+/*
+ * Локальный outbox: запрос только добавляет строку в outbox_events, а relay в фоне
+ * забирает готовые события пачками (FOR UPDATE SKIP LOCKED), применяет их и удаляет.
+ * Применение идемпотентно (ON CONFLICT DO NOTHING / DELETE), поэтому повтор после падения безопасен.
+ */
+@Slf4j
+@Service
+public class OutboxService {
+
+    @Value("${app.outbox.batch-size}")
+    private int batchSize;
+    @Value("${app.outbox.retry-base-ms}")
+    private long retryBaseMs;
+    @Value("${app.outbox.retry-max-ms}")
+    private long retryMaxMs;
+
+    private static final String INSERT_LOGIN_HISTORY_SQL = """
+            INSERT INTO login_history (id, user_id, ip_address, device_info, login_at)
+            VALUES (?, ?, ?, ?, ?)
+            ON CONFLICT DO NOTHING
+            """;
+    private static final String INSERT_VERIFICATION_TOKEN_SQL = """
+            INSERT INTO verification_token (id, user_id, token, token_type, expiry_date, created_at)
+            VALUES (?, ?, ?, ?, ?, ?)
+            ON CONFLICT DO NOTHING
+            """;
+    private static final String DELETE_VERIFICATION_TOKEN_SQL = "DELETE FROM verification_token WHERE token = ?";
+
+    private final OutboxEventRepository outboxRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+
+    public OutboxService(OutboxEventRepository outboxRepository, JdbcTemplate jdbcTemplate,
+                         PlatformTransactionManager transactionManager, ObjectMapper objectMapper) {
+        this.outboxRepository = outboxRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+    }
+
+
+    // ========== APPEND METHODS ==========
+
+
+    public void appendSaveLoginHistory(LoginHistory loginHistory) {
+        append(OutboxEventType.SAVE_LOGIN_HISTORY, "login-history:" + loginHistory.getId(), loginHistory);
+    }
+    public void appendSaveVerificationToken(VerificationToken token) {
+        append(OutboxEventType.SAVE_VERIFICATION_TOKEN, tokenSaveKey(token.getToken()), token);
+    }
+    public void appendDeleteVerificationToken(String token) {
+        // ещё не применённое сохранение отменяем: иначе его повтор после backoff вернул бы удалённый токен.
+        // Если relay как раз применяет его, DELETE дождётся коммита, и токен удалит уже наше событие
+        int cancelled = outboxRepository.deleteByIdempotencyKey(tokenSaveKey(token));
+        if (cancelled > 0) log.debug("[🔧] ☝️ Cancelled pending save of verification token before delete");
+
+        append(OutboxEventType.DELETE_VERIFICATION_TOKEN, tokenDeleteKey(token), token);
+    }
+
+    public static String tokenSaveKey(String token) {
+        return "token-save:" + token;
+    }
+    public static String tokenDeleteKey(String token) {
+        return "token-delete:" + token;
+    }
+
+    private void append(OutboxEventType type, String idempotencyKey, Object payload) {
+        int inserted = outboxRepository.insertIfAbsent(SimpleSnowflakeId.nextId(), type.name(), idempotencyKey, toJson(payload), LocalDateTime.now());
+        if (inserted == 0) log.debug("[🔧] ☝️ Outbox event {} already queued", idempotencyKey);
+    }
+
+
+    // ========== RELAY METHODS ==========
+
+
+    @Scheduled(fixedDelayString = "${app.outbox.relay-interval-ms}", initialDelay = 5_000, scheduler = SchedulingConfig.DB_SCHEDULER)
+    public void relay() {
+        int relayed;
+        do {
+            relayed = relayBatch();
+        } while (relayed == batchSize); // полная пачка - возможно, есть ещё
+    }
+
+    private int relayBatch() {
+        try {
+            List<OutboxEvent> relayed = transactionTemplate.execute(status -> {
+                List<OutboxEvent> events = outboxRepository.lockDueBatch(LocalDateTime.now(), batchSize);
+                if (events.isEmpty()) return events;
+
+                apply(events);
+                outboxRepository.deleteAllByIdInBatch(events.stream().map(OutboxEvent::getId).toList());
+                return events;
+            });
+            if (relayed != null && !relayed.isEmpty()) log.debug("[🔧] ✅ Relayed {} outbox events", relayed.size());
+            return relayed == null ? 0 : relayed.size();
+        }
+        catch (Exception e) {
+            log.warn("[🔧] ☝️ Outbox batch failed, relaying one by one: {}", e.getMessage());
+            relayOneByOne();
+            return 0;
+        }
+    }
+    private void relayOneByOne() {
+        for (OutboxEvent event : outboxRepository.getDueBatch(LocalDateTime.now(), batchSize)) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    Optional<OutboxEvent> locked = outboxRepository.lockById(event.getId());
+                    if (locked.isEmpty()) return; // уже применено или занято другим relay
+
+                    apply(List.of(locked.get()));
+                    outboxRepository.deleteById(event.getId());
+                });
+            }
+            catch (Exception e) {
+                LocalDateTime nextAttemptAt = LocalDateTime.now().plusNanos(backoffMs(event.getAttempts() + 1) * 1_000_000);
+                outboxRepository.markFailed(event.getId(), nextAttemptAt, e.getMessage());
+                log.error("[🔧] ⚠️ Outbox event {} failed (attempt {}): {}", event.getIdempotencyKey(), event.getAttempts() + 1, e.getMessage());
+            }
+        }
+    }
+
+    // Порядок применения: сохранения токенов раньше удалений, чтобы save+delete в одной пачке дали удаление
+    // (между пачками save+delete не встречаются: удаление отменяет ждущее сохранение при постановке)
+    private void apply(List<OutboxEvent> events) {
+        List<LoginHistory> loginHistories = new ArrayList<>();
+        List<VerificationToken> tokensToSave = new ArrayList<>();
+        List<String> tokensToDelete = new ArrayList<>();
+        for (OutboxEvent event : events) {
+            switch (event.getEventType()) {
+                case SAVE_LOGIN_HISTORY -> loginHistories.add(fromJson(event.getPayload(), LoginHistory.class));
+                case SAVE_VERIFICATION_TOKEN -> tokensToSave.add(fromJson(event.getPayload(), VerificationToken.class));
+                case DELETE_VERIFICATION_TOKEN -> tokensToDelete.add(fromJson(event.getPayload(), String.class));
+            }
+        }
+
+        if (!loginHistories.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_LOGIN_HISTORY_SQL, loginHistories, loginHistories.size(), (ps, history) -> {
+                ps.setLong(1, history.getId());
+                ps.setLong(2, history.getUserId());
+                ps.setString(3, history.getIpAddress());
+                ps.setString(4, history.getDeviceInfo());
+                ps.setObject(5, history.getLoginAt());
+            });
+        }
+        if (!tokensToSave.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_VERIFICATION_TOKEN_SQL, tokensToSave, tokensToSave.size(), (ps, token) -> {
+                ps.setLong(1, token.getId());
+                ps.setLong(2, token.getUserId());
+                ps.setString(3, token.getToken());
+                ps.setString(4, token.getTokenType().name());
+                ps.setObject(5, token.getExpiryDate());
+                ps.setObject(6, token.getCreatedAt());
+            });
+        }
+        if (!tokensToDelete.isEmpty()) {
+            jdbcTemplate.batchUpdate(DELETE_VERIFICATION_TOKEN_SQL, tokensToDelete, tokensToDelete.size(),
+                    (ps, token) -> ps.setString(1, token));
+        }
+    }
+
+
+    // ========== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ==========
+
+
+    private long backoffMs(int attempts) {
+        long backoff = retryBaseMs << Math.min(attempts - 1, 20);
+        return Math.min(backoff, retryMaxMs);
+    }
+    private String toJson(Object payload) {
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize outbox payload", e);
+        }
+    }
+    private <T> T fromJson(String payload, Class<T> type) {
+        try {
+            return objectMapper.readValue(payload, type);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot deserialize outbox payload", e);
+        }
+    }
+}
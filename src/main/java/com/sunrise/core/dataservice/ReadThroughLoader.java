@@ -0,0 +1,115 @@
+package com.sunrise.core.dataservice;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/*
+ * Загрузка из бд при промахе кеша в DataOrchestrator с одним запросом на ключ.
+ * Первый промахнувшийся поток (лидер) сам ходит в бд и кладёт результат в кеш, остальные с тем же ключом ждут его future.
+ * В таблице лежат только загрузки в полёте: готовая запись сразу убирается, данные живут в CacheService.
+ * Ключ - (entity, method, аргумент), поэтому getUser/isActiveUser/isCurrentJwtVersion по одному userId делят одну загрузку.
+ */
+@Slf4j
+@Component
+public class ReadThroughLoader {
+
+    private final DbFallThroughMetrics dbCalls;
+
+    private final AsyncCache<FlightKey, Optional<?>> inFlight = Caffeine.newBuilder() // ключ -> загрузка в полёте
+            .expireAfterWrite(1, TimeUnit.MINUTES) // страховка: лидер убирает запись сам
+            .buildAsync();
+
+    // метрики
+    private final LongAdder loadCount = new LongAdder();
+    private final LongAdder joinedCount = new LongAdder();
+
+    private record FlightKey(String entity, String method, Object key) {}
+
+    public ReadThroughLoader(DbFallThroughMetrics dbCalls) {
+        this.dbCalls = dbCalls;
+    }
+
+
+    // Основные методы
+    @SuppressWarnings("unchecked")
+    public <T> Optional<T> load(String entity, String method, Object key, Supplier<Optional<T>> dbCall, Consumer<? super T> save) {
+        FlightKey flightKey = new FlightKey(entity, method, key);
+        CompletableFuture<Optional<?>> mine = new CompletableFuture<>();
+
+        CompletableFuture<Optional<?>> flight = inFlight.asMap().putIfAbsent(flightKey, mine);
+        if (flight != null) {
+            joinedCount.increment();
+            return (Optional<T>) join(flight);
+        }
+
+        loadCount.increment();
+        try {
+            Optional<T> result = dbCalls.record(entity, method, dbCall);
+            result.ifPresent(save); // в кеш до завершения future: пришедшие после уже попадут в кеш
+            mine.complete(result);
+            return result;
+        }
+        catch (Throwable e) { // любая ошибка, иначе ждавшие повиснут
+            mine.completeExceptionally(e);
+            throw e;
+        }
+        finally {
+            inFlight.asMap().remove(flightKey, mine);
+        }
+    }
+
+    // Ключ из пары id: для запросов вида (chatId, userId)
+    public static Object key(long first, long second) {
+        return Map.entry(first, second);
+    }
+
+
+    // Вспомогательные методы
+    private static Optional<?> join(CompletableFuture<Optional<?>> flight) {
+        try {
+            return flight.join();
+        }
+        catch (CompletionException e) {
+            // ошибка лидера - ошибка и для ждавших, отдаём её как есть
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            if (e.getCause() instanceof Error cause) throw cause;
+            throw e;
+        }
+    }
+
+
+    // ========== STATS ==========
+
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("inFlight", inFlight.synchronous().estimatedSize());
+        stats.put("loads", loadCount.sum());
+        stats.put("joined", joinedCount.sum());
+        return stats;
+    }
+
+    @Scheduled(fixedDelay = 3_600_000, initialDelay = 10_000) // 1000 * 60 * 60
+    public void logStats() {
+        Map<String, Object> stats = getStats();
+        log.info("📊 Read-Through Loader: loads={}, joined={}, inFlight={}",
+                stats.get("loads"),
+                stats.get("joined"),
+                stats.get("inFlight"));
+    }
+}
@@ -0,0 +1,314 @@
+package com.sunrise.core.dataservice;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongPredicate;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/*
+ * Поиск активных пользователей по подстроке username/name без прохода по таблице users.
+ * Триграммный инвертированный индекс: триграмма -> отсортированные id пользователей, в чьём username или name она встречается.
+ * Для запроса берём самый короткий список триграмм фильтра и идём по нему от курсора вниз, проверяя подстроку.
+ * Фильтр короче триграммы проверяем прямым проходом по всем активным - в памяти это дёшево.
+ * Пока индекс не загружен, поиск идёт в бд (LIKE по lower(...) ускоряется GIN-индексами pg_trgm).
+ * Для @упоминаний рядом лежат те же username в отсортированном виде: префикс - это непрерывный диапазон,
+ * и первые K совпадений (точное совпадение и короткие имена идут первыми) находятся за O(log n + K).
+ */
+@Slf4j
+@Service
+public class UserSearchIndex {
+
+    private static final int LOAD_FETCH_SIZE = 10_000;
+
+    @Value("${app.search.users.create-trgm-indexes}")
+    private boolean createTrgmIndexes;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, String[]> texts = new HashMap<>(); // userId -> {username, name} в нижнем регистре
+    private final Map<Long, PostingList> postings = new HashMap<>(); // триграмма -> userId по возрастанию
+    private final PostingList allUsers = new PostingList();
+    private final NavigableSet<UsernameKey> usernames = new TreeSet<>(); // для поиска по префиксу
+
+    private volatile boolean loaded;
+
+    // метрики
+    private final LongAdder searchCount = new LongAdder();
+    private final LongAdder scannedCount = new LongAdder();
+    private final LongAdder prefixSearchCount = new LongAdder();
+
+    // username в нижнем регистре + id: регистр у разных пользователей может совпасть
+    private record UsernameKey(String username, long userId) implements Comparable<UsernameKey> {
+        @Override
+        public int compareTo(UsernameKey other) {
+            int byName = username.compareTo(other.username);
+            return byName != 0 ? byName : Long.compare(userId, other.userId);
+        }
+    }
+
+    // Отсортированный по возрастанию массив id: новые пользователи (бОльшие id) дописываются в конец
+    private static final class PostingList {
+        long[] ids = new long[4];
+        int size;
+
+        void add(long id) {
+            int position = size == 0 || ids[size - 1] < id ? -size - 1 : Arrays.binarySearch(ids, 0, size, id);
+            if (position >= 0) return;
+
+            position = -position - 1;
+            if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+            System.arraycopy(ids, position, ids, position + 1, size - position);
+            ids[position] = id;
+            size++;
+        }
+        void remove(long id) {
+            int position = Arrays.binarySearch(ids, 0, size, id);
+            if (position < 0) return;
+
+            System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+            size--;
+        }
+        int startBefore(Long cursor) { // индекс первого id < cursor при проходе вниз
+            if (cursor == null) return size - 1;
+
+            int position = Arrays.binarySearch(ids, 0, size, cursor);
+            return (position >= 0 ? position : -position - 1) - 1;
+        }
+    }
+
+    public UserSearchIndex(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+
+    // ========== LOAD ==========
+
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        if (createTrgmIndexes) createTrgmIndexes();
+        loadAll();
+    }
+    public void loadAll() {
+        loaded = false; // на время перестройки поиск уходит в бд
+        lock.writeLock().lock();
+        try {
+            texts.clear();
+            postings.clear();
+            allUsers.size = 0;
+            usernames.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        long startedAt = System.currentTimeMillis();
+        try {
+            readOnlyTransaction.executeWithoutResult(status -> {
+                JdbcTemplate streaming = new JdbcTemplate(jdbcTemplate.getDataSource());
+                streaming.setFetchSize(LOAD_FETCH_SIZE);
+                streaming.query("SELECT id, username, name FROM users WHERE is_deleted = false AND is_enabled = true",
+                        rs -> { put(rs.getLong(1), rs.getString(2), rs.getString(3)); });
+            });
+            loaded = true;
+            log.info("[🔧] ✅ Indexed {} users for search in {} ms", size(), System.currentTimeMillis() - startedAt);
+        }
+        catch (Exception e) {
+            // без индекса поиск идёт через бд
+            log.error("[🔧] ⚠️ Failed to build user search index: {}", e.getMessage());
+        }
+    }
+    private void createTrgmIndexes() {
+        try {
+            jdbcTemplate.execute("CREATE EXTENSION IF NOT EXISTS pg_trgm");
+            jdbcTemplate.execute("CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_username_trgm ON users USING gin (lower(username) gin_trgm_ops)");
+            jdbcTemplate.execute("CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_name_trgm ON users USING gin (lower(name) gin_trgm_ops)");
+        }
+        catch (Exception e) {
+            // нет прав на расширение - запасной путь останется последовательным сканированием
+            log.warn("[🔧] ☝️ Failed to create pg_trgm indexes for user search: {}", e.getMessage());
+        }
+    }
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+
+    // ========== WRITE ==========
+
+
+    public void put(long userId, String username, String name) {
+        String[] text = {username.toLowerCase(), name.toLowerCase()};
+        lock.writeLock().lock();
+        try {
+            String[] previous = texts.put(userId, text);
+            if (previous != null) unindex(userId, previous);
+            index(userId, text);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    public void remove(long userId) {
+        lock.writeLock().lock();
+        try {
+            String[] previous = texts.remove(userId);
+            if (previous != null) unindex(userId, previous);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    // Изменение с другого инстанса: перечитываем пользователя
+    public void refresh(long userId) {
+        List<String[]> rows = jdbcTemplate.query("SELECT username, name FROM users WHERE id = ? AND is_deleted = false AND is_enabled = true",
+                (rs, rowNum) -> new String[]{rs.getString(1), rs.getString(2)}, userId);
+        if (rows.isEmpty()) remove(userId);
+        else put(userId, rows.getFirst()[0], rows.getFirst()[1]);
+    }
+
+    private void index(long userId, String[] text) {
+        allUsers.add(userId);
+        usernames.add(new UsernameKey(text[0], userId));
+        for (long trigram : trigrams(text)) {
+            postings.computeIfAbsent(trigram, key -> new PostingList()).add(userId);
+        }
+    }
+    private void unindex(long userId, String[] text) {
+        allUsers.remove(userId);
+        usernames.remove(new UsernameKey(text[0], userId));
+        for (long trigram : trigrams(text)) {
+            PostingList list = postings.get(trigram);
+            if (list == null) continue;
+
+            list.remove(userId);
+            if (list.size == 0) postings.remove(trigram);
+        }
+    }
+
+
+    // ========== SEARCH ==========
+
+
+    // id по убыванию, строго меньше cursor; не больше limit штук
+    public List<Long> search(String filter, Long cursor, int limit) {
+        String needle = filter == null ? "" : filter.trim().toLowerCase();
+        searchCount.increment();
+
+        lock.readLock().lock();
+        try {
+            PostingList candidates = allUsers;
+            if (needle.length() >= 3) {
+                for (long trigram : trigrams(new String[]{needle})) {
+                    PostingList list = postings.get(trigram);
+                    if (list == null) return List.of(); // такой триграммы нет ни у кого
+                    if (list.size < candidates.size) candidates = list;
+                }
+            }
+
+            List<Long> result = new ArrayList<>(limit);
+            int scanned = 0;
+            for (int i = candidates.startBefore(cursor); i >= 0 && result.size() < limit; i--) {
+                long userId = candidates.ids[i];
+                scanned++;
+                String[] text = texts.get(userId);
+                if (needle.isEmpty() || text[0].contains(needle) || text[1].contains(needle)) result.add(userId);
+            }
+            scannedCount.add(scanned);
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    // username по алфавиту, начиная после afterUserId; accept вызывается под блокировкой - только дешёвые проверки
+    public List<Long> searchPrefix(String prefix, Long afterUserId, int limit, LongPredicate accept) {
+        String needle = prefix.toLowerCase();
+        prefixSearchCount.increment();
+
+        lock.readLock().lock();
+        try {
+            String[] after = afterUserId == null ? null : texts.get(afterUserId);
+            SortedSet<UsernameKey> tail = after == null
+                    ? usernames.tailSet(new UsernameKey(needle, Long.MIN_VALUE))
+                    : usernames.tailSet(new UsernameKey(after[0], afterUserId), false);
+
+            List<Long> result = new ArrayList<>(limit);
+            for (UsernameKey key : tail) {
+                if (!key.username().startsWith(needle) || result.size() == limit) break;
+                if (accept.test(key.userId())) result.add(key.userId());
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    // ========== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ==========
+
+
+    // Триграмма - три символа в одном long (по 16 бит); не пересекает границу username/name
+    private static Set<Long> trigrams(String[] text) {
+        Set<Long> result = new HashSet<>();
+        for (String part : text) {
+            for (int i = 0; i + 3 <= part.length(); i++) {
+                result.add(((long) part.charAt(i) << 32) | ((long) part.charAt(i + 1) << 16) | part.charAt(i + 2));
+            }
+        }
+        return result;
+    }
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return texts.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    // ========== STATS ==========
+
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            stats.put("users", texts.size());
+            stats.put("trigrams", postings.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+        stats.put("loaded", loaded);
+        stats.put("searches", searchCount.sum());
+        stats.put("scanned", scannedCount.sum());
+        stats.put("prefixSearches", prefixSearchCount.sum());
+        return stats;
+    }
+
+    @Scheduled(fixedDelay = 3_600_000, initialDelay = 10_000) // 1000 * 60 * 60
+    public void logStats() {
+        Map<String, Object> stats = getStats();
+        log.info("📊 User Search Index: users={}, trigrams={}, loaded={}, searches={}, scanned={}, prefixSearches={}",
+                stats.get("users"),
+                stats.get("trigrams"),
+                stats.get("loaded"),
+                stats.get("searches"),
+                stats.get("scanned"),
+                stats.get("prefixSearches"));
+    }
+}
@@ -0,0 +1,6 @@
+package com.sunrise.core.dataservice.type;
+
+public interface ChatUnreadCountResult {
+    Long getChatId();
+    Long getUnreadCount();
+}
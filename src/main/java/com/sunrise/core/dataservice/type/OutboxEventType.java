@@ -0,0 +1,7 @@
+package com.sunrise.core.dataservice.type;
+
+public enum OutboxEventType {
+    SAVE_LOGIN_HISTORY,
+    SAVE_VERIFICATION_TOKEN,
+    DELETE_VERIFICATION_TOKEN
+}
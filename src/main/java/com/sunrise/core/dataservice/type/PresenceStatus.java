@@ -0,0 +1,23 @@
+package com.sunrise.core.dataservice.type;
+
+import java.util.Locale;
+import java.util.Optional;
+
+public enum PresenceStatus {
+    OFFLINE, // ordinal 0 - "нет записи" в таблицах присутствия
+    ONLINE,
+    AWAY,
+    BUSY;
+
+    public static PresenceStatus fromCode(int code) { return values()[code]; }
+    public int code() { return ordinal(); }
+    public String wireName() { return name().toLowerCase(Locale.ROOT); }
+
+    public static Optional<PresenceStatus> parse(String status) {
+        try {
+            return Optional.of(valueOf(status.trim().toUpperCase(Locale.ROOT)));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+}
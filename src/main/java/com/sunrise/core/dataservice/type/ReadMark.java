@@ -0,0 +1,5 @@
+package com.sunrise.core.dataservice.type;
+
+import java.time.LocalDateTime;
+
+public record ReadMark(long chatId, long userId, long messageId, LocalDateTime readAt) {}
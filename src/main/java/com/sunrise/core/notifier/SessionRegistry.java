@@ -35,4 +35,7 @@ public class SessionRegistry {
     public Set<String> getUserSessions(Long userId) {
         return userSessions.getOrDefault(userId, Collections.emptySet());
     }
+    public Set<Long> getUserIds() {
+        return Collections.unmodifiableSet(userSessions.keySet());
+    }
 }
\ No newline at end of file
@@ -1,12 +1,12 @@
 package com.sunrise.core.notifier;
 
+import com.sunrise.core.cluster.WsClusterRelay;
 import com.sunrise.core.dataservice.type.ChatType;
 import com.sunrise.entity.dto.ChatDTO;
 import com.sunrise.entity.dto.ChatMemberDTO;
 import com.sunrise.entity.dto.MessageDTO;
 import com.sunrise.websocket.WsRequests;
 import lombok.RequiredArgsConstructor;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
@@ -16,9 +16,10 @@ import java.util.Set;
 
 @RequiredArgsConstructor
 @Service
-public class WebSocketNotifier { // TODO: Добавить @Async если большие операции будут
+public class WebSocketNotifier { // рассылка асинхронная, см. WsFanOutDispatcher
 
-    private final SimpMessagingTemplate messagingTemplate;
+    private final WsFanOutDispatcher fanOut;
+    private final WsClusterRelay clusterRelay; // те же события для сессий на других узлах
     private final SessionRegistry sessionRegistry;
 
 
@@ -47,8 +48,8 @@ public class WebSocketNotifier { // TODO: Добавить @Async если бо
     public void notifyMessageDeleted(long chatId, long messageId, LocalDateTime deletedAt) {
         sendToChatTopic(chatId, new WsRequests.MessageDeleteResponse(messageId, chatId, deletedAt));
     }
-    public void notifyMessageReadUpTo(long chatId, long userId, long upToMessageId, LocalDateTime readAt) {
-        sendToChatTopic(chatId, new WsRequests.MessagesReadUpToResponse(userId, chatId, upToMessageId, readAt));
+    public void notifyMessagesReadUpTo(long chatId, List<WsRequests.UserReadUpTo> reads) {
+        sendToChatTopic(chatId, new WsRequests.MessagesReadUpToResponse(chatId, reads));
     }
 
 
@@ -108,14 +109,11 @@ public class WebSocketNotifier { // TODO: Добавить @Async если бо
 
 
     // ================= PRESENCE/STATUS/OTHER ====================
-    public void notifyUserStatusChange(long userId, String newStatus, Set<String> userSessionsToNotify) {
-        var response = new WsRequests.UserStatusResponse(userId, newStatus);
-        for (String sessionId : userSessionsToNotify) {
-            messagingTemplate.convertAndSendToUser(sessionId, "/queue/user-status", response);
-        }
+    public void notifyUserStatusChanges(String sessionId, List<WsRequests.UserStatusResponse> statuses) {
+        sendToUserSession(sessionId, "/user-status", new WsRequests.UserStatusesResponse(statuses));
     }
-    public void notifyUserAction(long chatId, long userId, String action) {
-        sendToChatTopic(chatId, new WsRequests.UserChatActionResponse(userId, chatId, action));
+    public void notifyChatActions(long chatId, List<WsRequests.ChatActionUsers> actions) {
+        sendToChatTopic(chatId, new WsRequests.ChatActionsResponse(chatId, actions));
     }
     public void notifyPong(String sessionId) {
         sendToUserSession(sessionId, "/pong", new WsRequests.PongResponse());
@@ -128,17 +126,15 @@ public class WebSocketNotifier { // TODO: Добавить @Async если бо
 
     // ===== PRIVATE =====
     private void sendToUserSession(String sessionId, String path, Object result) {
-        messagingTemplate.convertAndSendToUser(sessionId, "/queue" + path, result);
+        fanOut.sendToUserSessions(sessionId, List.of(sessionId), "/queue" + path, result);
     }
     private void sendToUserSessions(long userId, String path, Object result) {
-        Set<String> sessions = sessionRegistry.getUserSessions(userId);
-        if (sessions.isEmpty()) return;
-
-        for (String sessionId : sessions) {
-            sendToUserSession(sessionId, "/queue" + path, result);
-        }
+        String destination = "/queue/queue" + path; // путь как был: "/queue" добавлялся дважды
+        fanOut.sendToUserSessions(userId, sessionRegistry.getUserSessions(userId), destination, result);
+        clusterRelay.forwardToUser(userId, destination, result);
     }
     private void sendToChatTopic(long chatId, Object result) {
-        messagingTemplate.convertAndSend("/topic/chats/" + chatId, result);
+        fanOut.sendToChatTopic(chatId, result);
+        clusterRelay.forwardToChat(chatId, result);
     }
 }
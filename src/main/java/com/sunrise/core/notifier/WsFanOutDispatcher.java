@@ -0,0 +1,140 @@
+package com.sunrise.core.notifier;
+
+import com.sunrise.helpclass.PartitionedExecutor;
+import com.sunrise.helpclass.PartitionedExecutor.OverflowPolicy;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Стадия рассылки для WebSocketNotifier: вызывающий поток только ставит событие в очередь полосы,
+ * а поток полосы один раз сериализует его в JSON и отдаёт байты брокеру для всех получателей.
+ * Полоса выбирается по чату/пользователю/сессии, поэтому порядок событий одного чата сохраняется.
+ * С coalesce-bursts события одного топика, накопившиеся за время занятости полосы, уходят одним кадром-массивом.
+ */
+@Slf4j
+@Service
+public class WsFanOutDispatcher {
+
+    @Value("${app.websocket.fan-out.lanes}")
+    private int laneCount;
+    @Value("${app.websocket.fan-out.queue-capacity}")
+    private int queueCapacity;
+    @Value("${app.websocket.fan-out.overflow-policy}")
+    private OverflowPolicy overflowPolicy;
+    @Value("${app.websocket.fan-out.coalesce-bursts}")
+    private boolean coalesceBursts;
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ObjectMapper objectMapper;
+    private final Map<String, List<Object>> pendingBursts = new ConcurrentHashMap<>(); // destination -> события, ждущие отправки
+
+    private PartitionedExecutor lanes;
+
+    public WsFanOutDispatcher(SimpMessagingTemplate messagingTemplate, ObjectMapper objectMapper) {
+        this.messagingTemplate = messagingTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    @PostConstruct
+    public void start() {
+        lanes = new PartitionedExecutor("ws-fan-out-", queueCapacity, Collections.nCopies(laneCount, overflowPolicy));
+    }
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        lanes.shutdown();
+    }
+
+
+    // ========== PUBLISH METHODS ==========
+
+
+    public void sendToChatTopic(long chatId, Object payload) {
+        String destination = "/topic/chats/" + chatId;
+        if (!coalesceBursts) {
+            lanes.execute(chatId, () -> deliver(destination, serialize(payload), 1));
+            return;
+        }
+
+        // первое событие пачки планирует отправку, остальные просто дописываются к ней
+        boolean[] scheduleFlush = {false};
+        pendingBursts.compute(destination, (key, burst) -> {
+            if (burst == null) {
+                burst = new ArrayList<>(4);
+                scheduleFlush[0] = true;
+            }
+            burst.add(payload);
+            return burst;
+        });
+        if (scheduleFlush[0]) lanes.execute(chatId, () -> flushBurst(destination));
+    }
+    public void sendToUserSessions(Object laneKey, Collection<String> sessionIds, String destination, Object payload) {
+        if (sessionIds.isEmpty()) return;
+
+        List<String> sessions = List.copyOf(sessionIds);
+        lanes.execute(laneKey, () -> deliverToSessions(sessions, destination, serialize(payload)));
+    }
+
+    // Уже сериализованные события (пришли с другого узла, см. WsClusterRelay)
+    public void sendJsonToChatTopic(long chatId, byte[] json) {
+        lanes.execute(chatId, () -> deliver("/topic/chats/" + chatId, json, 1));
+    }
+    public void sendJsonToUserSessions(Object laneKey, Collection<String> sessionIds, String destination, byte[] json) {
+        if (sessionIds.isEmpty()) return;
+
+        List<String> sessions = List.copyOf(sessionIds);
+        lanes.execute(laneKey, () -> deliverToSessions(sessions, destination, json));
+    }
+
+
+    // ========== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ==========
+
+
+    private void flushBurst(String destination) {
+        List<Object> burst = pendingBursts.remove(destination);
+        if (burst == null || burst.isEmpty()) return;
+
+        if (burst.size() == 1) deliver(destination, serialize(burst.getFirst()), 1);
+        else deliver(destination, serialize(burst), burst.size());
+    }
+    private byte[] serialize(Object payload) {
+        try {
+            return objectMapper.writeValueAsBytes(payload);
+        } catch (JsonProcessingException e) {
+            log.error("[🔧] ⚠️ Failed to serialize websocket payload {}: {}", payload.getClass().getSimpleName(), e.getMessage());
+            return null;
+        }
+    }
+    private void deliverToSessions(List<String> sessions, String destination, byte[] payload) {
+        if (payload == null) return;
+
+        for (String sessionId : sessions) {
+            deliver(messagingTemplate.getUserDestinationPrefix() + sessionId + destination, payload, 1);
+        }
+    }
+    private void deliver(String destination, byte[] payload, int batchSize) {
+        if (payload == null) return;
+
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        if (batchSize > 1) accessor.setNativeHeader("batch-size", String.valueOf(batchSize)); // кадр - JSON-массив событий
+        accessor.setLeaveMutable(true);
+        messagingTemplate.send(destination, MessageBuilder.createMessage(payload, accessor.getMessageHeaders()));
+    }
+}
@@ -0,0 +1,260 @@
+package com.sunrise.core.service;
+
+import com.sunrise.core.cluster.ClusterTransport;
+import com.sunrise.core.cluster.WsRouteTable;
+import com.sunrise.core.notifier.WebSocketNotifier;
+import com.sunrise.websocket.WsRequests;
+
+import jakarta.annotation.PostConstruct;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Действия в чатах ("печатает", "записывает голосовое" и т.п.): копим по чату в пределах окна window-ms
+ * и рассылаем не чаще одного кадра на чат за окно - текущее состояние целиком: действие -> кто его делает.
+ * Повтор того же действия только продлевает его, без кадра; без повтора дольше timeout-ms действие гаснет само.
+ * В карте только чаты, где кто-то что-то делает, поэтому проход по окну дешёвый и для больших групп.
+ *
+ * В кластере состояние чата держит один узел-владелец (rendezvous-хеш chatId по живым узлам из WsRouteTable):
+ * остальные узлы пересылают ему сырые действия в канал ws_actions_<nodeId> ("chatId|userId|action"),
+ * и кадры чата шлёт только он - кадры разных узлов не затирают друг друга у клиентов.
+ * Пока узлы видят разный состав кластера (новый узел ещё не получил снимки), владельцев может быть два - до следующего снимка.
+ */
+@Slf4j
+@Service
+public class ChatActionAggregator {
+
+    public static final String NO_ACTION = "none"; // клиент закончил действие
+    private static final String NODE_CHANNEL_PREFIX = "ws_actions_";
+    private static final int MAX_ACTION_LENGTH = 32;
+
+    @Value("${app.chat-actions.timeout-ms}")
+    private long timeoutMs;
+    @Value("${app.chat-actions.max-users-per-action}")
+    private int maxUsersPerAction;
+
+    private final WebSocketNotifier wsNotify;
+    private final ClusterTransport transport;
+    private final WsRouteTable routeTable;
+
+    private final Map<Long, ChatActions> activeChats = new ConcurrentHashMap<>(); // chatId -> действия участников
+
+    // метрики
+    private final LongAdder updateCount = new LongAdder();
+    private final LongAdder frameCount = new LongAdder();
+    private final LongAdder expiredCount = new LongAdder();
+    private final LongAdder forwardedCount = new LongAdder();
+    private final LongAdder receivedCount = new LongAdder();
+
+    // трогается только внутри compute по chatId
+    private static final class ChatActions {
+        final Map<Long, UserAction> actions = new HashMap<>(); // userId -> действие
+        boolean changed;
+    }
+    private static final class UserAction {
+        final String action;
+        long expiresAt;
+
+        UserAction(String action, long expiresAt) {
+            this.action = action;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    public ChatActionAggregator(WebSocketNotifier wsNotify, ClusterTransport transport, WsRouteTable routeTable) {
+        this.wsNotify = wsNotify;
+        this.transport = transport;
+        this.routeTable = routeTable;
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        transport.subscribe(NODE_CHANNEL_PREFIX + transport.getNodeId(), this::receive);
+    }
+
+
+    // ========== ACTION METHODS ==========
+
+
+    // Основные методы
+    public void update(long chatId, long userId, String action) {
+        updateCount.increment();
+        if (!forwardToOwner(chatId, userId, action)) apply(chatId, userId, action);
+    }
+    public void clear(long chatId, long userId) {
+        if (!forwardToOwner(chatId, userId, NO_ACTION)) applyClear(chatId, userId);
+    }
+
+    // Вспомогательные методы
+    public static boolean isValidAction(String action) {
+        if (action == null || action.isEmpty() || action.length() > MAX_ACTION_LENGTH) return false;
+        for (int i = 0; i < action.length(); i++) {
+            char c = action.charAt(i);
+            if (!(c >= 'a' && c <= 'z') && !(c >= '0' && c <= '9') && c != '_' && c != '-') return false;
+        }
+        return true;
+    }
+
+    private void apply(long chatId, long userId, String action) {
+        if (NO_ACTION.equals(action)) {
+            applyClear(chatId, userId);
+            return;
+        }
+
+        long expiresAt = System.currentTimeMillis() + timeoutMs;
+        activeChats.compute(chatId, (id, chat) -> {
+            if (chat == null) chat = new ChatActions();
+
+            UserAction current = chat.actions.get(userId);
+            if (current != null && current.action.equals(action)) {
+                current.expiresAt = expiresAt; // то же действие - только продлеваем
+            } else {
+                chat.actions.put(userId, new UserAction(action, expiresAt));
+                chat.changed = true;
+            }
+            return chat;
+        });
+    }
+    private void applyClear(long chatId, long userId) {
+        activeChats.computeIfPresent(chatId, (id, chat) -> {
+            if (chat.actions.remove(userId) != null) chat.changed = true;
+            return chat; // пустой чат уберёт рассылка, отправив пустое состояние
+        });
+    }
+
+
+    // ========== OWNER METHODS ==========
+
+
+    // false - владелец этот узел (или переслать не вышло), действие применяется здесь
+    private boolean forwardToOwner(long chatId, long userId, String action) {
+        String owner = ownerOf(chatId);
+        if (owner.equals(transport.getNodeId())) return false;
+
+        try {
+            transport.publish(NODE_CHANNEL_PREFIX + owner, chatId + "|" + userId + "|" + action);
+            forwardedCount.increment();
+            return true;
+        }
+        catch (Exception e) {
+            log.warn("[🔧] ☝️ Failed to forward chat action to node {}: {}", owner, e.getMessage());
+            return false;
+        }
+    }
+    private void receive(String payload) {
+        try {
+            String[] parts = payload.split("\\|", 3);
+            receivedCount.increment();
+            apply(Long.parseLong(parts[0]), Long.parseLong(parts[1]), parts[2]); // дальше не пересылаем, даже если владельцем видим другой узел
+        }
+        catch (Exception e) {
+            log.error("[🔧] ⚠️ Failed to accept forwarded chat action '{}': {}", payload, e.getMessage());
+        }
+    }
+
+    // Rendezvous-хеш: при уходе или появлении узла переезжают только его чаты
+    private String ownerOf(long chatId) {
+        String owner = transport.getNodeId();
+        long best = score(owner, chatId);
+        for (String nodeId : routeTable.getAliveNodes()) {
+            long score = score(nodeId, chatId);
+            if (score > best || (score == best && nodeId.compareTo(owner) < 0)) {
+                owner = nodeId;
+                best = score;
+            }
+        }
+        return owner;
+    }
+    private static long score(String nodeId, long chatId) {
+        long h = chatId * 0x9E3779B97F4A7C15L + nodeId.hashCode(); // String.hashCode одинаков на всех узлах
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return h;
+    }
+
+
+    // ========== FLUSH METHODS ==========
+
+
+    @Scheduled(fixedDelayString = "${app.chat-actions.window-ms}", initialDelay = 1_000)
+    public void flush() {
+        if (activeChats.isEmpty()) return;
+
+        long now = System.currentTimeMillis();
+        Map<Long, List<WsRequests.ChatActionUsers>> frames = new HashMap<>();
+        String self = transport.getNodeId();
+        for (Long chatId : activeChats.keySet()) {
+            if (!ownerOf(chatId).equals(self)) {
+                activeChats.remove(chatId); // чат переехал на другой узел - кадры теперь шлёт он
+                continue;
+            }
+            activeChats.computeIfPresent(chatId, (id, chat) -> {
+                int before = chat.actions.size();
+                chat.actions.values().removeIf(userAction -> userAction.expiresAt <= now);
+                if (chat.actions.size() != before) {
+                    expiredCount.add(before - chat.actions.size());
+                    chat.changed = true;
+                }
+
+                if (chat.changed) {
+                    frames.put(id, toFrame(chat));
+                    chat.changed = false;
+                }
+                return chat.actions.isEmpty() ? null : chat;
+            });
+        }
+
+        frames.forEach((chatId, actions) -> wsNotify.notifyChatActions(chatId, actions));
+        frameCount.add(frames.size());
+    }
+
+    private List<WsRequests.ChatActionUsers> toFrame(ChatActions chat) {
+        Map<String, List<Long>> usersByAction = new TreeMap<>();
+        chat.actions.forEach((userId, userAction) ->
+                usersByAction.computeIfAbsent(userAction.action, key -> new ArrayList<>()).add(userId));
+
+        List<WsRequests.ChatActionUsers> frame = new ArrayList<>(usersByAction.size());
+        usersByAction.forEach((action, userIds) -> {
+            int total = userIds.size();
+            List<Long> shown = total > maxUsersPerAction ? List.copyOf(userIds.subList(0, maxUsersPerAction)) : userIds; // в большой группе хватит "и ещё N"
+            frame.add(new WsRequests.ChatActionUsers(action, shown, total));
+        });
+        return frame;
+    }
+
+
+    // ========== STATS ==========
+
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("activeChats", activeChats.size());
+        stats.put("updates", updateCount.sum());
+        stats.put("frames", frameCount.sum());
+        stats.put("expired", expiredCount.sum());
+        stats.put("forwarded", forwardedCount.sum());
+        stats.put("received", receivedCount.sum());
+        return stats;
+    }
+
+    @Scheduled(fixedDelay = 3_600_000, initialDelay = 10_000) // 1000 * 60 * 60
+    public void logStats() {
+        Map<String, Object> stats = getStats();
+        log.info("📊 Chat Actions: activeChats={}, updates={}, frames={}, expired={}, forwarded={}, received={}",
+                stats.get("activeChats"),
+                stats.get("updates"),
+                stats.get("frames"),
+                stats.get("expired"),
+                stats.get("forwarded"),
+                stats.get("received"));
+    }
+}
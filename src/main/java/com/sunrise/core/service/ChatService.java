@@ -20,6 +20,7 @@ import jakarta.validation.constraints.NotNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
@@ -35,6 +36,9 @@ public class ChatService {
     private final LockManager lockManager;
     private final WebSocketNotifier wsNotify;
 
+    @Value("${app.chat-actions.big-groups-enabled}")
+    private boolean actionsInBigGroups;
+
     public ResultOneArg<Long> createPersonalChat(long tempId, long creatorId, long opponentId) {
 
         if (creatorId == opponentId)
@@ -239,6 +243,24 @@ public class ChatService {
             return ResultOneArg.error("getUserChat failed due to server error");
         }
     }
+    public ResultOneArg<UnreadCountResult> getTotalUnreadCount(long userId) {
+        try {
+            validator.validateActiveUser(userId);
+
+            int totalUnread = dataOrchestrator.getTotalUnreadCount(userId);
+
+            log.debug("[🔧] ✅ User {} has {} unread messages", userId, totalUnread);
+            return ResultOneArg.success(new UnreadCountResult(totalUnread));
+        }
+        catch (ValidationException e) {
+            log.warn("[🔧] ☝️ Failed to get user {} unread count: {}", userId, e.getMessage());
+            return ResultOneArg.error(e.getMessage());
+        }
+        catch (Exception e) {
+            log.error("[🔧] ⚠️ Error getting user {} unread count: {}", userId, e.getMessage());
+            return ResultOneArg.error("getTotalUnreadCount failed due to server error");
+        }
+    }
     public ResultOneArg<UserChatDTO> getUserChat(long chatId, long userId) {
         try {
             validator.validateActiveUser(userId);
@@ -303,7 +325,7 @@ public class ChatService {
     public ResultOneArg<Boolean> isActionsEnabledForChat(long chatId, long userId) {
         try {
             ChatDTO chat = validator.validateActiveUserInActiveChatAndGetChat(chatId, userId);
-            return ResultOneArg.success(chat.isActionsEnabled());
+            return ResultOneArg.success(chat.isActionsEnabled() || actionsInBigGroups);
         } catch (ValidationException e) {
             log.warn("[🔧] ☝️ Failed to get enabled actions for chat {}: {}", chatId, e.getMessage());
             return ResultOneArg.error(e.getMessage());
@@ -28,6 +28,7 @@ public class MessageService {
     private final DataValidator validator;
     private final DataOrchestrator dataOrchestrator;
     private final WebSocketNotifier wsNotify;
+    private final ReadReceiptAggregator readReceipts;
 
     public ResultOneArg<Long> makePublicMessage(long tempId, long chatId, long senderId, String text) {
         try {
@@ -96,7 +97,7 @@ public class MessageService {
             validator.validateCanUpdateMessage(chatId, userId, messageId);
 
             LocalDateTime updatedAt = LocalDateTime.now();
-            dataOrchestrator.updateMessage(messageId, newText, updatedAt);
+            dataOrchestrator.updateMessage(chatId, messageId, newText, updatedAt);
 
             // уведомить всех надо об этом
             wsNotify.notifyMessageInfoUpdated(chatId, messageId, newText, updatedAt);
@@ -118,7 +119,7 @@ public class MessageService {
             validator.validateCanDeleteMessage(chatId, userId, messageId);
 
             LocalDateTime updatedAt = LocalDateTime.now();
-            dataOrchestrator.deleteMessage(messageId, updatedAt);
+            dataOrchestrator.deleteMessage(chatId, messageId, updatedAt);
 
             // уведомить всех надо об этом
             wsNotify.notifyMessageDeleted(chatId, messageId, updatedAt);
@@ -138,16 +139,16 @@ public class MessageService {
 
     public ResultNoArgs markMessagesUpToRead(long chatId, long userId, long messageId) {
         try {
+            if (readReceipts.isAlreadyRead(chatId, userId, messageId))
+                return ResultNoArgs.success(); // отметка не двигает водяной знак - ничего не меняется
+
             validator.validateActiveChatMemberInActiveChat(chatId, userId);
             validator.validateActiveMessageInChat(chatId, messageId);
 
-            LocalDateTime readAt = LocalDateTime.now();
-            dataOrchestrator.markMessagesUpToRead(chatId, userId, messageId, readAt);
-
-            // уведомить всех надо об этом
-            wsNotify.notifyMessageReadUpTo(chatId, userId, messageId, readAt);
+            // в бд и всем в чате уйдёт пачкой
+            readReceipts.markReadUpTo(chatId, userId, messageId, LocalDateTime.now());
 
-            log.info("[🔧] ✅ User {} marked message as read {} in chat {}", userId, messageId, chatId);
+            log.debug("[🔧] ✅ User {} marked message as read {} in chat {}", userId, messageId, chatId);
             return ResultNoArgs.success();
         }
         catch (ValidationException e) {
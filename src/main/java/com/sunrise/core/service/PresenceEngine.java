@@ -0,0 +1,258 @@
+package com.sunrise.core.service;
+
+import com.sunrise.core.dataservice.type.PresenceStatus;
+import com.sunrise.core.notifier.WebSocketNotifier;
+import com.sunrise.helpclass.LongIntMap;
+import com.sunrise.helpclass.TimingWheel;
+import com.sunrise.websocket.WsRequests;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/*
+ * Присутствие пользователей: ONLINE по подключению, любое входящее сообщение (в т.ч. STOMP heartbeat) продлевает его на ttl-ms,
+ * отключение последней сессии или тишина дольше ttl-ms - OFFLINE. Истечение считает колесо таймеров:
+ * на пользователя одна запись, при срабатывании проверяем lastSeen и либо переносим, либо гасим.
+ * Изменения копятся и раз в flush-interval-ms уходят наблюдателям одним кадром на сессию.
+ * Состояние разбито на полосы по userId: touch на каждом входящем кадре не упирается в один общий монитор.
+ */
+@Slf4j
+@Service
+public class PresenceEngine {
+
+    private static final long TICK_MS = 1_000;
+    private static final int WHEEL_SLOTS = 128; // оборот ~2 минуты, больше ttl
+    private static final int STRIPE_COUNT = 16; // степень двойки
+
+    @Value("${app.presence.ttl-ms}")
+    private long ttlMs = 30_000;
+
+    private final WebSocketNotifier wsNotify;
+    private final long startedAt = System.currentTimeMillis();
+
+    // полоса - состояние своей части пользователей, всё в ней меняется под её монитором
+    private final class Stripe {
+        final LongIntMap statuses = new LongIntMap(1_024); // userId -> PresenceStatus.code(), нет записи = OFFLINE
+        final LongIntMap lastSeen = new LongIntMap(1_024); // userId -> секунды от startedAt
+        final LongIntMap connections = new LongIntMap(1_024); // userId -> число сессий
+        final LongIntMap scheduled = new LongIntMap(1_024); // userId -> 1, если есть запись в колесе
+        final TimingWheel expiryWheel = new TimingWheel(WHEEL_SLOTS, TICK_MS, startedAt);
+        LongIntMap pendingChanges = new LongIntMap(128); // userId -> статус для следующей рассылки
+    }
+    private final Stripe[] stripes = new Stripe[STRIPE_COUNT];
+    private final Queue<Map.Entry<String, Long>> pendingInitial = new ConcurrentLinkedQueue<>(); // (sessionId, userId) - новым наблюдателям текущий статус
+
+    // наблюдатели
+    private final Map<Long, Set<String>> watchers = new ConcurrentHashMap<>(); // userId -> Set<sessionId>
+    private final Map<String, Set<Long>> watchedBySession = new ConcurrentHashMap<>(); // sessionId -> Set<userId>
+
+    public PresenceEngine(@Lazy WebSocketNotifier wsNotify) { // lazy: движок нужен интерцептору WsConfig раньше, чем готов брокер
+        this.wsNotify = wsNotify;
+        for (int i = 0; i < STRIPE_COUNT; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+
+    // ========== PRESENCE METHODS ==========
+
+
+    // Основные методы
+    public void connected(long userId) {
+        Stripe stripe = stripeOf(userId);
+        synchronized (stripe) {
+            stripe.connections.put(userId, stripe.connections.get(userId, 0) + 1);
+            touchLocked(stripe, userId);
+        }
+    }
+    public void disconnected(long userId) {
+        Stripe stripe = stripeOf(userId);
+        synchronized (stripe) {
+            int left = stripe.connections.get(userId, 0) - 1;
+            if (left > 0) {
+                stripe.connections.put(userId, left);
+                return;
+            }
+            stripe.connections.remove(userId, 0);
+            stripe.lastSeen.remove(userId, 0);
+            setStatusLocked(stripe, userId, PresenceStatus.OFFLINE);
+        }
+    }
+    public void touch(long userId) {
+        Stripe stripe = stripeOf(userId);
+        synchronized (stripe) {
+            touchLocked(stripe, userId);
+        }
+    }
+    public void setStatus(long userId, PresenceStatus status) {
+        Stripe stripe = stripeOf(userId);
+        synchronized (stripe) {
+            touchLocked(stripe, userId);
+            setStatusLocked(stripe, userId, status);
+        }
+    }
+
+    // Вспомогательные методы
+    public PresenceStatus getStatus(long userId) {
+        Stripe stripe = stripeOf(userId);
+        synchronized (stripe) {
+            return PresenceStatus.fromCode(stripe.statuses.get(userId, PresenceStatus.OFFLINE.code()));
+        }
+    }
+
+    private Stripe stripeOf(long userId) {
+        long hash = userId * 0x9E3779B97F4A7C15L; // snowflake-id в младших битах неравномерны
+        return stripes[(int) (hash >>> 32) & (STRIPE_COUNT - 1)];
+    }
+    private void touchLocked(Stripe stripe, long userId) {
+        long now = System.currentTimeMillis();
+        stripe.lastSeen.put(userId, toSeconds(now));
+        if (stripe.statuses.get(userId, PresenceStatus.OFFLINE.code()) == PresenceStatus.OFFLINE.code()) {
+            setStatusLocked(stripe, userId, PresenceStatus.ONLINE);
+        }
+        if (stripe.scheduled.get(userId, 0) == 0) {
+            stripe.scheduled.put(userId, 1);
+            stripe.expiryWheel.schedule(userId, now + ttlMs);
+        }
+    }
+    private void setStatusLocked(Stripe stripe, long userId, PresenceStatus status) {
+        int previous = status == PresenceStatus.OFFLINE
+                ? stripe.statuses.remove(userId, PresenceStatus.OFFLINE.code())
+                : stripe.statuses.get(userId, PresenceStatus.OFFLINE.code());
+        if (previous == status.code()) return;
+
+        if (status != PresenceStatus.OFFLINE) stripe.statuses.put(userId, status.code());
+        if (watchers.containsKey(userId)) stripe.pendingChanges.put(userId, status.code());
+    }
+
+
+    // ========== WATCH METHODS ==========
+
+
+    public void watch(long userId, String sessionId) {
+        watchers.computeIfAbsent(userId, key -> ConcurrentHashMap.newKeySet()).add(sessionId);
+        watchedBySession.computeIfAbsent(sessionId, key -> ConcurrentHashMap.newKeySet()).add(userId);
+        pendingInitial.add(Map.entry(sessionId, userId));
+    }
+    public void unwatch(long userId, String sessionId) {
+        Set<Long> watched = watchedBySession.get(sessionId);
+        if (watched != null) watched.remove(userId);
+        removeWatcher(userId, sessionId);
+    }
+    public void unwatchAll(String sessionId) {
+        Set<Long> watched = watchedBySession.remove(sessionId);
+        if (watched == null) return;
+
+        for (Long userId : watched) {
+            removeWatcher(userId, sessionId);
+        }
+    }
+
+    private void removeWatcher(long userId, String sessionId) {
+        watchers.computeIfPresent(userId, (id, sessions) -> {
+            sessions.remove(sessionId);
+            return sessions.isEmpty() ? null : sessions;
+        });
+    }
+
+
+    // ========== TIMER METHODS ==========
+
+
+    @Scheduled(fixedDelay = TICK_MS, initialDelay = TICK_MS)
+    public void expireSilentUsers() {
+        long now = System.currentTimeMillis();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.expiryWheel.advance(now, userId -> onExpiryTimer(stripe, userId, now));
+            }
+        }
+    }
+    private void onExpiryTimer(Stripe stripe, long userId, long now) {
+        int seenAt = stripe.lastSeen.get(userId, -1);
+        if (seenAt < 0) { // уже отключился
+            stripe.scheduled.remove(userId, 0);
+            return;
+        }
+
+        long deadline = startedAt + seenAt * 1_000L + ttlMs;
+        if (deadline > now) {
+            stripe.expiryWheel.schedule(userId, deadline); // был активен - переносим
+            return;
+        }
+
+        stripe.scheduled.remove(userId, 0);
+        stripe.lastSeen.remove(userId, 0);
+        setStatusLocked(stripe, userId, PresenceStatus.OFFLINE); // число сессий ведут только connected/disconnected
+        log.debug("[🔧] ☝️ User {} expired after {} ms without activity", userId, ttlMs);
+    }
+
+    @Scheduled(fixedDelayString = "${app.presence.flush-interval-ms}", initialDelay = 1_000)
+    public void flushChanges() {
+        // собираем по сессиям: одна сессия - один кадр со всеми изменениями
+        Map<String, Map<Long, PresenceStatus>> bySession = new HashMap<>();
+        for (Stripe stripe : stripes) {
+            LongIntMap changes;
+            synchronized (stripe) {
+                if (stripe.pendingChanges.size() == 0) continue;
+
+                changes = stripe.pendingChanges;
+                stripe.pendingChanges = new LongIntMap(128);
+            }
+            changes.forEach((userId, code) -> {
+                for (String sessionId : watchers.getOrDefault(userId, Set.of())) {
+                    bySession.computeIfAbsent(sessionId, key -> new LinkedHashMap<>()).put(userId, PresenceStatus.fromCode(code));
+                }
+            });
+        }
+        for (Map.Entry<String, Long> entry; (entry = pendingInitial.poll()) != null; ) {
+            long userId = entry.getValue();
+            bySession.computeIfAbsent(entry.getKey(), key -> new LinkedHashMap<>()).putIfAbsent(userId, getStatus(userId));
+        }
+        if (bySession.isEmpty()) return;
+
+        bySession.forEach((sessionId, sessionChanges) -> {
+            List<WsRequests.UserStatusResponse> statusesToSend = new ArrayList<>(sessionChanges.size());
+            sessionChanges.forEach((userId, status) -> statusesToSend.add(new WsRequests.UserStatusResponse(userId, status.wireName())));
+            wsNotify.notifyUserStatusChanges(sessionId, statusesToSend);
+        });
+    }
+
+
+    // ========== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ==========
+
+
+    private int toSeconds(long timeMs) {
+        return (int) ((timeMs - startedAt) / 1_000);
+    }
+
+
+    // ========== STATS ==========
+
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        int present = 0, connected = 0, timers = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                present += stripe.statuses.size();
+                connected += stripe.connections.size();
+                timers += stripe.expiryWheel.size();
+            }
+        }
+        stats.put("present", present);
+        stats.put("connected", connected);
+        stats.put("timers", timers);
+        stats.put("watched", watchers.size());
+        stats.put("watchingSessions", watchedBySession.size());
+        return stats;
+    }
+}
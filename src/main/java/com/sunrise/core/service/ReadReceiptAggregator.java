@@ -0,0 +1,164 @@
+package com.sunrise.core.service;
+
+import com.sunrise.config.SchedulingConfig;
+import com.sunrise.core.dataservice.DataOrchestrator;
+import com.sunrise.core.dataservice.type.ReadMark;
+import com.sunrise.core.notifier.WebSocketNotifier;
+import com.sunrise.websocket.WsRequests;
+
+import jakarta.annotation.PreDestroy;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Отметки прочтения: клиенты шлют "прочитано до" на каждый скролл, а нам важна только самая дальняя отметка.
+ * Копим водяной знак (chatId, userId) -> messageId, который двигается только вперёд, и раз в flush-interval-ms
+ * пишем накопленное в бд пачками по max-batch-size одной транзакцией и рассылаем по чату один кадр со всеми отметками.
+ * Отметка не дальше уже известной (в очереди или в кеше) отбрасывается сразу, без проверок и бд.
+ */
+@Slf4j
+@Service
+public class ReadReceiptAggregator {
+
+    @Value("${app.messages.read-receipts.max-batch-size}")
+    private int maxBatchSize;
+
+    private final DataOrchestrator dataOrchestrator;
+    private final WebSocketNotifier wsNotify;
+
+    private final Map<Long, Map<Long, ReadMark>> pending = new ConcurrentHashMap<>(); // chatId -> (userId -> самая дальняя отметка)
+
+    // метрики
+    private final LongAdder acceptedCount = new LongAdder();
+    private final LongAdder skippedCount = new LongAdder();
+    private final LongAdder flushedCount = new LongAdder();
+    private final LongAdder batchCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+
+    public ReadReceiptAggregator(DataOrchestrator dataOrchestrator, WebSocketNotifier wsNotify) {
+        this.dataOrchestrator = dataOrchestrator;
+        this.wsNotify = wsNotify;
+    }
+
+    @PreDestroy
+    public void stop() {
+        flush(); // не теряем накопленное при остановке
+    }
+
+
+    // ========== READ METHODS ==========
+
+
+    // Основные методы
+    public void markReadUpTo(long chatId, long userId, long messageId, LocalDateTime readAt) {
+        acceptedCount.increment();
+        ReadMark mark = new ReadMark(chatId, userId, messageId, readAt);
+        pending.compute(chatId, (id, users) -> {
+            if (users == null) users = new ConcurrentHashMap<>();
+            users.merge(userId, mark, (old, val) -> val.messageId() > old.messageId() ? val : old);
+            return users;
+        });
+    }
+
+    // Вспомогательные методы
+    public boolean isAlreadyRead(long chatId, long userId, long messageId) {
+        Map<Long, ReadMark> users = pending.get(chatId);
+        ReadMark queued = users == null ? null : users.get(userId);
+        boolean alreadyRead = (queued != null && queued.messageId() >= messageId)
+                || dataOrchestrator.isReadUpToCached(chatId, userId, messageId);
+        if (alreadyRead) skippedCount.increment();
+        return alreadyRead;
+    }
+
+
+    // ========== FLUSH METHODS ==========
+
+
+    @Scheduled(fixedDelayString = "${app.messages.read-receipts.flush-interval-ms}", initialDelay = 1_000, scheduler = SchedulingConfig.DB_SCHEDULER)
+    public synchronized void flush() {
+        if (pending.isEmpty()) return;
+
+        List<ReadMark> marks = new ArrayList<>();
+        for (Long chatId : pending.keySet()) {
+            Map<Long, ReadMark> users = pending.remove(chatId); // новые отметки уйдут в свежую карту
+            if (users != null) marks.addAll(users.values());
+        }
+        marks.sort(Comparator.comparingLong(ReadMark::chatId).thenComparingLong(ReadMark::userId)); // один порядок блокировок во всех транзакциях
+
+        List<ReadMark> written = new ArrayList<>(marks.size());
+        for (int from = 0; from < marks.size(); from += maxBatchSize) {
+            List<ReadMark> batch = marks.subList(from, Math.min(from + maxBatchSize, marks.size()));
+            written.addAll(writeBatch(batch));
+        }
+        flushedCount.add(written.size());
+
+        // рассылка: один кадр на чат
+        Map<Long, List<WsRequests.UserReadUpTo>> byChat = new LinkedHashMap<>();
+        for (ReadMark mark : written) {
+            byChat.computeIfAbsent(mark.chatId(), key -> new ArrayList<>())
+                    .add(new WsRequests.UserReadUpTo(mark.userId(), mark.messageId(), mark.readAt()));
+        }
+        byChat.forEach(wsNotify::notifyMessagesReadUpTo);
+    }
+
+    private List<ReadMark> writeBatch(List<ReadMark> batch) {
+        try {
+            dataOrchestrator.markMessagesUpToRead(batch);
+            batchCount.increment();
+            return batch;
+        }
+        catch (Exception e) {
+            log.warn("[🔧] ☝️ Read receipts batch of {} failed, writing one by one: {}", batch.size(), e.getMessage());
+        }
+
+        // пачка откатилась целиком - пишем по одной, чтобы одна плохая отметка не тянула остальные
+        List<ReadMark> written = new ArrayList<>(batch.size());
+        for (ReadMark mark : batch) {
+            try {
+                dataOrchestrator.markMessagesUpToRead(mark.chatId(), mark.userId(), mark.messageId(), mark.readAt());
+                written.add(mark);
+            }
+            catch (Exception e) {
+                failedCount.increment();
+                log.error("[🔧] ⚠️ Failed to mark messages up to {} as read for user {} in chat {}: {}", mark.messageId(), mark.userId(), mark.chatId(), e.getMessage());
+            }
+        }
+        return written;
+    }
+
+
+    // ========== STATS ==========
+
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("accepted", acceptedCount.sum());
+        stats.put("skipped", skippedCount.sum());
+        stats.put("flushed", flushedCount.sum());
+        stats.put("batches", batchCount.sum());
+        stats.put("failed", failedCount.sum());
+        stats.put("pendingChats", pending.size());
+        return stats;
+    }
+
+    @Scheduled(fixedDelay = 3_600_000, initialDelay = 10_000) // 1000 * 60 * 60
+    public void logStats() {
+        Map<String, Object> stats = getStats();
+        log.info("📊 Read Receipts: accepted={}, skipped={}, flushed={}, batches={}, failed={}, pendingChats={}",
+                stats.get("accepted"),
+                stats.get("skipped"),
+                stats.get("flushed"),
+                stats.get("batches"),
+                stats.get("failed"),
+                stats.get("pendingChats"));
+    }
+}
@@ -17,6 +17,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Slf4j
 @RequiredArgsConstructor
@@ -150,4 +151,23 @@ public class UserService {
             return ResultOneArg.error("Get filtered users failed due to server error");
         }
     }
+    public ResultOneArg<List<UserProfileDTO>> getMentionCandidates(long userId, String prefix, Long chatId, int limit) {
+        try {
+            if (chatId == null) validator.validateActiveUser(userId);
+            else validator.validateActiveChatMemberInActiveChat(chatId, userId);
+
+            List<UserProfileDTO> users = dataOrchestrator.getMentionCandidates(prefix, chatId, limit);
+
+            log.debug("[🔧] ✅ Get {} mention candidates with prefix='{}', chatId={}, limit={}", users.size(), prefix, chatId, limit);
+            return ResultOneArg.success(users);
+        }
+        catch (ValidationException e) {
+            log.warn("[🔧] ☝️ Failed to get mention candidates for user {}: {}", userId, e.getMessage());
+            return ResultOneArg.error(e.getMessage());
+        }
+        catch (Exception e) {
+            log.error("[🔧] ⚠️ Error getting mention candidates for user {}: {}", userId, e.getMessage());
+            return ResultOneArg.error("Get mention candidates failed due to server error");
+        }
+    }
 }
\ No newline at end of file
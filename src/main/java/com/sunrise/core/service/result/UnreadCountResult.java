@@ -0,0 +1,3 @@
+package com.sunrise.core.service.result;
+
+public record UnreadCountResult(int totalUnread) { }
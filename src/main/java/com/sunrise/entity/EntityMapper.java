@@ -5,6 +5,7 @@ import com.sunrise.entity.cache.*;
 import com.sunrise.entity.db.*;
 import com.sunrise.entity.dto.*;
 
+import java.time.LocalDateTime;
 import java.util.*;
 
 public class EntityMapper {
@@ -477,6 +478,7 @@ public class EntityMapper {
             message.getChatId(),
             message.getSenderId(),
             message.getSentAt(),
+            message.getUpdatedAt(),
             message.getDeletedAt(),
             message.isDeleted()
         );
@@ -489,6 +491,7 @@ public class EntityMapper {
             message.getChatId(),
             message.getSenderId(),
             message.getSentAt(),
+            message.getUpdatedAt(),
             message.getDeletedAt(),
             message.getIsDeleted()
         );
@@ -501,6 +504,7 @@ public class EntityMapper {
             message.getChatId(),
             message.getSenderId(),
             message.getSentAt(),
+            message.getUpdatedAt(),
             message.getDeletedAt(),
             message.isDeleted()
         );
@@ -540,6 +544,57 @@ public class EntityMapper {
         );
     }
 
+    public static MessageDTO toDTO(CacheRecentMessage message, LocalDateTime profileUpdatedAt, boolean readByUser) {
+        if (message == null) return null;
+
+        return new MessageDTO(
+            message.getId(),
+            message.getChatId(),
+            message.getSenderId(),
+            profileUpdatedAt,
+            message.getText(),
+            message.getReadCount(),
+            readByUser,
+            message.getSentAt(),
+            message.getUpdatedAt(),
+            message.getDeletedAt(),
+            message.isDeleted()
+        );
+    }
+
+    public static CacheRecentMessage toCacheRecent(UserMessageDBResult message) {
+        if (message == null) return null;
+
+        return new CacheRecentMessage(
+            message.getId(),
+            message.getChatId(),
+            message.getSenderId(),
+            message.getProfileUpdatedAt(),
+            message.getText(),
+            message.getReadCount(),
+            message.getSentAt(),
+            message.getUpdatedAt(),
+            message.getDeletedAt(),
+            message.getIsDeleted()
+        );
+    }
+    public static CacheRecentMessage toCacheRecent(MessageDTO message) {
+        if (message == null) return null;
+
+        return new CacheRecentMessage(
+            message.getId(),
+            message.getChatId(),
+            message.getSenderId(),
+            message.getProfileUpdatedAt(),
+            message.getText(),
+            message.getReadCount(),
+            message.getSentAt(),
+            message.getUpdatedAt(),
+            message.getDeletedAt(),
+            message.isDeleted()
+        );
+    }
+
 
     // ========== MESSAGE READ STATUS ==========
 
@@ -4,55 +4,63 @@ import com.sunrise.core.dataservice.type.ChatType;
 
 import java.time.LocalDateTime;
 
+// Неизменяемый снимок чата: любое изменение создаёт новый экземпляр со следующей версией
 @lombok.Getter
-@lombok.Setter
-@lombok.AllArgsConstructor
-public class CacheChat {
+@lombok.AllArgsConstructor(access = lombok.AccessLevel.PRIVATE)
+public final class CacheChat {
 
-    private long id;
-    private String name;
-    private String description;
-    private ChatType chatType;
-    private Long opponentId;
-    private int membersCount;
-    private int deletedMembersCount;
-    private LocalDateTime updatedAt;
-    private LocalDateTime createdAt;
-    private long createdBy;
-    private LocalDateTime deletedAt;
-    private boolean isDeleted;
+    private final long id;
+    private final String name;
+    private final String description;
+    private final ChatType chatType;
+    private final Long opponentId;
+    private final int membersCount;
+    private final int deletedMembersCount;
+    private final LocalDateTime updatedAt;
+    private final LocalDateTime createdAt;
+    private final long createdBy;
+    private final LocalDateTime deletedAt;
+    private final boolean isDeleted;
 
-    private final LocalDateTime cachedAt = LocalDateTime.now();
+    private final LocalDateTime cachedAt;
+    private final long version;
 
-    public void onAddMember(){
-        membersCount++;
+    public CacheChat(long id, String name, String description, ChatType chatType, Long opponentId,
+                     int membersCount, int deletedMembersCount, LocalDateTime updatedAt, LocalDateTime createdAt,
+                     long createdBy, LocalDateTime deletedAt, boolean isDeleted) {
+        this(id, name, description, chatType, opponentId, membersCount, deletedMembersCount, updatedAt, createdAt, createdBy, deletedAt, isDeleted, LocalDateTime.now(), 0L);
     }
-    public void onAddMembers(int membersToAdd){
-        membersCount += membersToAdd;
+
+    public CacheChat withMembersAdded(int membersToAdd){
+        return new CacheChat(id, name, description, chatType, opponentId, membersCount + membersToAdd, deletedMembersCount, updatedAt, createdAt, createdBy, deletedAt, isDeleted, cachedAt, version + 1);
     }
-    public void onDeleteMember(){
-        membersCount--;
-        deletedMembersCount++;
+    public CacheChat withMemberDeleted(){
+        return new CacheChat(id, name, description, chatType, opponentId, membersCount - 1, deletedMembersCount + 1, updatedAt, createdAt, createdBy, deletedAt, isDeleted, cachedAt, version + 1);
     }
 
-    public void setChatType(ChatType chatType, LocalDateTime updatedAt) {
-        this.chatType = chatType;
-        this.updatedAt = updatedAt;
+    public CacheChat withChatType(ChatType chatType, LocalDateTime updatedAt) {
+        return new CacheChat(id, name, description, chatType, opponentId, membersCount, deletedMembersCount, updatedAt, createdAt, createdBy, deletedAt, isDeleted, cachedAt, version + 1);
     }
-    public void setChatInfo(String name, String description, LocalDateTime updatedAt) {
-        this.name = name;
-        this.description = description;
-        this.updatedAt = updatedAt;
+    public CacheChat withChatInfo(String name, String description, LocalDateTime updatedAt) {
+        return new CacheChat(id, name, description, chatType, opponentId, membersCount, deletedMembersCount, updatedAt, createdAt, createdBy, deletedAt, isDeleted, cachedAt, version + 1);
     }
-    public void delete(LocalDateTime updatedAt) {
-        this.deletedAt = updatedAt;
-        this.isDeleted = true;
-        this.updatedAt = updatedAt;
+    public CacheChat withDeleted(LocalDateTime updatedAt) {
+        return new CacheChat(id, name, description, chatType, opponentId, membersCount, deletedMembersCount, updatedAt, createdAt, createdBy, updatedAt, true, cachedAt, version + 1);
     }
-    public void restore(LocalDateTime updatedAt) {
-        this.deletedAt = null;
-        this.isDeleted = false;
-        this.updatedAt = updatedAt;
+    public CacheChat withRestored(LocalDateTime updatedAt) {
+        return new CacheChat(id, name, description, chatType, opponentId, membersCount, deletedMembersCount, updatedAt, createdAt, createdBy, null, false, cachedAt, version + 1);
+    }
+
+    // Свежие данные (из бд) заменяют старый снимок, если тот не новее: по updatedAt, а при равном - по версии.
+    // Счётчики участников меняются без updatedAt, поэтому снимок из бд с тем же updatedAt (версия 0) их не затирает
+    public CacheChat supersede(CacheChat previous) {
+        if (previous.updatedAt != null && updatedAt != null) {
+            int byTime = previous.updatedAt.compareTo(updatedAt);
+            if (byTime > 0 || (byTime == 0 && previous.version > version))
+                return previous;
+        }
+
+        return new CacheChat(id, name, description, chatType, opponentId, membersCount, deletedMembersCount, updatedAt, createdAt, createdBy, deletedAt, isDeleted, cachedAt, previous.version + 1);
     }
 
     public boolean isActive() {
@@ -64,35 +72,4 @@ public class CacheChat {
     public boolean isNotPersonal(){
         return !chatType.isPersonal();
     }
-
-    public void updateFromCache(CacheChat cacheChat) {
-        this.name = cacheChat.getName();
-        this.chatType = cacheChat.getChatType();
-        this.opponentId = cacheChat.getOpponentId();
-        this.deletedMembersCount = cacheChat.getDeletedMembersCount();
-        this.membersCount = cacheChat.getMembersCount();
-        this.createdBy = cacheChat.getCreatedBy();
-        this.createdAt = cacheChat.getCreatedAt();
-        this.deletedAt = cacheChat.getDeletedAt();
-        this.isDeleted = cacheChat.isDeleted();
-    }
-
-    public static CacheChat copy(CacheChat chat) {
-        if (chat == null) return null;
-
-        return new CacheChat(
-            chat.getId(),
-            chat.getName(),
-            chat.getDescription(),
-            chat.getChatType(),
-            chat.getOpponentId(),
-            chat.getMembersCount(),
-            chat.getDeletedMembersCount(),
-            chat.getUpdatedAt(),
-            chat.getCreatedAt(),
-            chat.getCreatedBy(),
-            chat.getDeletedAt(),
-            chat.isDeleted()
-        );
-    }
-}
\ No newline at end of file
+}
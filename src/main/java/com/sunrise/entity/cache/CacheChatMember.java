@@ -2,38 +2,53 @@ package com.sunrise.entity.cache;
 
 import java.time.LocalDateTime;
 
+// Неизменяемый снимок участника чата: любое изменение создаёт новый экземпляр со следующей версией
 @lombok.Getter
-@lombok.Setter
-@lombok.AllArgsConstructor
-public class CacheChatMember {
-    private long chatId;
-    private long userId;
-    private String tag;
-    private LocalDateTime settingsUpdatedAt;
-    private LocalDateTime updatedAt;
-    private LocalDateTime joinedAt;
-    private boolean isPinned;
-    private boolean isAdmin;
-    private LocalDateTime deletedAt;
-    private boolean isDeleted;
+@lombok.AllArgsConstructor(access = lombok.AccessLevel.PRIVATE)
+public final class CacheChatMember {
+    private final long chatId;
+    private final long userId;
+    private final String tag;
+    private final LocalDateTime settingsUpdatedAt;
+    private final LocalDateTime updatedAt;
+    private final LocalDateTime joinedAt;
+    private final boolean isPinned;
+    private final boolean isAdmin;
+    private final LocalDateTime deletedAt;
+    private final boolean isDeleted;
+
+    private final long version;
+
+    public CacheChatMember(long chatId, long userId, String tag, LocalDateTime settingsUpdatedAt, LocalDateTime updatedAt,
+                           LocalDateTime joinedAt, boolean isPinned, boolean isAdmin, LocalDateTime deletedAt, boolean isDeleted) {
+        this(chatId, userId, tag, settingsUpdatedAt, updatedAt, joinedAt, isPinned, isAdmin, deletedAt, isDeleted, 0L);
+    }
+
+    public CacheChatMember withTag(String tag, LocalDateTime updatedAt) {
+        return new CacheChatMember(chatId, userId, tag, settingsUpdatedAt, updatedAt, joinedAt, isPinned, isAdmin, deletedAt, isDeleted, version + 1);
+    }
+    public CacheChatMember withAdminRights(boolean isAdmin, LocalDateTime updatedAt) {
+        return new CacheChatMember(chatId, userId, tag, settingsUpdatedAt, updatedAt, joinedAt, isPinned, isAdmin, deletedAt, isDeleted, version + 1);
+    }
+    public CacheChatMember withSettings(boolean isPinned, LocalDateTime updatedAt) {
+        return new CacheChatMember(chatId, userId, tag, updatedAt, updatedAt, joinedAt, isPinned, isAdmin, deletedAt, isDeleted, version + 1);
+    }
+    public CacheChatMember withDeleted(LocalDateTime updatedAt) {
+        return new CacheChatMember(chatId, userId, tag, settingsUpdatedAt, updatedAt, joinedAt, isPinned, isAdmin, updatedAt, true, version + 1);
+    }
+    public CacheChatMember withRestored(boolean isAdmin, LocalDateTime updatedAt) {
+        return new CacheChatMember(chatId, userId, tag, settingsUpdatedAt, updatedAt, joinedAt, isPinned, isAdmin, null, false, version + 1);
+    }
+
+    // Свежие данные (из бд) заменяют старый снимок, если тот не новее по updatedAt
+    public CacheChatMember supersede(CacheChatMember previous) {
+        if (previous.updatedAt != null && updatedAt != null && previous.updatedAt.isAfter(updatedAt))
+            return previous;
+
+        return new CacheChatMember(chatId, userId, tag, settingsUpdatedAt, updatedAt, joinedAt, isPinned, isAdmin, deletedAt, isDeleted, previous.version + 1);
+    }
 
     public boolean isActive() {
         return !isDeleted;
     }
-    public static CacheChatMember copy(CacheChatMember member){
-        if (member == null) return null;
-
-        return new CacheChatMember(
-            member.getChatId(),
-            member.getUserId(),
-            member.getTag(),
-            member.getSettingsUpdatedAt(),
-            member.getUpdatedAt(),
-            member.getJoinedAt(),
-            member.isPinned(),
-            member.isAdmin(),
-            member.getDeletedAt(),
-            member.isDeleted()
-        );
-    }
 }
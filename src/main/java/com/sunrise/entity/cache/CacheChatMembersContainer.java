@@ -3,113 +3,158 @@ package com.sunrise.entity.cache;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 @lombok.Getter
-@lombok.Setter
-@lombok.AllArgsConstructor
 public class CacheChatMembersContainer {
     private final long chatId;
     private final Map<Long, CacheChatMember> members = new ConcurrentHashMap<>();   // userId -> CacheChatMember
     private final Set<Long> adminIds = ConcurrentHashMap.newKeySet();               // userId
     private final Set<Long> deletedMemberIds = ConcurrentHashMap.newKeySet();       // userId
 
+    private static final Optional<Boolean> TRUE = Optional.of(true);
+    private static final Optional<Boolean> FALSE = Optional.of(false);
+
+    // Суммы по всем контейнерам кеша: каждый контейнер вносит свои изменения и забирает вклад при вытеснении
+    public static final class Counters {
+        public final LongAdder members = new LongAdder();
+        public final LongAdder admins = new LongAdder();
+        public final LongAdder deleted = new LongAdder();
+    }
+    @lombok.Getter(lombok.AccessLevel.NONE)
+    private Counters counters; // null - не считаем (или контейнер уже вытеснен)
+    @lombok.Getter(lombok.AccessLevel.NONE)
+    private int countedMembers, countedAdmins, countedDeleted; // вклад этого контейнера в counters
+
+    public CacheChatMembersContainer(long chatId) {
+        this(chatId, null);
+    }
+    public CacheChatMembersContainer(long chatId, Counters counters) {
+        this.chatId = chatId;
+        this.counters = counters;
+    }
+
+    // снимки неизменяемые, поэтому отдаём без копирования
     public List<CacheChatMember> getChatAdmins() {
-        return adminIds.stream().map(key -> CacheChatMember.copy(members.get(key))).toList();
+        List<CacheChatMember> admins = new ArrayList<>(adminIds.size());
+        for (Long adminId : adminIds) {
+            CacheChatMember member = members.get(adminId);
+            if (member != null) admins.add(member);
+        }
+        return admins;
     }
     public Optional<CacheChatMember> getMember(long userId) {
-        return Optional.ofNullable(CacheChatMember.copy(members.get(userId)));
-    }
-    public Optional<CacheChatMember> getMemberLink(long userId) {
         return Optional.ofNullable(members.get(userId));
     }
 
     public void addBatch(Iterable<CacheChatMember> newMembers)  {
         for (CacheChatMember member : newMembers) {
-            CacheChatMember copyMember = CacheChatMember.copy(member);
-            members.put(copyMember.getUserId(), copyMember);
-            if (copyMember.isAdmin()) {
-                adminIds.add(copyMember.getUserId());
-            }
-            if (copyMember.isDeleted()) {
-                deletedMemberIds.add(copyMember.getUserId());
-            }
+            add(member);
         }
     }
     public void add(CacheChatMember member) {
-        CacheChatMember copyMember = CacheChatMember.copy(member);
-        members.put(copyMember.getUserId(), copyMember);
-        if (copyMember.isAdmin()) {
-            adminIds.add(copyMember.getUserId());
-        }
-        if (copyMember.isDeleted()) {
-            deletedMemberIds.add(copyMember.getUserId());
-        }
+        members.compute(member.getUserId(), (userId, old) -> {
+            CacheChatMember current = old == null ? member : member.supersede(old);
+            if (old == null) count(1, 0, 0);
+            syncIndexes(current);
+            return current;
+        });
     }
     public void updateInfo(long userId, String tag, LocalDateTime updatedAt) {
-        getMemberLink(userId).filter(CacheChatMember::isActive).ifPresent(member -> {
-            member.setTag(tag);
-            member.setUpdatedAt(updatedAt);
-        });
+        members.computeIfPresent(userId, (id, member) -> member.isActive() ? member.withTag(tag, updatedAt) : member);
     }
     public void updateAdminRights(long userId, boolean isAdmin, LocalDateTime updatedAt) {
-        getMemberLink(userId).filter(CacheChatMember::isActive).ifPresent(member -> {
-            member.setAdmin(isAdmin);
-            member.setUpdatedAt(updatedAt);
+        members.computeIfPresent(userId, (id, member) -> {
+            if (!member.isActive()) return member;
+
+            CacheChatMember updated = member.withAdminRights(isAdmin, updatedAt);
+            syncIndexes(updated);
+            return updated;
         });
-        if (isAdmin) {
-            adminIds.add(userId);
-        } else {
-            adminIds.remove(userId);
-        }
     }
     public void updateSettings(long userId, boolean isPinned, LocalDateTime updatedAt) {
-        getMemberLink(userId).filter(CacheChatMember::isActive).ifPresent(member -> {
-            member.setPinned(isPinned);
-            member.setSettingsUpdatedAt(updatedAt);
-            member.setUpdatedAt(updatedAt);
-        });
+        members.computeIfPresent(userId, (id, member) -> member.isActive() ? member.withSettings(isPinned, updatedAt) : member);
     }
     public void markMemberAsDeleted(long userId, LocalDateTime updatedAt) {
-        getMember(userId).ifPresent(member -> {
-            member.setDeleted(true);
-            member.setUpdatedAt(updatedAt);
+        CacheChatMember updated = members.computeIfPresent(userId, (id, member) -> {
+            CacheChatMember deleted = member.withDeleted(updatedAt);
+            syncIndexes(deleted);
+            return deleted;
         });
-        deletedMemberIds.add(userId);
+        if (updated == null && deletedMemberIds.add(userId)) count(0, 0, 1);
     }
     public void restoreMember(long userId, boolean isAdmin, LocalDateTime updatedAt) {
-        getMember(userId).ifPresent(member ->{
-            member.setAdmin(isAdmin);
-            member.setDeleted(false);
-            member.setUpdatedAt(updatedAt);
+        CacheChatMember updated = members.computeIfPresent(userId, (id, member) -> {
+            CacheChatMember restored = member.withRestored(isAdmin, updatedAt);
+            syncIndexes(restored);
+            return restored;
         });
-
-        deletedMemberIds.remove(userId);
-        if (isAdmin) {
-            adminIds.add(userId);
+        if (updated == null) {
+            if (deletedMemberIds.remove(userId)) count(0, 0, -1);
+            if (isAdmin && adminIds.add(userId)) count(0, 1, 0);
         }
     }
 
     public Optional<Boolean> hasMemberAndIsActive(long userId) {
-        return getMemberLink(userId).map(CacheChatMember::isActive);
+        CacheChatMember member = members.get(userId);
+        if (member == null)
+            return Optional.empty();
+
+        return member.isActive() ? TRUE : FALSE;
     }
 
     public Optional<Boolean> isAdmin(long userId) {
-        if (adminIds.contains(userId) && getMemberLink(userId).filter(CacheChatMember::isActive).isPresent())
-            return Optional.of(true);
-
-        if (members.containsKey(userId))
-            return Optional.of(false);
+        CacheChatMember member = members.get(userId);
+        if (member == null)
+            return Optional.empty();
 
-        return Optional.empty();
+        return member.isActive() && adminIds.contains(userId) ? TRUE : FALSE;
     }
 
     public Optional<Boolean> isDeleted(long userId) {
         if (deletedMemberIds.contains(userId))
-            return Optional.of(true);
+            return TRUE;
 
         if (members.containsKey(userId))
-            return Optional.of(false);
+            return FALSE;
 
         return Optional.empty();
     }
-}
\ No newline at end of file
+
+
+    // Вызывается при вытеснении из кеша: забираем вклад, дальнейшие изменения уже не считаются
+    public synchronized void detach() {
+        if (counters == null) return;
+
+        counters.members.add(-countedMembers);
+        counters.admins.add(-countedAdmins);
+        counters.deleted.add(-countedDeleted);
+        counters = null;
+    }
+
+
+    // Вызывается внутри compute по этому userId, поэтому индексы меняются вместе со снимком
+    private void syncIndexes(CacheChatMember member) {
+        long userId = member.getUserId();
+        if (member.isAdmin()) {
+            if (adminIds.add(userId)) count(0, 1, 0);
+        }
+        else if (adminIds.remove(userId)) count(0, -1, 0);
+
+        if (member.isDeleted()) {
+            if (deletedMemberIds.add(userId)) count(0, 0, 1);
+        }
+        else if (deletedMemberIds.remove(userId)) count(0, 0, -1);
+    }
+    // Вклад и counters меняются под одним монитором с detach, поэтому после вытеснения суммы сходятся точно
+    private synchronized void count(int members, int admins, int deleted) {
+        if (counters == null) return;
+
+        countedMembers += members;
+        countedAdmins += admins;
+        countedDeleted += deleted;
+        if (members != 0) counters.members.add(members);
+        if (admins != 0) counters.admins.add(admins);
+        if (deleted != 0) counters.deleted.add(deleted);
+    }
+}
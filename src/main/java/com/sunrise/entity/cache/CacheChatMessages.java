@@ -0,0 +1,196 @@
+package com.sunrise.entity.cache;
+
+import com.sunrise.core.dataservice.type.Direction;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+/*
+ * Кольцевой буфер последних сообщений чата + отметки прочтения участников.
+ * Буфер всегда хранит непрерывный "хвост" истории (по id), поэтому страницы рядом с ним можно отдавать без бд.
+ * Заполняется первой страницей из бд; если во время загрузки чат менялся - загрузка отбрасывается (см. beginSeed/seed).
+ */
+public class CacheChatMessages {
+
+    @lombok.Getter
+    private final long chatId;
+    private final CacheRecentMessage[] ring; // по возрастанию id начиная с head
+    private int head;
+    private int size;
+
+    private boolean seeded;      // буфер заполнен из бд
+    private boolean complete;    // в буфере вся история чата
+    private long mutationCount;  // растёт при любом изменении, защищает загрузку из бд от гонок
+
+    private final Map<Long, Long> readWatermarks = new ConcurrentHashMap<>(); // userId -> lastReadMessageId
+
+    public CacheChatMessages(long chatId, int capacity) {
+        this.chatId = chatId;
+        this.ring = new CacheRecentMessage[Math.max(1, capacity)];
+    }
+
+
+    // ========== ЗАГРУЗКА ИЗ БД ==========
+
+
+    public synchronized long beginSeed() {
+        return mutationCount;
+    }
+    public synchronized boolean seed(List<CacheRecentMessage> newestFirst, boolean complete, long epoch) {
+        if (seeded || mutationCount != epoch) return false;
+
+        clear();
+        for (int i = newestFirst.size() - 1; i >= 0; i--) {
+            append(newestFirst.get(i));
+        }
+        this.complete = complete && newestFirst.size() <= ring.length;
+        this.seeded = true;
+        return true;
+    }
+
+
+    // ========== ИЗМЕНЕНИЯ ==========
+
+
+    public synchronized void insert(CacheRecentMessage message) {
+        mutationCount++;
+        if (!seeded) return;
+
+        int position = search(message.getId());
+        if (position >= 0) {
+            set(position, message);
+            return;
+        }
+
+        int insertAt = -position - 1;
+        if (insertAt == 0 && size > 0 && (!complete || size == ring.length)) {
+            complete = false; // старше начала буфера - в окно не попадает
+            return;
+        }
+        if (size == ring.length) { // вытесняем самое старое
+            head = (head + 1) % ring.length;
+            size--;
+            insertAt--;
+            complete = false;
+        }
+        for (int i = size; i > insertAt; i--) {
+            set(i, get(i - 1));
+        }
+        set(insertAt, message);
+        size++;
+    }
+    public synchronized void update(long messageId, UnaryOperator<CacheRecentMessage> change) {
+        mutationCount++;
+        if (!seeded) return;
+
+        int position = search(messageId);
+        if (position >= 0) {
+            set(position, change.apply(get(position)));
+        }
+    }
+    // previous - отметка участника до этого прочтения (из бд, если в буфере её не было); буфер общий, поэтому не сбрасываем его
+    public synchronized void markReadUpTo(long userId, long previous, long messageId, LocalDateTime minSentAt) {
+        previous = Math.max(previous, readWatermarks.getOrDefault(userId, 0L));
+        if (messageId <= previous) return;
+
+        readWatermarks.put(userId, messageId);
+        mutationCount++;
+        if (!seeded) return;
+
+        for (int i = 0; i < size; i++) {
+            CacheRecentMessage message = get(i);
+            if (message.getId() > previous && message.getId() <= messageId
+                    && message.getSenderId() != userId && !message.getSentAt().isBefore(minSentAt)) {
+                set(i, message.withReadCountIncremented());
+            }
+        }
+    }
+
+
+    // ========== ЧТЕНИЕ ==========
+
+
+    // Возвращает строки в том же порядке, что и запросы MessageRepository, или empty, если буфер не покрывает страницу
+    public synchronized Optional<List<CacheRecentMessage>> getPage(Long cursor, int count, Direction direction) {
+        if (!seeded) return Optional.empty();
+
+        if (cursor == null) {
+            if (size < count && !complete) return Optional.empty();
+            return Optional.of(descending(size, count));
+        }
+
+        if (direction == Direction.FORWARD) {
+            if (!complete && (size == 0 || cursor < get(0).getId())) return Optional.empty();
+
+            int from = search(cursor);
+            from = from >= 0 ? from + 1 : -from - 1;
+            List<CacheRecentMessage> page = new ArrayList<>(Math.min(count, size - from));
+            for (int i = from; i < size && page.size() < count; i++) {
+                page.add(get(i));
+            }
+            return Optional.of(page);
+        }
+
+        int to = search(cursor);
+        to = to >= 0 ? to : -to - 1;
+        if (to < count && !complete) return Optional.empty();
+        return Optional.of(descending(to, count));
+    }
+
+    public Optional<Long> getReadWatermark(long userId) {
+        return Optional.ofNullable(readWatermarks.get(userId));
+    }
+    public synchronized void saveReadWatermark(long userId, long lastReadMessageId) {
+        readWatermarks.merge(userId, lastReadMessageId, Math::max);
+    }
+
+
+    // ========== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ==========
+
+
+    private List<CacheRecentMessage> descending(int to, int count) {
+        int from = Math.max(0, to - count);
+        List<CacheRecentMessage> page = new ArrayList<>(to - from);
+        for (int i = to - 1; i >= from; i--) {
+            page.add(get(i));
+        }
+        return page;
+    }
+    private void append(CacheRecentMessage message) {
+        if (size == ring.length) {
+            head = (head + 1) % ring.length;
+            size--;
+        }
+        set(size, message);
+        size++;
+    }
+    private void clear() {
+        Arrays.fill(ring, null);
+        head = 0;
+        size = 0;
+        seeded = false;
+        complete = false;
+    }
+
+    // бинарный поиск по id: индекс, либо -(точка вставки) - 1
+    private int search(long messageId) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midId = get(mid).getId();
+            if (midId < messageId) low = mid + 1;
+            else if (midId > messageId) high = mid - 1;
+            else return mid;
+        }
+        return -(low + 1);
+    }
+    private CacheRecentMessage get(int index) {
+        return ring[(head + index) % ring.length];
+    }
+    private void set(int index, CacheRecentMessage message) {
+        ring[(head + index) % ring.length] = message;
+    }
+}
@@ -0,0 +1,78 @@
+package com.sunrise.entity.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.OptionalInt;
+
+/*
+ * Счётчики непрочитанных сообщений участников одного чата.
+ * Держим только тех, чей счётчик уже известен (посчитан в бд); остальные считаются при первом запросе.
+ * Новое сообщение увеличивает всех, кроме отправителя; прочтение до последнего сообщения обнуляет.
+ * Загрузка из бд защищена от гонок так же, как в CacheChatMessages (beginSeed/seed).
+ */
+public class CacheChatUnread {
+
+    @lombok.Getter
+    private final long chatId;
+    private final Map<Long, Integer> counts = new HashMap<>(); // userId -> непрочитанные
+    private long lastMessageId;  // 0 - неизвестно
+    private long mutationCount;  // растёт при любом изменении
+
+    public CacheChatUnread(long chatId) {
+        this.chatId = chatId;
+    }
+
+
+    // ========== ЗАГРУЗКА ИЗ БД ==========
+
+
+    public synchronized long beginSeed() {
+        return mutationCount;
+    }
+    public synchronized boolean seed(long userId, int count, long epoch) {
+        if (mutationCount != epoch) return false; // пока считали - пришло новое сообщение или прочтение
+
+        counts.put(userId, count);
+        return true;
+    }
+
+
+    // ========== ИЗМЕНЕНИЯ ==========
+
+
+    public synchronized void messageAdded(long messageId, long senderId) {
+        mutationCount++;
+        lastMessageId = Math.max(lastMessageId, messageId);
+        counts.replaceAll((userId, count) -> userId == senderId ? count : count + 1);
+    }
+    // knownLastMessageId - последнее сообщение чата, известное снаружи (0 - неизвестно): после холодного старта своего нет
+    public synchronized void readUpTo(long userId, long messageId, long knownLastMessageId) {
+        mutationCount++;
+        lastMessageId = Math.max(lastMessageId, knownLastMessageId);
+        if (lastMessageId != 0 && messageId >= lastMessageId) {
+            counts.put(userId, 0);
+            return;
+        }
+        counts.remove(userId); // дочитал не до конца - пересчитаем по запросу
+    }
+    public synchronized void remove(long userId) {
+        mutationCount++;
+        counts.remove(userId);
+    }
+    public synchronized void reset() {
+        mutationCount++;
+        counts.clear();
+    }
+
+
+    // ========== ЧТЕНИЕ ==========
+
+
+    public synchronized OptionalInt get(long userId) {
+        Integer count = counts.get(userId);
+        return count == null ? OptionalInt.empty() : OptionalInt.of(count);
+    }
+    public synchronized int size() {
+        return counts.size();
+    }
+}
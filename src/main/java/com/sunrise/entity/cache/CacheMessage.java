@@ -2,40 +2,44 @@ package com.sunrise.entity.cache;
 
 import java.time.LocalDateTime;
 
+// Неизменяемый снимок сообщения: любое изменение создаёт новый экземпляр со следующей версией
 @lombok.Getter
-@lombok.Setter
-@lombok.AllArgsConstructor
-public class CacheMessage {
-    private long id;
-    private long chatId;
-    private long senderId;
-    private LocalDateTime sentAt;
-    private LocalDateTime deletedAt;
-    private boolean isDeleted;
-
-    public void delete(LocalDateTime updatedAt) {
-        this.isDeleted = true;
-        this.deletedAt = updatedAt;
+@lombok.AllArgsConstructor(access = lombok.AccessLevel.PRIVATE)
+public final class CacheMessage {
+    private final long id;
+    private final long chatId;
+    private final long senderId;
+    private final LocalDateTime sentAt;
+    private final LocalDateTime updatedAt;
+    private final LocalDateTime deletedAt;
+    private final boolean isDeleted;
+
+    private final long version;
+
+    public CacheMessage(long id, long chatId, long senderId, LocalDateTime sentAt, LocalDateTime updatedAt, LocalDateTime deletedAt, boolean isDeleted) {
+        this(id, chatId, senderId, sentAt, updatedAt, deletedAt, isDeleted, 0L);
     }
-    public void restore() {
-        this.isDeleted = false;
-        this.deletedAt = null;
+
+    public CacheMessage withDeleted(LocalDateTime updatedAt) {
+        return new CacheMessage(id, chatId, senderId, sentAt, updatedAt, updatedAt, true, version + 1);
+    }
+    public CacheMessage withRestored(LocalDateTime updatedAt) {
+        return new CacheMessage(id, chatId, senderId, sentAt, updatedAt, null, false, version + 1);
     }
 
-    public boolean isActive() {
-        return !isDeleted;
+    // Свежие данные (из бд) заменяют старый снимок, если тот не новее: по updatedAt, а при равном - по версии.
+    // Иначе загрузка, прочитавшая строку до удаления, вернула бы удалённое сообщение в кеш
+    public CacheMessage supersede(CacheMessage previous) {
+        if (previous.updatedAt != null && updatedAt != null) {
+            int byTime = previous.updatedAt.compareTo(updatedAt);
+            if (byTime > 0 || (byTime == 0 && previous.version > version))
+                return previous;
+        }
+
+        return new CacheMessage(id, chatId, senderId, sentAt, updatedAt, deletedAt, isDeleted, previous.version + 1);
     }
 
-    public static CacheMessage copy(CacheMessage message) {
-        if (message == null) return null;
-
-        return new CacheMessage(
-            message.getId(),
-            message.getChatId(),
-            message.getSenderId(),
-            message.getSentAt(),
-            message.getDeletedAt(),
-            message.isDeleted()
-        );
+    public boolean isActive() {
+        return !isDeleted;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,32 @@
+package com.sunrise.entity.cache;
+
+import java.time.LocalDateTime;
+
+// Полное сообщение для буфера последних сообщений чата (без признака прочтения - он свой у каждого пользователя)
+@lombok.Getter
+@lombok.AllArgsConstructor
+public final class CacheRecentMessage {
+    private final long id;
+    private final long chatId;
+    private final long senderId;
+    private final LocalDateTime profileUpdatedAt;
+    private final String text;
+    private final long readCount;
+    private final LocalDateTime sentAt;
+    private final LocalDateTime updatedAt;
+    private final LocalDateTime deletedAt;
+    private final boolean isDeleted;
+
+    public CacheRecentMessage withText(String text, LocalDateTime updatedAt) {
+        return new CacheRecentMessage(id, chatId, senderId, profileUpdatedAt, text, readCount, sentAt, updatedAt, deletedAt, isDeleted);
+    }
+    public CacheRecentMessage withDeleted(LocalDateTime updatedAt) {
+        return new CacheRecentMessage(id, chatId, senderId, profileUpdatedAt, text, readCount, sentAt, updatedAt, updatedAt, true);
+    }
+    public CacheRecentMessage withRestored(LocalDateTime updatedAt) {
+        return new CacheRecentMessage(id, chatId, senderId, profileUpdatedAt, text, readCount, sentAt, updatedAt, null, false);
+    }
+    public CacheRecentMessage withReadCountIncremented() {
+        return new CacheRecentMessage(id, chatId, senderId, profileUpdatedAt, text, readCount + 1, sentAt, updatedAt, deletedAt, isDeleted);
+    }
+}
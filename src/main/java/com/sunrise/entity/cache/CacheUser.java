@@ -2,88 +2,62 @@ package com.sunrise.entity.cache;
 
 import java.time.LocalDateTime;
 
+// Неизменяемый снимок пользователя: любое изменение создаёт новый экземпляр со следующей версией
 @lombok.Getter
-@lombok.Setter
-@lombok.AllArgsConstructor
-public class CacheUser {
-    private Long id;
-    private String username;
-    private String name;
-    private String email;
-    private String hashPassword;
-    private LocalDateTime lastLogin;
-    private LocalDateTime profileUpdatedAt;
-    private LocalDateTime updatedAt;
-    private LocalDateTime createdAt;
-    private int jwtVersion;
-    private boolean isEnabled;
-    private LocalDateTime deletedAt;
-    private boolean isDeleted;
+@lombok.AllArgsConstructor(access = lombok.AccessLevel.PRIVATE)
+public final class CacheUser {
+    private final Long id;
+    private final String username;
+    private final String name;
+    private final String email;
+    private final String hashPassword;
+    private final LocalDateTime lastLogin;
+    private final LocalDateTime profileUpdatedAt;
+    private final LocalDateTime updatedAt;
+    private final LocalDateTime createdAt;
+    private final int jwtVersion;
+    private final boolean isEnabled;
+    private final LocalDateTime deletedAt;
+    private final boolean isDeleted;
 
-    public void setUsernameAndName(String username, String name, LocalDateTime updatedAt){
-        this.username = username;
-        this.name = name;
-        this.profileUpdatedAt = updatedAt;
-        this.updatedAt = updatedAt;
+    private final long version;
+
+    public CacheUser(Long id, String username, String name, String email, String hashPassword,
+                     LocalDateTime lastLogin, LocalDateTime profileUpdatedAt, LocalDateTime updatedAt, LocalDateTime createdAt,
+                     int jwtVersion, boolean isEnabled, LocalDateTime deletedAt, boolean isDeleted) {
+        this(id, username, name, email, hashPassword, lastLogin, profileUpdatedAt, updatedAt, createdAt, jwtVersion, isEnabled, deletedAt, isDeleted, 0L);
+    }
+
+    public CacheUser withUsernameAndName(String username, String name, LocalDateTime updatedAt){
+        return new CacheUser(id, username, name, email, hashPassword, lastLogin, updatedAt, updatedAt, createdAt, jwtVersion, isEnabled, deletedAt, isDeleted, version + 1);
     }
-    public void setEmail(String email, int jwtVersion, LocalDateTime updatedAt){
-        this.email = email;
-        this.jwtVersion = jwtVersion;
-        this.updatedAt = updatedAt;
+    public CacheUser withEmail(String email, int jwtVersion, LocalDateTime updatedAt){
+        return new CacheUser(id, username, name, email, hashPassword, lastLogin, profileUpdatedAt, updatedAt, createdAt, jwtVersion, isEnabled, deletedAt, isDeleted, version + 1);
     }
-    public void setPassword(String hashPassword, int jwtVersion, LocalDateTime updatedAt){
-        this.hashPassword = hashPassword;
-        this.jwtVersion = jwtVersion;
-        this.updatedAt = updatedAt;
+    public CacheUser withPassword(String hashPassword, int jwtVersion, LocalDateTime updatedAt){
+        return new CacheUser(id, username, name, email, hashPassword, lastLogin, profileUpdatedAt, updatedAt, createdAt, jwtVersion, isEnabled, deletedAt, isDeleted, version + 1);
     }
-    public void setLastLogin(LocalDateTime lastLogin){
-        this.lastLogin = lastLogin;
-        this.updatedAt = lastLogin;
+    public CacheUser withLastLogin(LocalDateTime lastLogin){
+        return new CacheUser(id, username, name, email, hashPassword, lastLogin, profileUpdatedAt, lastLogin, createdAt, jwtVersion, isEnabled, deletedAt, isDeleted, version + 1);
     }
-    public void enable(int jwtVersion, LocalDateTime updatedAt){
-        this.isEnabled = true;
-        this.profileUpdatedAt = updatedAt;
-        this.updatedAt = updatedAt;
-        this.jwtVersion = jwtVersion;
+    public CacheUser withEnabled(int jwtVersion, LocalDateTime updatedAt){
+        return new CacheUser(id, username, name, email, hashPassword, lastLogin, updatedAt, updatedAt, createdAt, jwtVersion, true, deletedAt, isDeleted, version + 1);
     }
-    public void disable(int jwtVersion, LocalDateTime updatedAt){
-        this.isEnabled = false;
-        this.profileUpdatedAt = updatedAt;
-        this.updatedAt = updatedAt;
-        this.jwtVersion = jwtVersion;
+    public CacheUser withDisabled(int jwtVersion, LocalDateTime updatedAt){
+        return new CacheUser(id, username, name, email, hashPassword, lastLogin, updatedAt, updatedAt, createdAt, jwtVersion, false, deletedAt, isDeleted, version + 1);
     }
-    public void delete(int jwtVersion, LocalDateTime updatedAt){
-        this.deletedAt = updatedAt;
-        this.isDeleted = true;
-        this.profileUpdatedAt = updatedAt;
-        this.updatedAt = updatedAt;
-        this.jwtVersion = jwtVersion;
+    public CacheUser withDeleted(int jwtVersion, LocalDateTime updatedAt){
+        return new CacheUser(id, username, name, email, hashPassword, lastLogin, updatedAt, updatedAt, createdAt, jwtVersion, isEnabled, updatedAt, true, version + 1);
     }
-    public void restore(int jwtVersion, LocalDateTime updatedAt){
-        this.deletedAt = null;
-        this.isDeleted = false;
-        this.profileUpdatedAt = updatedAt;
-        this.updatedAt = updatedAt;
-        this.jwtVersion = jwtVersion;
+    public CacheUser withRestored(int jwtVersion, LocalDateTime updatedAt){
+        return new CacheUser(id, username, name, email, hashPassword, lastLogin, updatedAt, updatedAt, createdAt, jwtVersion, isEnabled, null, false, version + 1);
     }
 
-    public static CacheUser copy(CacheUser user) {
-        if (user == null) return null;
+    // Свежие данные (из бд) заменяют старый снимок, если тот не новее по updatedAt
+    public CacheUser supersede(CacheUser previous) {
+        if (previous.updatedAt != null && updatedAt != null && previous.updatedAt.isAfter(updatedAt))
+            return previous;
 
-        return new CacheUser(
-            user.getId(),
-            user.getUsername(),
-            user.getName(),
-            user.getEmail(),
-            user.getHashPassword(),
-            user.getLastLogin(),
-            user.getProfileUpdatedAt(),
-            user.getUpdatedAt(),
-            user.getCreatedAt(),
-            user.getJwtVersion(),
-            user.isEnabled(),
-            user.getDeletedAt(),
-            user.isDeleted()
-        );
+        return new CacheUser(id, username, name, email, hashPassword, lastLogin, profileUpdatedAt, updatedAt, createdAt, jwtVersion, isEnabled, deletedAt, isDeleted, previous.version + 1);
     }
 }
@@ -0,0 +1,145 @@
+package com.sunrise.entity.cache;
+
+import com.sunrise.entity.dto.MessageDTO;
+import com.sunrise.entity.dto.UserChatDTO;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+/*
+ * Список чатов пользователя в порядке get_user_chats_page: закреплённые выше, затем по последнему сообщению и chatId (по убыванию).
+ * Держим только полный список (все активные чаты пользователя), поэтому любую keyset-страницу можно отдать без бд.
+ * Наружу отдаём копии: DTO изменяемые, а кешированные записи правим только здесь.
+ */
+public class CacheUserInbox {
+
+    @lombok.Getter
+    private final long userId;
+    private final TreeMap<InboxKey, UserChatDTO> ordered = new TreeMap<>();
+    private final Map<Long, InboxKey> keys = new HashMap<>(); // chatId -> позиция
+
+    public record InboxKey(boolean isPinned, long lastMessageId, long chatId) implements Comparable<InboxKey> {
+        @Override
+        public int compareTo(InboxKey other) {
+            if (isPinned != other.isPinned) return isPinned ? -1 : 1;
+            if (lastMessageId != other.lastMessageId) return Long.compare(other.lastMessageId, lastMessageId);
+            return Long.compare(other.chatId, chatId);
+        }
+    }
+
+    public CacheUserInbox(long userId, Collection<UserChatDTO> chats, Set<Long> pinnedChatIds) {
+        this.userId = userId;
+        for (UserChatDTO chat : chats) {
+            put(pinnedChatIds.contains(chat.getId()), chat);
+        }
+    }
+
+
+    // ========== ЧТЕНИЕ ==========
+
+
+    // Страница после курсора; без chatIdCursor - с начала
+    public synchronized List<UserChatDTO> getPage(Boolean isPinnedCursor, Long lastMsgIdCursor, Long chatIdCursor, int count) {
+        SortedMap<InboxKey, UserChatDTO> tail = chatIdCursor == null
+                ? ordered
+                : ordered.tailMap(new InboxKey(Boolean.TRUE.equals(isPinnedCursor), lastMsgIdCursor == null ? 0 : lastMsgIdCursor, chatIdCursor), false);
+
+        List<UserChatDTO> page = new ArrayList<>(Math.min(count, tail.size()));
+        for (UserChatDTO chat : tail.values()) {
+            if (page.size() == count) break;
+            page.add(copy(chat));
+        }
+        return page;
+    }
+    // id последнего сообщения чата, 0 - в чате нет сообщений; empty - чата в списке нет
+    public synchronized OptionalLong getLastMessageId(long chatId) {
+        if (!keys.containsKey(chatId)) return OptionalLong.empty();
+
+        MessageDTO last = getLastMessage(chatId);
+        return OptionalLong.of(last == null ? 0 : last.getId());
+    }
+    public synchronized Set<Long> getChatIds() {
+        return new HashSet<>(keys.keySet());
+    }
+    public synchronized int size() {
+        return keys.size();
+    }
+
+
+    // ========== ИЗМЕНЕНИЯ ==========
+
+
+    // false - чата в списке нет, список неполный
+    public synchronized boolean messageAdded(MessageDTO message) {
+        InboxKey key = keys.get(message.getChatId());
+        if (key == null) return false;
+
+        UserChatDTO chat = ordered.remove(key);
+        boolean isOwn = message.getSenderId() == userId;
+        chat.setLastMessage(new MessageDTO(
+            message.getId(), message.getChatId(), message.getSenderId(), message.getProfileUpdatedAt(),
+            message.getText(), message.getReadCount(), isOwn, message.getSentAt(),
+            message.getUpdatedAt(), message.getDeletedAt(), message.isDeleted()
+        ));
+        if (!isOwn) chat.setUnreadCount(chat.getUnreadCount() + 1);
+        put(key.isPinned(), chat);
+        return true;
+    }
+    public synchronized void messageUpdated(long chatId, long messageId, String newText, LocalDateTime updatedAt) {
+        MessageDTO last = getLastMessage(chatId);
+        if (last == null || last.getId() != messageId) return;
+
+        last.setText(newText);
+        last.setUpdatedAt(updatedAt);
+    }
+    public synchronized void readUpTo(long chatId, long messageId) {
+        InboxKey key = keys.get(chatId);
+        if (key == null) return;
+
+        UserChatDTO chat = ordered.get(key);
+        MessageDTO last = chat.getLastMessage();
+        if (last != null && last.getId() <= messageId) {
+            last.setReadByUser(true);
+            chat.setUnreadCount(0);
+        }
+    }
+    public synchronized void setPinned(long chatId, boolean isPinned) {
+        InboxKey key = keys.get(chatId);
+        if (key == null || key.isPinned() == isPinned) return;
+
+        put(isPinned, ordered.remove(key));
+    }
+    public synchronized void remove(long chatId) {
+        InboxKey key = keys.remove(chatId);
+        if (key != null) ordered.remove(key);
+    }
+
+
+    // ========== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ==========
+
+
+    private void put(boolean isPinned, UserChatDTO chat) {
+        MessageDTO last = chat.getLastMessage();
+        InboxKey key = new InboxKey(isPinned, last == null ? 0 : last.getId(), chat.getId());
+        ordered.put(key, chat);
+        keys.put(chat.getId(), key);
+    }
+    private MessageDTO getLastMessage(long chatId) {
+        InboxKey key = keys.get(chatId);
+        return key == null ? null : ordered.get(key).getLastMessage();
+    }
+    private static UserChatDTO copy(UserChatDTO chat) {
+        MessageDTO last = chat.getLastMessage();
+        MessageDTO lastCopy = last == null ? null : new MessageDTO(
+            last.getId(), last.getChatId(), last.getSenderId(), last.getProfileUpdatedAt(),
+            last.getText(), last.getReadCount(), last.isReadByUser(), last.getSentAt(),
+            last.getUpdatedAt(), last.getDeletedAt(), last.isDeleted()
+        );
+        return new UserChatDTO(
+            chat.getId(), chat.getName(), chat.getDescription(), chat.getChatType(),
+            chat.getOpponentId(), chat.getMembersCount(), chat.getDeletedMembersCount(),
+            lastCopy, chat.getUnreadCount(), chat.getUpdatedAt(), chat.getCreatedAt(),
+            chat.getCreatedBy(), chat.getDeletedAt(), chat.isDeleted()
+        );
+    }
+}
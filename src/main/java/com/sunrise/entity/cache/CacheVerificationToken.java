@@ -4,27 +4,14 @@ import com.sunrise.core.dataservice.type.TokenType;
 
 import java.time.LocalDateTime;
 
+// Токен после создания не меняется, поэтому версия ему не нужна
 @lombok.Getter
-@lombok.Setter
 @lombok.AllArgsConstructor
-public class CacheVerificationToken {
-    private long id;
-    private long userId;
-    private String token;
-    private TokenType tokenType;
-    private LocalDateTime expiryDate;
-    private LocalDateTime createdAt;
-
-    public static CacheVerificationToken copy(CacheVerificationToken token) {
-        if (token == null) return null;
-
-        return new CacheVerificationToken(
-            token.getId(),
-            token.getUserId(),
-            token.getToken(),
-            token.getTokenType(),
-            token.getExpiryDate(),
-            token.getCreatedAt()
-        );
-    }
+public final class CacheVerificationToken {
+    private final long id;
+    private final long userId;
+    private final String token;
+    private final TokenType tokenType;
+    private final LocalDateTime expiryDate;
+    private final LocalDateTime createdAt;
 }
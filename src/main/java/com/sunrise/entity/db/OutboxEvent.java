@@ -0,0 +1,50 @@
+package com.sunrise.entity.db;
+
+import com.sunrise.core.dataservice.type.OutboxEventType;
+
+import jakarta.persistence.*;
+
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDateTime;
+
+/*
+ * Отложенная запись: пишется синхронно вместе с запросом, применяется OutboxService-ом в фоне.
+ * idempotency_key не даёт поставить одно и то же действие дважды.
+ */
+@lombok.Getter
+@lombok.Setter
+@lombok.NoArgsConstructor
+@lombok.AllArgsConstructor
+@Entity
+@Cacheable(false)
+@Table(name = "outbox_events")
+public class OutboxEvent {
+
+    @Id
+    private long id;
+
+    @Column(name = "event_type", nullable = false)
+    @Enumerated(EnumType.STRING)
+    private OutboxEventType eventType;
+
+    @Column(name = "idempotency_key", nullable = false, unique = true)
+    private String idempotencyKey;
+
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "payload", nullable = false)
+    private String payload;
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "last_error")
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
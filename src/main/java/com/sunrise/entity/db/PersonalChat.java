@@ -0,0 +1,23 @@
+package com.sunrise.entity.db;
+
+import jakarta.persistence.*;
+
+/*
+ * Индекс личных чатов по паре пользователей: поиск существующего чата - одна проба по первичному ключу.
+ * Заполняется вместе с create_personal_chat_with_members в одной транзакции (DBService.savePersonalChat).
+ */
+@lombok.Getter
+@lombok.Setter
+@lombok.NoArgsConstructor
+@lombok.AllArgsConstructor
+@Entity
+@Cacheable(false)
+@Table(name = "personal_chats")
+public class PersonalChat {
+
+    @EmbeddedId
+    private PersonalChatId id;
+
+    @Column(name = "chat_id", nullable = false, unique = true)
+    private Long chatId;
+}
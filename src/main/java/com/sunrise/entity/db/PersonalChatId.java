@@ -0,0 +1,26 @@
+package com.sunrise.entity.db;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+
+import java.io.Serializable;
+
+// Каноничный ключ пары: меньший id всегда в user_low_id
+@lombok.Getter
+@lombok.Setter
+@lombok.NoArgsConstructor
+@lombok.AllArgsConstructor
+@lombok.EqualsAndHashCode
+@Embeddable
+public class PersonalChatId implements Serializable {
+
+    @Column(name = "user_low_id", nullable = false)
+    private Long userLowId;
+
+    @Column(name = "user_high_id", nullable = false)
+    private Long userHighId;
+
+    public static PersonalChatId of(long userId1, long userId2) {
+        return new PersonalChatId(Math.min(userId1, userId2), Math.max(userId1, userId2));
+    }
+}
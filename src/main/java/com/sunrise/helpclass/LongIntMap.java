@@ -0,0 +1,144 @@
+package com.sunrise.helpclass;
+
+import java.util.Arrays;
+
+/*
+ * Map long -> int на открытой адресации (линейное пробирование) без боксинга: ~12-24 байта на запись.
+ * Ключ 0 зарезервирован под пустую ячейку (snowflake id никогда не равен 0).
+ * НЕ потокобезопасна: таблица меняется целиком при росте, поэтому читатель, взявший ссылку на Table,
+ * всегда видит согласованные массивы - синхронизацию делает владелец (см. JwtVersionRegistry).
+ */
+public final class LongIntMap {
+
+    private static final float LOAD_FACTOR = 0.6f;
+    private static final long MIX = 0x9E3779B97F4A7C15L;
+
+    private static final class Table {
+        final long[] keys;
+        final int[] values;
+        final int mask;
+
+        Table(int capacity) {
+            this.keys = new long[capacity];
+            this.values = new int[capacity];
+            this.mask = capacity - 1;
+        }
+    }
+
+    private volatile Table table;
+    private int size;
+    private int resizeThreshold;
+
+    public LongIntMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        this.table = new Table(capacity);
+        this.resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    public int get(long key, int missingValue) {
+        Table current = table;
+        int index = indexOf(key, current.mask);
+        for (int probes = 0; probes <= current.mask; probes++) {
+            long slotKey = current.keys[index];
+            if (slotKey == key) return current.values[index];
+            if (slotKey == 0) return missingValue;
+            index = (index + 1) & current.mask;
+        }
+        return missingValue;
+    }
+
+    public void put(long key, int value) {
+        if (key == 0) throw new IllegalArgumentException("Key 0 is reserved");
+
+        Table current = table;
+        int index = indexOf(key, current.mask);
+        while (true) {
+            long slotKey = current.keys[index];
+            if (slotKey == key) {
+                current.values[index] = value;
+                return;
+            }
+            if (slotKey == 0) {
+                current.values[index] = value; // значение раньше ключа - читатель не увидит ключ без значения
+                current.keys[index] = key;
+                if (++size > resizeThreshold) resize();
+                return;
+            }
+            index = (index + 1) & current.mask;
+        }
+    }
+
+    // Удаление со сдвигом хвоста цепочки назад (без "надгробий")
+    public int remove(long key, int missingValue) {
+        Table current = table;
+        int index = indexOf(key, current.mask);
+        while (current.keys[index] != key) {
+            if (current.keys[index] == 0) return missingValue;
+            index = (index + 1) & current.mask;
+        }
+
+        int removed = current.values[index];
+        int gap = index;
+        int next = (gap + 1) & current.mask;
+        while (current.keys[next] != 0) {
+            int home = indexOf(current.keys[next], current.mask);
+            if (((next - home) & current.mask) >= ((next - gap) & current.mask)) { // ключ можно сдвинуть в дыру, не оторвав от начала цепочки
+                current.keys[gap] = current.keys[next];
+                current.values[gap] = current.values[next];
+                gap = next;
+            }
+            next = (next + 1) & current.mask;
+        }
+        current.keys[gap] = 0;
+        current.values[gap] = 0;
+        size--;
+        return removed;
+    }
+
+    public void forEach(Visitor visitor) {
+        Table current = table;
+        for (int i = 0; i < current.keys.length; i++) {
+            if (current.keys[i] != 0) visitor.accept(current.keys[i], current.values[i]);
+        }
+    }
+    @FunctionalInterface
+    public interface Visitor {
+        void accept(long key, int value);
+    }
+
+    public int size() {
+        return size;
+    }
+    public void clear() {
+        Table current = table;
+        Arrays.fill(current.keys, 0L);
+        Arrays.fill(current.values, 0);
+        size = 0;
+    }
+
+
+    // ========== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ==========
+
+
+    private void resize() {
+        Table old = table;
+        Table grown = new Table(old.keys.length << 1);
+        for (int i = 0; i < old.keys.length; i++) {
+            long key = old.keys[i];
+            if (key == 0) continue;
+
+            int index = indexOf(key, grown.mask);
+            while (grown.keys[index] != 0) {
+                index = (index + 1) & grown.mask;
+            }
+            grown.keys[index] = key;
+            grown.values[index] = old.values[i];
+        }
+        resizeThreshold = (int) (grown.keys.length * LOAD_FACTOR);
+        table = grown;
+    }
+    private static int indexOf(long key, int mask) {
+        long hash = key * MIX;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
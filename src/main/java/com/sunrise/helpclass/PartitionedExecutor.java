@@ -0,0 +1,217 @@
+package com.sunrise.helpclass;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Executor из N "полос": у каждой полосы свой поток и своя очередь.
+ * Задачи с одинаковым ключом всегда попадают в одну полосу и выполняются по порядку,
+ * задачи разных ключей пишут параллельно. При переполнении очереди полоса действует по своей OverflowPolicy.
+ */
+@Slf4j
+public class PartitionedExecutor implements Executor {
+
+    public enum OverflowPolicy {
+        CALLER_RUNS, // выполнить в вызывающем потоке (порядок по ключу не гарантируется)
+        BLOCK,       // ждать места в очереди
+        DISCARD,     // выбросить задачу (с предупреждением в лог)
+        ABORT        // бросить RejectedExecutionException
+    }
+
+    private static final long SHUTDOWN_TIMEOUT_MS = 10_000;
+
+    private final Lane[] lanes;
+
+    public PartitionedExecutor(String threadNamePrefix, int queueCapacity, List<OverflowPolicy> lanePolicies) {
+        if (lanePolicies.isEmpty()) throw new IllegalArgumentException("At least one lane is required");
+
+        this.lanes = new Lane[lanePolicies.size()];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new Lane(i, threadNamePrefix + i, queueCapacity, lanePolicies.get(i));
+        }
+    }
+
+
+    // ========== EXECUTE METHODS ==========
+
+
+    public void execute(Object key, Runnable task) {
+        lanes[laneOf(key)].submit(task);
+    }
+
+    // Без ключа порядок не нужен - берём случайную полосу
+    @Override
+    public void execute(Runnable task) {
+        lanes[ThreadLocalRandom.current().nextInt(lanes.length)].submit(task);
+    }
+
+    // Полосы дописывают свои очереди (не дольше SHUTDOWN_TIMEOUT_MS на все)
+    public void shutdown() throws InterruptedException {
+        for (Lane lane : lanes) {
+            lane.running = false;
+        }
+        long deadline = System.currentTimeMillis() + SHUTDOWN_TIMEOUT_MS;
+        for (Lane lane : lanes) {
+            lane.thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+        }
+    }
+
+    public int laneOf(Object key) {
+        int hash = Objects.hashCode(key) * 0x9E3779B9; // перемешиваем, чтобы близкие id не падали в соседние полосы по кругу
+        return Math.floorMod(hash ^ (hash >>> 16), lanes.length);
+    }
+
+
+    // ========== LANE ==========
+
+
+    private record TimedTask(Runnable task, long enqueuedAt) {}
+
+    private static final class Lane {
+        private final int index;
+        private final OverflowPolicy overflowPolicy;
+        private final BlockingQueue<TimedTask> queue;
+        private final Thread thread;
+        private volatile boolean running = true;
+
+        // метрики
+        private final LongAdder completedCount = new LongAdder();
+        private final LongAdder failedCount = new LongAdder();
+        private final LongAdder overflowCount = new LongAdder();
+        private final LongAdder waitNanosTotal = new LongAdder();
+        private final LongAdder execNanosTotal = new LongAdder();
+        private final AtomicLong waitNanosMax = new AtomicLong();
+        private final AtomicLong execNanosMax = new AtomicLong();
+        private volatile Timer waitTimer; // появляются после bindMetrics
+        private volatile Timer execTimer;
+
+        Lane(int index, String threadName, int queueCapacity, OverflowPolicy overflowPolicy) {
+            this.index = index;
+            this.overflowPolicy = overflowPolicy;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.thread = Thread.ofPlatform().name(threadName).daemon(true).start(this::runLoop);
+        }
+
+        void submit(Runnable task) {
+            TimedTask timed = new TimedTask(task, System.nanoTime());
+            if (running && queue.offer(timed)) return;
+
+            overflowCount.increment();
+            switch (overflowPolicy) {
+                case CALLER_RUNS -> run(timed);
+                case BLOCK -> {
+                    try {
+                        queue.put(timed);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RejectedExecutionException("Interrupted while waiting for lane " + index, e);
+                    }
+                }
+                case DISCARD -> log.warn("[🔧] ☝️ Lane {} is full, task discarded", thread.getName());
+                case ABORT -> throw new RejectedExecutionException("Lane " + thread.getName() + " is full");
+            }
+        }
+
+        private void runLoop() {
+            while (running || !queue.isEmpty()) {
+                try {
+                    TimedTask timed = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (timed != null) run(timed);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+        private void run(TimedTask timed) {
+            long startedAt = System.nanoTime();
+            long waitNanos = startedAt - timed.enqueuedAt();
+            waitNanosTotal.add(waitNanos);
+            waitNanosMax.accumulateAndGet(waitNanos, Math::max);
+            Timer waitTimer = this.waitTimer;
+            if (waitTimer != null) waitTimer.record(waitNanos, TimeUnit.NANOSECONDS);
+            try {
+                timed.task().run();
+                completedCount.increment();
+            }
+            catch (Exception e) {
+                failedCount.increment();
+                log.error("[🔧] ⚠️ Error in lane {}: {}", thread.getName(), e.getMessage());
+            }
+            finally {
+                long execNanos = System.nanoTime() - startedAt;
+                execNanosTotal.add(execNanos);
+                execNanosMax.accumulateAndGet(execNanos, Math::max);
+                Timer execTimer = this.execTimer;
+                if (execTimer != null) execTimer.record(execNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        Map<String, Object> stats() {
+            long completed = completedCount.sum() + failedCount.sum();
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("overflowPolicy", overflowPolicy);
+            stats.put("queue.size", queue.size());
+            stats.put("completed", completedCount.sum());
+            stats.put("failed", failedCount.sum());
+            stats.put("overflowed", overflowCount.sum());
+            stats.put("waitMs.avg", completed == 0 ? 0.0 : waitNanosTotal.sum() / 1_000_000.0 / completed);
+            stats.put("waitMs.max", waitNanosMax.get() / 1_000_000.0);
+            stats.put("execMs.avg", completed == 0 ? 0.0 : execNanosTotal.sum() / 1_000_000.0 / completed);
+            stats.put("execMs.max", execNanosMax.get() / 1_000_000.0);
+            return stats;
+        }
+    }
+
+
+    // ========== STATS ==========
+
+
+    public int getLaneCount() {
+        return lanes.length;
+    }
+    public Map<String, Object> getLaneStats(int lane) {
+        return lanes[lane].stats();
+    }
+
+    // Метрики полос в Micrometer (sunrise.executor.lane.* с тегами executor и lane)
+    public void bindMetrics(MeterRegistry registry, String executorName) {
+        for (Lane lane : lanes) {
+            Tags tags = Tags.of("executor", executorName, "lane", Integer.toString(lane.index), "overflow_policy", lane.overflowPolicy.name());
+            Gauge.builder("sunrise.executor.lane.queue.depth", lane.queue, Collection::size)
+                    .description("Tasks waiting in the lane queue")
+                    .tags(tags)
+                    .register(registry);
+            FunctionCounter.builder("sunrise.executor.lane.completed", lane.completedCount, LongAdder::sum)
+                    .description("Tasks completed by the lane")
+                    .tags(tags)
+                    .register(registry);
+            FunctionCounter.builder("sunrise.executor.lane.failed", lane.failedCount, LongAdder::sum)
+                    .description("Tasks that threw in the lane")
+                    .tags(tags)
+                    .register(registry);
+            FunctionCounter.builder("sunrise.executor.lane.overflowed", lane.overflowCount, LongAdder::sum)
+                    .description("Submits that found the lane queue full")
+                    .tags(tags)
+                    .register(registry);
+            lane.waitTimer = Timer.builder("sunrise.executor.lane.wait")
+                    .description("Time a task waited in the lane queue")
+                    .tags(tags)
+                    .register(registry);
+            lane.execTimer = Timer.builder("sunrise.executor.lane.execution")
+                    .description("Time a task ran on the lane thread")
+                    .tags(tags)
+                    .register(registry);
+        }
+    }
+}
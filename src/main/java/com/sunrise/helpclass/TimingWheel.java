@@ -0,0 +1,90 @@
+package com.sunrise.helpclass;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/*
+ * Хешированное колесо таймеров для long-ключей: ячейка на tickMs, ключ кладётся в ячейку первого тика не раньше дедлайна.
+ * schedule - O(1), advance проходит только наступившие ячейки. Дедлайны дальше одного оборота колеса
+ * просто дожидаются своего оборота в ячейке (сравнение по дедлайну). Отмены нет: владелец сам проверяет,
+ * актуален ли сработавший ключ. НЕ потокобезопасно.
+ */
+public final class TimingWheel {
+
+    private final long tickMs;
+    private final int mask;
+    private final long[][] keys;
+    private final long[][] deadlines;
+    private final int[] sizes;
+
+    private long currentTick; // последний обработанный тик
+
+    public TimingWheel(int slotCount, long tickMs, long nowMs) {
+        if (Integer.bitCount(slotCount) != 1) throw new IllegalArgumentException("Slot count must be a power of two");
+
+        this.tickMs = tickMs;
+        this.mask = slotCount - 1;
+        this.keys = new long[slotCount][8];
+        this.deadlines = new long[slotCount][8];
+        this.sizes = new int[slotCount];
+        this.currentTick = nowMs / tickMs;
+    }
+
+    public void schedule(long key, long deadlineMs) {
+        // ячейка тика, который начинается не раньше дедлайна: к её разбору дедлайн уже наступил
+        long tick = Math.max(Math.ceilDiv(deadlineMs, tickMs), currentTick + 1); // прошедший дедлайн - в ближайший тик
+        int slot = (int) (tick & mask);
+        int size = sizes[slot];
+        if (size == keys[slot].length) {
+            keys[slot] = Arrays.copyOf(keys[slot], size << 1);
+            deadlines[slot] = Arrays.copyOf(deadlines[slot], size << 1);
+        }
+        keys[slot][size] = key;
+        deadlines[slot][size] = deadlineMs;
+        sizes[slot] = size + 1;
+    }
+
+    // Колбэк может снова вызвать schedule - он зовётся уже после разбора ячейки
+    public void advance(long nowMs, LongConsumer onExpired) {
+        long targetTick = nowMs / tickMs;
+        long steps = Math.min(targetTick - currentTick, mask + 1L); // после долгой паузы достаточно одного оборота
+        for (long i = 0; i < steps; i++) {
+            expireSlot((int) ((targetTick - steps + 1 + i) & mask), nowMs, onExpired);
+        }
+        if (targetTick > currentTick) currentTick = targetTick;
+    }
+
+    private void expireSlot(int slot, long nowMs, LongConsumer onExpired) {
+        long[] slotKeys = keys[slot];
+        long[] slotDeadlines = deadlines[slot];
+        int size = sizes[slot];
+        long[] expired = null;
+        int expiredCount = 0;
+
+        for (int i = 0; i < size; ) {
+            if (slotDeadlines[i] > nowMs) {
+                i++;
+                continue;
+            }
+            if (expired == null) expired = new long[size];
+            expired[expiredCount++] = slotKeys[i];
+
+            size--;
+            slotKeys[i] = slotKeys[size]; // на место сработавшего - последний
+            slotDeadlines[i] = slotDeadlines[size];
+        }
+        sizes[slot] = size;
+
+        for (int i = 0; i < expiredCount; i++) {
+            onExpired.accept(expired[i]);
+        }
+    }
+
+    public int size() {
+        int total = 0;
+        for (int size : sizes) {
+            total += size;
+        }
+        return total;
+    }
+}
@@ -1,5 +1,6 @@
 package com.sunrise.repository;
 
+import com.sunrise.core.dataservice.type.ChatUnreadCountResult;
 import com.sunrise.core.dataservice.type.MessageReadStatusResult;
 import com.sunrise.core.dataservice.type.UserMessageDBResult;
 import com.sunrise.entity.db.Message;
@@ -12,6 +13,7 @@ import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -113,6 +115,26 @@ public interface MessageRepository extends JpaRepository<Message, Long> {
            """)
     List<UserMessageDBResult> getMessagePageAfter(@Param("chatId") long chatId, @Param("userId") long userId, @Param("cursor") long cursor, Pageable pageable);
 
+    @Query("SELECT ucrs.lastReadMessageId FROM UserChatReadStatus ucrs WHERE ucrs.id.chatId = :chatId AND ucrs.id.userId = :userId")
+    Optional<Long> getLastReadMessageId(@Param("chatId") long chatId, @Param("userId") long userId);
+
+    // чаты без непрочитанных в ответ не попадают
+    @Query("""
+           SELECT
+               m.chatId AS chatId,
+               COUNT(m.id) AS unreadCount
+           FROM Message m
+           LEFT JOIN UserChatReadStatus ucrs
+               ON ucrs.id.userId = :userId
+               AND ucrs.id.chatId = m.chatId
+           WHERE m.chatId IN :chatIds
+               AND m.senderId <> :userId
+               AND m.isDeleted = false
+               AND (ucrs.lastReadMessageId IS NULL OR m.id > ucrs.lastReadMessageId)
+           GROUP BY m.chatId
+           """)
+    List<ChatUnreadCountResult> countUnreadMessages(@Param("userId") long userId, @Param("chatIds") Collection<Long> chatIds);
+
 
     @Modifying
     @Transactional
@@ -0,0 +1,55 @@
+package com.sunrise.repository;
+
+import com.sunrise.entity.db.OutboxEvent;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    @Modifying
+    @Transactional
+    @Query(value = """
+           INSERT INTO outbox_events (id, event_type, idempotency_key, payload, attempts, next_attempt_at, created_at)
+           VALUES (:id, :eventType, :idempotencyKey, CAST(:payload AS jsonb), 0, :createdAt, :createdAt)
+           ON CONFLICT (idempotency_key) DO NOTHING
+           """, nativeQuery = true)
+    int insertIfAbsent(@Param("id") long id, @Param("eventType") String eventType, @Param("idempotencyKey") String idempotencyKey,
+                       @Param("payload") String payload, @Param("createdAt") LocalDateTime createdAt);
+
+    // Забирает пачку готовых к отправке событий; занятые другой транзакцией пропускаются
+    @Query(value = """
+           SELECT * FROM outbox_events
+           WHERE next_attempt_at <= :now
+           ORDER BY id
+           LIMIT :limit
+           FOR UPDATE SKIP LOCKED
+           """, nativeQuery = true)
+    List<OutboxEvent> lockDueBatch(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    @Query(value = "SELECT * FROM outbox_events WHERE id = :id FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    Optional<OutboxEvent> lockById(@Param("id") long id);
+
+    @Query(value = "SELECT * FROM outbox_events WHERE next_attempt_at <= :now ORDER BY id LIMIT :limit", nativeQuery = true)
+    List<OutboxEvent> getDueBatch(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    // Если событие сейчас применяет relay, ждём его коммита (строка под FOR UPDATE)
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM outbox_events WHERE idempotency_key = :idempotencyKey", nativeQuery = true)
+    int deleteByIdempotencyKey(@Param("idempotencyKey") String idempotencyKey);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE OutboxEvent e SET e.attempts = e.attempts + 1, e.nextAttemptAt = :nextAttemptAt, e.lastError = :lastError WHERE e.id = :id")
+    int markFailed(@Param("id") long id, @Param("nextAttemptAt") LocalDateTime nextAttemptAt, @Param("lastError") String lastError);
+}
@@ -0,0 +1,24 @@
+package com.sunrise.repository;
+
+import com.sunrise.entity.db.PersonalChat;
+import com.sunrise.entity.db.PersonalChatId;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface PersonalChatRepository extends JpaRepository<PersonalChat, PersonalChatId> {
+
+    @Modifying
+    @Transactional
+    @Query(value = """
+           INSERT INTO personal_chats (user_low_id, user_high_id, chat_id)
+           VALUES (LEAST(:user1Id, :user2Id), GREATEST(:user1Id, :user2Id), :chatId)
+           ON CONFLICT DO NOTHING
+           """, nativeQuery = true)
+    int insertIfAbsent(@Param("chatId") long chatId, @Param("user1Id") long user1Id, @Param("user2Id") long user2Id);
+}
@@ -16,6 +16,14 @@ public interface VerificationTokenRepository extends JpaRepository<VerificationT
     @Query("SELECT vt FROM VerificationToken vt WHERE vt.token = :token")
     Optional<VerificationToken> getByToken(@Param("token") String token);
 
+    // Токен с удалением в outbox уже использован: строка живёт до relay, но отдавать её нельзя
+    @Query(value = """
+           SELECT vt.* FROM verification_token vt
+           WHERE vt.token = :token
+             AND NOT EXISTS (SELECT 1 FROM outbox_events e WHERE e.idempotency_key = :deleteKey)
+           """, nativeQuery = true)
+    Optional<VerificationToken> getNotDeletedByToken(@Param("token") String token, @Param("deleteKey") String deleteKey);
+
     @Modifying
     @Transactional
     @Query("DELETE FROM VerificationToken vt WHERE vt.token = :token")
@@ -1,6 +1,8 @@
 package com.sunrise.websocket;
 
+import com.sunrise.core.cluster.WsRouteTable;
 import com.sunrise.core.notifier.SessionRegistry;
+import com.sunrise.core.service.PresenceEngine;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.event.EventListener;
@@ -8,7 +10,10 @@ import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.messaging.SessionConnectedEvent;
 import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
 
+import java.security.Principal;
 import java.util.Map;
 
 @Slf4j
@@ -16,7 +21,11 @@ import java.util.Map;
 @Component
 public class WsEventListener {
 
+    private static final String CHAT_TOPIC_PREFIX = "/topic/chats/";
+
     private final SessionRegistry sessionRegistry;
+    private final WsRouteTable routeTable;
+    private final PresenceEngine presenceEngine;
 
     @EventListener
     public void handleSessionConnected(SessionConnectedEvent event) {
@@ -39,6 +48,8 @@ public class WsEventListener {
 
         if (userId != null && sessionId != null) {
             sessionRegistry.register(sessionId, userId);
+            routeTable.localUserConnected(userId);
+            presenceEngine.connected(userId);
             log.info("[🗝️] ✅ WebSocket connected: sessionId={}, userId={}", sessionId, userId);
         }
     }
@@ -48,9 +59,37 @@ public class WsEventListener {
         String sessionId = event.getSessionId();
         Long userId = sessionRegistry.getUserId(sessionId);
 
+        routeTable.localSessionClosed(sessionId);
+        Principal principal = event.getUser();
+        if (principal != null) presenceEngine.unwatchAll(principal.getName()); // наблюдатели статусов адресуются по имени principal
+
         if (userId != null) {
             sessionRegistry.unregister(sessionId);
+            routeTable.localUserDisconnected(userId);
+            presenceEngine.disconnected(userId);
             log.info("[🗝️] ❌ WebSocket disconnected: sessionId={}, userId={}", sessionId, userId);
         }
     }
+
+    // Подписки на чаты нужны таблице маршрутов: по ним другие узлы решают, пересылать ли сюда события чата
+    @EventListener
+    public void handleSessionSubscribe(SessionSubscribeEvent event) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        String destination = accessor.getDestination();
+        if (destination == null || !destination.startsWith(CHAT_TOPIC_PREFIX) || accessor.getSessionId() == null || accessor.getSubscriptionId() == null)
+            return;
+
+        try {
+            long chatId = Long.parseLong(destination.substring(CHAT_TOPIC_PREFIX.length()));
+            routeTable.localChatSubscribed(accessor.getSessionId(), accessor.getSubscriptionId(), chatId);
+        } catch (NumberFormatException ignored) {}
+    }
+
+    @EventListener
+    public void handleSessionUnsubscribe(SessionUnsubscribeEvent event) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        if (accessor.getSessionId() != null && accessor.getSubscriptionId() != null) {
+            routeTable.localChatUnsubscribed(accessor.getSessionId(), accessor.getSubscriptionId());
+        }
+    }
 }
@@ -0,0 +1,32 @@
+package com.sunrise.websocket;
+
+import com.sunrise.core.notifier.SessionRegistry;
+import com.sunrise.core.service.PresenceEngine;
+import lombok.RequiredArgsConstructor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+
+// Любой входящий кадр сессии (включая STOMP heartbeat) - признак жизни пользователя для PresenceEngine
+@Component
+@RequiredArgsConstructor
+public class WsPresenceInterceptor implements ChannelInterceptor {
+
+    private final SessionRegistry sessionRegistry;
+    private final PresenceEngine presenceEngine;
+
+    @Override
+    public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+        SimpMessageType messageType = SimpMessageHeaderAccessor.getMessageType(message.getHeaders());
+        if (messageType == SimpMessageType.CONNECT || messageType == SimpMessageType.DISCONNECT) return; // их обрабатывает WsEventListener
+
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        if (sessionId == null) return;
+
+        Long userId = sessionRegistry.getUserId(sessionId);
+        if (userId != null) presenceEngine.touch(userId);
+    }
+}
@@ -3,6 +3,7 @@ package com.sunrise.websocket;
 import com.sunrise.core.dataservice.type.ChatType;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 public final class WsRequests {
 
@@ -19,7 +20,8 @@ public final class WsRequests {
     public record MessagePrivateNewResponse(long tempId, long messageId, long chatId, long senderId, String text, LocalDateTime sentAt) {}
     public record MessageUpdateResponse(long messageId, long chatId, String newText, LocalDateTime updatedAt) {}
     public record MessageDeleteResponse(long messageId, long chatId, LocalDateTime deletedAt) {}
-    public record MessagesReadUpToResponse(long userId, long chatId, long upToMessageId, LocalDateTime readAt) {}
+    public record MessagesReadUpToResponse(long chatId, List<UserReadUpTo> reads) {} // отметки чата за интервал рассылки
+    public record UserReadUpTo(long userId, long upToMessageId, LocalDateTime readAt) {}
 
     public record ChatNewResponse(long tempId, long chatId, String name, String description, ChatType chatType, Long opponentId, int membersCount, LocalDateTime updatedAt, LocalDateTime createdAt, long createdBy) {}
     public record ChatInfoUpdateResponse(long chatId, String newName, String newDescription, LocalDateTime updatedAt) {}
@@ -33,7 +35,9 @@ public final class WsRequests {
     public record ChatMemberDeleteResponse(long chatId, long userId, LocalDateTime deletedAt) {}
 
     public record UserStatusResponse(long userId, String newStatus) {}
-    public record UserChatActionResponse(long userId, long chatId, String action) {}
+    public record UserStatusesResponse(List<UserStatusResponse> statuses) {} // изменения статусов за интервал рассылки
+    public record ChatActionsResponse(long chatId, List<ChatActionUsers> actions) {} // текущее состояние чата целиком, пустой список - никто ничего не делает
+    public record ChatActionUsers(String action, List<Long> userIds, int total) {}
     public record PongResponse() {}
 
     public record ErrorResponse(String error, String message, String path) {}